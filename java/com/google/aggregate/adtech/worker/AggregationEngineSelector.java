@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker;
+
+import com.google.aggregate.adtech.worker.aggregation.engine.AggregationTable;
+import com.google.aggregate.adtech.worker.aggregation.engine.ConcurrentMapAggregationTable;
+import com.google.aggregate.adtech.worker.aggregation.engine.OffHeapAggregationTable;
+import com.google.aggregate.adtech.worker.aggregation.engine.PrimitiveAggregationTable;
+import com.google.aggregate.adtech.worker.aggregation.engine.SpillingAggregationTable;
+import com.google.aggregate.adtech.worker.aggregation.engine.ThreadLocalAggregationTable;
+
+/** CLI enum to select which {@link AggregationTable} implementation the engine aggregates in. */
+public enum AggregationEngineSelector {
+  CONCURRENT_MAP(ConcurrentMapAggregationTable.class),
+  PRIMITIVE_TABLE(PrimitiveAggregationTable.class),
+  THREAD_LOCAL_PARTIALS(ThreadLocalAggregationTable.class),
+  OFF_HEAP(OffHeapAggregationTable.class),
+  SPILL_TO_DISK(SpillingAggregationTable.class);
+
+  private final Class<? extends AggregationTable> aggregationTableClass;
+
+  AggregationEngineSelector(Class<? extends AggregationTable> aggregationTableClass) {
+    this.aggregationTableClass = aggregationTableClass;
+  }
+
+  public Class<? extends AggregationTable> getAggregationTableClass() {
+    return aggregationTableClass;
+  }
+}
@@ -16,7 +16,9 @@
 
 package com.google.aggregate.adtech.worker;
 
+import com.beust.jcommander.IParameterValidator;
 import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
 import com.google.aggregate.adtech.worker.selector.BlobStorageClientSelector;
 import com.google.aggregate.adtech.worker.selector.ClientConfigSelector;
 import com.google.aggregate.adtech.worker.selector.DecryptionKeyClientSelector;
@@ -280,6 +282,121 @@ public final class AggregationWorkerArgs {
       description = "Size of the blocking thread pool")
   private int blockingThreadPoolSize = 64;
 
+  @Parameter(
+      names = "--decryption_batch_size",
+      description =
+          "Number of reports per batch when splitting shards, or streamed batches and Avro"
+              + " blocks, for parallel decryption on a work-stealing pool. Set to 0 to decrypt"
+              + " each shard or streamed batch as a single task on the non-blocking pool.")
+  private int decryptionBatchSize = 0;
+
+  @Parameter(
+      names = "--decryption_parallelism",
+      description =
+          "Number of threads of the work-stealing decryption pool. Set to 0 to use the number of"
+              + " available processors.")
+  private int decryptionParallelism = 0;
+
+  @Parameter(
+      names = "--streaming_batch_size",
+      description =
+          "Number of reports per batch when streaming shards through decryption and aggregation."
+              + " Set to 0 to read each shard fully before decrypting it.")
+  private int streamingBatchSize = 0;
+
+  @Parameter(
+      names = "--max_streaming_batches_in_flight",
+      description =
+          "Maximum number of streamed report batches waiting for or under decryption (relevant"
+              + " iff --streaming_batch_size is set), at least 1.",
+      validateWith = PositiveIntegerValidator.class)
+  private int maxStreamingBatchesInFlight = 32;
+
+  @Parameter(
+      names = "--stream_shards_by_avro_block",
+      description =
+          "If set, shards are streamed through decryption and aggregation one Avro block at a time"
+              + " and the blocks of a shard are decoded and decrypted in parallel. Takes precedence"
+              + " over --streaming_batch_size.")
+  private boolean streamShardsByAvroBlock = false;
+
+  @Parameter(
+      names = "--parallel_shard_read_streams",
+      description =
+          "Number of concurrent byte range reads each shard larger than --shard_read_range_mb is"
+              + " fetched with. Set to 1 to read each shard as a single stream.")
+  private int parallelShardReadStreams = 1;
+
+  @Parameter(
+      names = "--shard_read_range_mb",
+      description =
+          "Size in MB of the byte ranges shards are fetched in (relevant iff"
+              + " --parallel_shard_read_streams is greater than 1), at least 1 and below 2048.",
+      validateWith = ShardReadRangeMbValidator.class)
+  private int shardReadRangeMb = 8;
+
+  @Parameter(
+      names = "--shard_range_fetch_thread_pool_size",
+      description =
+          "Size of the thread pool byte ranges of shards are fetched on when"
+              + " --parallel_shard_read_streams is greater than 1. Ranges of all the shards being"
+              + " read are queued on it.")
+  private int shardRangeFetchThreadPoolSize = 16;
+
+  @Parameter(
+      names = "--max_shard_reads_in_flight",
+      description =
+          "Maximum number of report shards of a job read concurrently on the blocking thread pool."
+              + " Set to 0 to start reading all shards at once.")
+  private int maxShardReadsInFlight = 0;
+
+  @Parameter(
+      names = "--shard_read_ahead_mb",
+      description =
+          "Size in MB of read report payloads held waiting for decryption and aggregation before"
+              + " the reading of further shards waits. Set to 0 to not limit it.")
+  private long shardReadAheadMb = 0;
+
+  @Parameter(
+      names = "--prefetch_decryption_keys",
+      description =
+          "If set, the distinct decryption keys of the reports are fetched concurrently on the"
+              + " key fetch thread pool as shards are read, before the reports are decrypted.")
+  private boolean prefetchDecryptionKeys = false;
+
+  @Parameter(
+      names = "--key_fetch_thread_pool_size",
+      description = "Size of the thread pool decryption keys are prefetched on")
+  private int keyFetchThreadPoolSize = 8;
+
+  @Parameter(
+      names = "--aggregation_engine",
+      description = "Table implementation the aggregation engine accumulates facts in.")
+  private AggregationEngineSelector aggregationEngineSelector =
+      AggregationEngineSelector.CONCURRENT_MAP;
+
+  @Parameter(
+      names = "--aggregation_memory_budget_mb",
+      description =
+          "Memory budget of the aggregation in megabytes, above which aggregated buckets are"
+              + " spilled to --result_working_directory_path (relevant iff --aggregation_engine is"
+              + " SPILL_TO_DISK).")
+  private long aggregationMemoryBudgetMb = 4096;
+
+  @Parameter(
+      names = "--short_circuit_validation",
+      description =
+          "If set, validation of a report stops at its first error, so the error summary only"
+              + " counts the first error of each invalid report.")
+  private boolean shortCircuitValidation = false;
+
+  @Parameter(
+      names = "--payload_serdes",
+      description =
+          "Decoder for the CBOR payloads of reports. HISTOGRAM_CBOR uses a streaming decoder"
+              + " specialized for the histogram payload layout.")
+  private PayloadSerdesSelector payloadSerdesSelector = PayloadSerdesSelector.JACKSON_CBOR;
+
   @Parameter(
       names = "--timer_exporter_file_path",
       description =
@@ -568,6 +685,70 @@ public final class AggregationWorkerArgs {
     return blockingThreadPoolSize;
   }
 
+  public int getDecryptionBatchSize() {
+    return decryptionBatchSize;
+  }
+
+  public int getDecryptionParallelism() {
+    return decryptionParallelism;
+  }
+
+  public int getStreamingBatchSize() {
+    return streamingBatchSize;
+  }
+
+  public int getMaxStreamingBatchesInFlight() {
+    return maxStreamingBatchesInFlight;
+  }
+
+  public boolean isStreamShardsByAvroBlock() {
+    return streamShardsByAvroBlock;
+  }
+
+  public int getParallelShardReadStreams() {
+    return parallelShardReadStreams;
+  }
+
+  public int getShardReadRangeMb() {
+    return shardReadRangeMb;
+  }
+
+  public int getShardRangeFetchThreadPoolSize() {
+    return shardRangeFetchThreadPoolSize;
+  }
+
+  public int getMaxShardReadsInFlight() {
+    return maxShardReadsInFlight;
+  }
+
+  public long getShardReadAheadMb() {
+    return shardReadAheadMb;
+  }
+
+  public boolean isPrefetchDecryptionKeys() {
+    return prefetchDecryptionKeys;
+  }
+
+  public int getKeyFetchThreadPoolSize() {
+    return keyFetchThreadPoolSize;
+  }
+
+  public AggregationEngineSelector getAggregationEngineSelector() {
+    return aggregationEngineSelector;
+  }
+
+  public long getAggregationMemoryBudgetMb() {
+    return aggregationMemoryBudgetMb;
+  }
+
+  public boolean isShortCircuitValidation() {
+    return shortCircuitValidation;
+  }
+
+  public PayloadSerdesSelector getPayloadSerdesSelector() {
+    return payloadSerdesSelector;
+  }
+
   public Distribution getNoisingDistribution() {
     return noisingDistribution;
   }
@@ -595,4 +776,46 @@ public final class AggregationWorkerArgs {
   public boolean isDebugRun() {
     return debugRun;
   }
+
+  /** Rejects values below 1, such as a count of permits that would never let anything through. */
+  public static class PositiveIntegerValidator implements IParameterValidator {
+
+    @Override
+    public void validate(String param, String value) throws ParameterException {
+      boolean positive = false;
+      try {
+        positive = Integer.parseInt(value) >= 1;
+      } catch (NumberFormatException e) {
+        // not handling
+      }
+      if (!positive) {
+        throw new ParameterException(
+            String.format("Parameter %s should be an integer >= 1 (found %s)", param, value));
+      }
+    }
+  }
+
+  /** Rejects range sizes that are not positive or whose size in bytes overflows an int. */
+  public static class ShardReadRangeMbValidator implements IParameterValidator {
+
+    // Ranges are buffered in byte arrays, so their size in bytes must fit in an int
+    private static final int MAX_RANGE_MB = Integer.MAX_VALUE / (1024 * 1024);
+
+    @Override
+    public void validate(String param, String value) throws ParameterException {
+      boolean inRange = false;
+      try {
+        int rangeMb = Integer.parseInt(value);
+        inRange = rangeMb >= 1 && rangeMb <= MAX_RANGE_MB;
+      } catch (NumberFormatException e) {
+        // not handling
+      }
+      if (!inRange) {
+        throw new ParameterException(
+            String.format(
+                "Parameter %s should be an integer >= 1 and <= %d (found %s)",
+                param, MAX_RANGE_MB, value));
+      }
+    }
+  }
 }
@@ -19,11 +19,30 @@ package com.google.aggregate.adtech.worker;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.aggregate.adtech.worker.Annotations.BenchmarkMode;
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.DecryptionBatchSize;
+import com.google.aggregate.adtech.worker.Annotations.DecryptionThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
+import com.google.aggregate.adtech.worker.Annotations.KeyFetchThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.MaxShardReadsInFlight;
+import com.google.aggregate.adtech.worker.Annotations.MaxStreamingBatchesInFlight;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.ParallelShardReadStreams;
+import com.google.aggregate.adtech.worker.Annotations.PrefetchDecryptionKeys;
+import com.google.aggregate.adtech.worker.Annotations.ShardRangeFetchThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.ShardReadAheadBytes;
+import com.google.aggregate.adtech.worker.Annotations.ShardReadRangeBytes;
+import com.google.aggregate.adtech.worker.Annotations.ShortCircuitValidation;
+import com.google.aggregate.adtech.worker.Annotations.SpillThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.StreamShardsByAvroBlock;
+import com.google.aggregate.adtech.worker.Annotations.StreamingBatchSize;
 import com.google.aggregate.adtech.worker.LocalFileToCloudStorageLogger.ResultWorkingDirectory;
 import com.google.aggregate.adtech.worker.aggregation.concurrent.ConcurrentAggregationProcessor;
 import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainProcessor;
+import com.google.aggregate.adtech.worker.aggregation.engine.AggregationTable;
+import com.google.aggregate.adtech.worker.aggregation.engine.SpillingAggregationTable.MemoryBudgetBytes;
+import com.google.aggregate.adtech.worker.aggregation.engine.SpillingAggregationTable.SpillDirectory;
+import com.google.aggregate.adtech.worker.aggregation.engine.SpillingAggregationTable.SpillExecutor;
+import com.google.aggregate.adtech.worker.aggregation.engine.ThreadLocalAggregationTable.MergeExecutor;
 import com.google.aggregate.adtech.worker.aggregation.privacy.PrivacyBudgetingServiceBridge;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDelta;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDistribution;
@@ -32,7 +51,7 @@ import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.Nois
 import com.google.aggregate.adtech.worker.decryption.DeserializingReportDecrypter;
 import com.google.aggregate.adtech.worker.decryption.RecordDecrypter;
 import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
-import com.google.aggregate.adtech.worker.model.serdes.cbor.CborPayloadSerdes;
+import com.google.aggregate.adtech.worker.reader.ranged.RangedBlobReader;
 import com.google.aggregate.adtech.worker.validation.SimulationValidationModule;
 import com.google.aggregate.adtech.worker.validation.ValidationModule;
 import com.google.aggregate.perf.StopwatchExporter;
@@ -86,7 +105,9 @@ import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
 import javax.inject.Singleton;
 import software.amazon.awssdk.http.SdkHttpClient;
@@ -103,7 +124,44 @@ public final class AggregationWorkerModule extends AbstractModule {
   @Override
   protected void configure() {
     bind(Boolean.class).annotatedWith(DomainOptional.class).toInstance(args.isDomainOptional());
+    bind(Integer.class)
+        .annotatedWith(StreamingBatchSize.class)
+        .toInstance(args.getStreamingBatchSize());
+    bind(Integer.class)
+        .annotatedWith(MaxStreamingBatchesInFlight.class)
+        .toInstance(args.getMaxStreamingBatchesInFlight());
+    bind(Boolean.class)
+        .annotatedWith(PrefetchDecryptionKeys.class)
+        .toInstance(args.isPrefetchDecryptionKeys());
+    bind(Integer.class)
+        .annotatedWith(ParallelShardReadStreams.class)
+        .toInstance(args.getParallelShardReadStreams());
+    bind(Integer.class)
+        .annotatedWith(ShardReadRangeBytes.class)
+        .toInstance(args.getShardReadRangeMb() * 1024 * 1024);
+    bind(Integer.class)
+        .annotatedWith(MaxShardReadsInFlight.class)
+        .toInstance(args.getMaxShardReadsInFlight());
+    bind(Long.class)
+        .annotatedWith(ShardReadAheadBytes.class)
+        .toInstance(args.getShardReadAheadMb() * 1024 * 1024);
+    bind(Integer.class)
+        .annotatedWith(DecryptionBatchSize.class)
+        .toInstance(args.getDecryptionBatchSize());
+    bind(Boolean.class)
+        .annotatedWith(StreamShardsByAvroBlock.class)
+        .toInstance(args.isStreamShardsByAvroBlock());
     bind(OutputDomainProcessor.class).to(args.getDomainFileFormat().getDomainProcessorClass());
+    bind(AggregationTable.class).to(args.getAggregationEngineSelector().getAggregationTableClass());
+    bind(Path.class)
+        .annotatedWith(SpillDirectory.class)
+        .toInstance(Paths.get(args.getResultWorkingDirectoryPathString()));
+    bind(Long.class)
+        .annotatedWith(MemoryBudgetBytes.class)
+        .toInstance(args.getAggregationMemoryBudgetMb() * 1024 * 1024);
+    bind(Boolean.class)
+        .annotatedWith(ShortCircuitValidation.class)
+        .toInstance(args.isShortCircuitValidation());
 
     install(new WorkerModule());
     install(args.getClientConfigSelector().getClientConfigGuiceModule());
@@ -120,6 +178,7 @@ public final class AggregationWorkerModule extends AbstractModule {
         bind(FileSystem.class).toInstance(FileSystems.getDefault());
     }
     install(args.getBlobStorageClientSelector().getBlobStorageClientSelectorModule());
+    bind(RangedBlobReader.class).to(args.getBlobStorageClientSelector().getRangedBlobReaderClass());
     // Binding/installing puller-specific classes and objects, mainly based on the CLI arguments.
     // Ideally this would happen in the relevant modules, but since they cannot have access to the
     // CLI args, it is done here.
@@ -233,7 +292,8 @@ public final class AggregationWorkerModule extends AbstractModule {
         .toInstance(args.getCoordinatorBEncryptionKeyServiceBaseUrl());
 
     install(args.getDecryptionModuleSelector().getDecryptionModule());
-    bind(PayloadSerdes.class).to(CborPayloadSerdes.class); // CBOR is the only allowed report format
+    // CBOR is the only allowed report format
+    bind(PayloadSerdes.class).to(args.getPayloadSerdesSelector().getPayloadSerdesClass());
     bind(RecordDecrypter.class).to(DeserializingReportDecrypter.class);
     // decryption key service.
     install(args.getDecryptionServiceSelector().getDecryptionKeyClientModule());
@@ -350,6 +410,18 @@ public final class AggregationWorkerModule extends AbstractModule {
         Executors.newFixedThreadPool(args.getNonBlockingThreadPoolSize()));
   }
 
+  @Provides
+  @MergeExecutor
+  Executor provideMergeExecutor(@NonBlockingThreadPool ListeningExecutorService nonBlockingPool) {
+    return nonBlockingPool;
+  }
+
+  @Provides
+  @SpillExecutor
+  Executor provideSpillExecutor(@SpillThreadPool ListeningExecutorService spillPool) {
+    return spillPool;
+  }
+
   @Provides
   @Singleton
   @BlockingThreadPool
@@ -357,4 +429,40 @@ public final class AggregationWorkerModule extends AbstractModule {
     return MoreExecutors.listeningDecorator(
         Executors.newFixedThreadPool(args.getBlockingThreadPoolSize()));
   }
+
+  @Provides
+  @Singleton
+  @KeyFetchThreadPool
+  ListeningExecutorService provideKeyFetchThreadPool() {
+    return MoreExecutors.listeningDecorator(
+        Executors.newFixedThreadPool(args.getKeyFetchThreadPoolSize()));
+  }
+
+  @Provides
+  @Singleton
+  @ShardRangeFetchThreadPool
+  ListeningExecutorService provideShardRangeFetchThreadPool() {
+    return MoreExecutors.listeningDecorator(
+        Executors.newFixedThreadPool(args.getShardRangeFetchThreadPoolSize()));
+  }
+
+  @Provides
+  @Singleton
+  @SpillThreadPool
+  ListeningExecutorService provideSpillThreadPool() {
+    // A table writes one run at a time, and runs are written to the same disk
+    return MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+  }
+
+  @Provides
+  @Singleton
+  @DecryptionThreadPool
+  ForkJoinPool provideDecryptionThreadPool() {
+    // Decryption is CPU bound, more threads than processors would only add context switches
+    int parallelism =
+        args.getDecryptionParallelism() > 0
+            ? args.getDecryptionParallelism()
+            : Runtime.getRuntime().availableProcessors();
+    return new ForkJoinPool(parallelism);
+  }
 }
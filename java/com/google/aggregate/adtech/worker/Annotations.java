@@ -69,6 +69,122 @@ public final class Annotations {
   @Retention(RUNTIME)
   public @interface FailJobOnPbsException {}
 
+  /**
+   * Annotation for the number of reports per batch when shards are streamed through decryption and
+   * aggregation. A value of 0 disables streaming and shards are read fully before decryption.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface StreamingBatchSize {}
+
+  /** Annotation for the maximum number of streamed batches waiting for or under decryption. */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface MaxStreamingBatchesInFlight {}
+
+  /**
+   * Annotation for whether shards are streamed one Avro block at a time, with blocks decoded in
+   * parallel along with their decryption.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface StreamShardsByAvroBlock {}
+
+  /**
+   * Annotation for the number of concurrent range reads a large shard is fetched with. A value of 1
+   * or less reads every shard as a single stream.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface ParallelShardReadStreams {}
+
+  /** Annotation for the size in bytes of the ranges shards are fetched in by range reads. */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface ShardReadRangeBytes {}
+
+  /**
+   * Annotation for the maximum number of shards of a job read concurrently. A value of 0 or less
+   * reads all shards concurrently.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface MaxShardReadsInFlight {}
+
+  /**
+   * Annotation for the number of bytes of read shards held waiting for decryption and aggregation
+   * before the reading of further shards is held back. A value of 0 or less does not limit it.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface ShardReadAheadBytes {}
+
+  /**
+   * Annotation for the work-stealing thread pool shards are decrypted on when they are split into
+   * batches.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface DecryptionThreadPool {}
+
+  /**
+   * Annotation for the number of reports per batch shards are split into for parallel decryption.
+   * A value of 0 decrypts each shard sequentially on the non-blocking thread pool.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface DecryptionBatchSize {}
+
+  /** Annotation for whether decryption keys are fetched ahead of the decryption of reports. */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface PrefetchDecryptionKeys {}
+
+  /**
+   * Annotation for the thread pool decryption keys are prefetched on. It is kept apart from the
+   * blocking thread pool, whose threads may all be taken by shard reads waiting for batches that
+   * need the keys.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface KeyFetchThreadPool {}
+
+  /**
+   * Annotation for the thread pool byte ranges of shards are fetched on. It is kept apart from the
+   * blocking thread pool, whose threads read the shards and wait for their ranges.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface ShardRangeFetchThreadPool {}
+
+  /**
+   * Annotation for the thread pool aggregation runs are spilled to disk on. It is kept apart from
+   * the blocking thread pool, whose threads may all be taken by shard reads waiting for batches
+   * that are themselves waiting for a spill.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface SpillThreadPool {}
+
+  /** Annotation for whether validation of a report stops at its first error. */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface ShortCircuitValidation {}
+
   @BindingAnnotation
   @Target({FIELD, PARAMETER, METHOD})
   @Retention(RUNTIME)
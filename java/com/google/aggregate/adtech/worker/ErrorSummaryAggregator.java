@@ -17,56 +17,104 @@
 package com.google.aggregate.adtech.worker;
 
 import static com.google.aggregate.adtech.worker.model.ErrorCounter.NUM_REPORTS_WITH_ERRORS;
-import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 
 import com.google.aggregate.adtech.worker.model.DecryptionValidationResult;
+import com.google.aggregate.adtech.worker.model.ErrorCounter;
 import com.google.aggregate.adtech.worker.model.ErrorMessage;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.scp.operator.protos.shared.backend.ErrorCountProto.ErrorCount;
 import com.google.scp.operator.protos.shared.backend.ErrorSummaryProto.ErrorSummary;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Aggregates {@code DecryptionValidationResults} that have errors present so they can be summarized
  * and provided in the output as debugging information. This allows requesters to see how many
  * reports were excluded from aggregation and what errors were present.
+ *
+ * <p>Instances are thread-safe and count errors as they are reported, so callers do not need to
+ * retain the invalid results until the summary is created. Categories named by {@link
+ * ErrorCounter} are counted in adders indexed by ordinal; any other category (e.g. decryption
+ * errors) falls back to a concurrent map. So that the summary of a job does not depend on the order
+ * in which racing threads first counted each category, categories appear in the summary in {@link
+ * ErrorCounter} order, then any other category by name, followed by {@code
+ * NUM_REPORTS_WITH_ERRORS}.
  */
 public final class ErrorSummaryAggregator {
 
+  private static final ImmutableMap<String, Integer> ERROR_COUNTER_INDEX =
+      Arrays.stream(ErrorCounter.values())
+          .collect(toImmutableMap(ErrorCounter::name, ErrorCounter::ordinal));
+
+  private final AtomicReferenceArray<LongAdder> errorCounterCounts =
+      new AtomicReferenceArray<>(ErrorCounter.values().length);
+  private final ConcurrentHashMap<String, LongAdder> otherCategoryCounts =
+      new ConcurrentHashMap<>();
+  private final LongAdder reportsWithErrors = new LongAdder();
+
   /** Creates an {@code ErrorSummary} from a list of {@code DecryptionValidationResult} */
   public static ErrorSummary createErrorSummary(ImmutableList<DecryptionValidationResult> results) {
+    ErrorSummaryAggregator aggregator = new ErrorSummaryAggregator();
+    results.forEach(aggregator::add);
+    return aggregator.createErrorSummary();
+  }
 
-    ImmutableList<DecryptionValidationResult> onlyResultsWithErrors =
-        results.stream()
-            .filter(
-                decryptionValidationResult -> !decryptionValidationResult.errorMessages().isEmpty())
-            .collect(toImmutableList());
+  /** Counts the errors of a result, results without errors are ignored. */
+  public void add(DecryptionValidationResult result) {
+    ImmutableList<ErrorMessage> errorMessages = result.errorMessages();
+    if (errorMessages.isEmpty()) {
+      return;
+    }
+    for (ErrorMessage errorMessage : errorMessages) {
+      counterFor(errorMessage.category()).increment();
+    }
+    reportsWithErrors.increment();
+  }
 
-    // Iterate over all of the {@code ErrorMessages} and count the occurrence of each category
-    ImmutableMap<String, Long> errorCounts =
-        onlyResultsWithErrors.stream()
-            .map(DecryptionValidationResult::errorMessages)
-            .flatMap(ImmutableList::stream)
-            .collect(toImmutableMap(ErrorMessage::category, (unused) -> 1L, Math::addExact));
-    if (onlyResultsWithErrors.size() > 0) {
-      errorCounts =
-          ImmutableMap.<String, Long>builder()
-              .putAll(errorCounts)
-              .put(NUM_REPORTS_WITH_ERRORS.name(), Long.valueOf(onlyResultsWithErrors.size()))
-              .build();
+  /** Creates an {@code ErrorSummary} from the errors counted so far. */
+  public ErrorSummary createErrorSummary() {
+    ErrorSummary.Builder errorSummary = ErrorSummary.newBuilder();
+    for (ErrorCounter errorCounter : ErrorCounter.values()) {
+      LongAdder counter = errorCounterCounts.get(errorCounter.ordinal());
+      if (counter != null) {
+        errorSummary.addErrorCounts(
+            ErrorCount.newBuilder().setCategory(errorCounter.name()).setCount(counter.sum()));
+      }
     }
+    for (String category : ImmutableSortedSet.copyOf(otherCategoryCounts.keySet())) {
+      errorSummary.addErrorCounts(
+          ErrorCount.newBuilder()
+              .setCategory(category)
+              .setCount(otherCategoryCounts.get(category).sum()));
+    }
+    long numReportsWithErrors = reportsWithErrors.sum();
+    if (numReportsWithErrors > 0) {
+      errorSummary.addErrorCounts(
+          ErrorCount.newBuilder()
+              .setCategory(NUM_REPORTS_WITH_ERRORS.name())
+              .setCount(numReportsWithErrors));
+    }
+    return errorSummary.build();
+  }
 
-    return ErrorSummary.newBuilder()
-        .addAllErrorCounts(
-            errorCounts.entrySet().stream()
-                .map(
-                    i ->
-                        ErrorCount.newBuilder()
-                            .setCount(i.getValue())
-                            .setCategory(i.getKey())
-                            .build())
-                .collect(toImmutableList()))
-        .build();
+  private LongAdder counterFor(String category) {
+    Integer index = ERROR_COUNTER_INDEX.get(category);
+    if (index == null) {
+      return otherCategoryCounts.computeIfAbsent(category, unused -> new LongAdder());
+    }
+    LongAdder counter = errorCounterCounts.get(index);
+    if (counter != null) {
+      return counter;
+    }
+    LongAdder newCounter = new LongAdder();
+    if (errorCounterCounts.compareAndSet(index, null, newCounter)) {
+      return newCounter;
+    }
+    return errorCounterCounts.get(index);
   }
 }
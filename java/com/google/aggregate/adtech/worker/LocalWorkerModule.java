@@ -19,8 +19,22 @@ package com.google.aggregate.adtech.worker;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.aggregate.adtech.worker.Annotations.BenchmarkMode;
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.DecryptionBatchSize;
+import com.google.aggregate.adtech.worker.Annotations.DecryptionThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
+import com.google.aggregate.adtech.worker.Annotations.KeyFetchThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.MaxShardReadsInFlight;
+import com.google.aggregate.adtech.worker.Annotations.MaxStreamingBatchesInFlight;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.ParallelShardReadStreams;
+import com.google.aggregate.adtech.worker.Annotations.PrefetchDecryptionKeys;
+import com.google.aggregate.adtech.worker.Annotations.ShardRangeFetchThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.ShardReadAheadBytes;
+import com.google.aggregate.adtech.worker.Annotations.ShardReadRangeBytes;
+import com.google.aggregate.adtech.worker.Annotations.ShortCircuitValidation;
+import com.google.aggregate.adtech.worker.Annotations.SpillThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.StreamShardsByAvroBlock;
+import com.google.aggregate.adtech.worker.Annotations.StreamingBatchSize;
 import com.google.aggregate.adtech.worker.LibraryAnnotations.LocalOutputDirectory;
 import com.google.aggregate.adtech.worker.aggregation.concurrent.ConcurrentAggregationProcessor;
 import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainProcessor;
@@ -34,6 +48,8 @@ import com.google.aggregate.adtech.worker.decryption.RecordDecrypter;
 import com.google.aggregate.adtech.worker.local.LocalBlobStorageClientModule;
 import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
 import com.google.aggregate.adtech.worker.model.serdes.cbor.CborPayloadSerdes;
+import com.google.aggregate.adtech.worker.reader.ranged.FileSystemRangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.ranged.RangedBlobReader;
 import com.google.aggregate.adtech.worker.validation.SimulationValidationModule;
 import com.google.aggregate.perf.StopwatchExporter;
 import com.google.aggregate.perf.export.NoOpStopwatchExporter;
@@ -59,6 +75,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
 
 public final class LocalWorkerModule extends AbstractModule {
@@ -74,6 +91,17 @@ public final class LocalWorkerModule extends AbstractModule {
     bind(Boolean.class)
         .annotatedWith(DomainOptional.class)
         .toInstance(localWorkerArgs.isSkipDomain());
+    bind(Integer.class).annotatedWith(StreamingBatchSize.class).toInstance(0);
+    bind(Integer.class).annotatedWith(MaxStreamingBatchesInFlight.class).toInstance(32);
+    bind(Boolean.class).annotatedWith(PrefetchDecryptionKeys.class).toInstance(false);
+    bind(Integer.class).annotatedWith(ParallelShardReadStreams.class).toInstance(1);
+    bind(Integer.class).annotatedWith(ShardReadRangeBytes.class).toInstance(8 * 1024 * 1024);
+    bind(RangedBlobReader.class).to(FileSystemRangedBlobReader.class);
+    bind(Integer.class).annotatedWith(MaxShardReadsInFlight.class).toInstance(0);
+    bind(Long.class).annotatedWith(ShardReadAheadBytes.class).toInstance(0L);
+    bind(Integer.class).annotatedWith(DecryptionBatchSize.class).toInstance(0);
+    bind(Boolean.class).annotatedWith(StreamShardsByAvroBlock.class).toInstance(false);
+    bind(Boolean.class).annotatedWith(ShortCircuitValidation.class).toInstance(false);
     bind(OutputDomainProcessor.class)
         .to(localWorkerArgs.getDomainFileFormat().getDomainProcessorClass());
 
@@ -160,4 +188,32 @@ public final class LocalWorkerModule extends AbstractModule {
   ListeningExecutorService provideBlockingThreadPool() {
     return MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
   }
+
+  @Provides
+  @Singleton
+  @KeyFetchThreadPool
+  ListeningExecutorService provideKeyFetchThreadPool() {
+    return MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+  }
+
+  @Provides
+  @Singleton
+  @ShardRangeFetchThreadPool
+  ListeningExecutorService provideShardRangeFetchThreadPool() {
+    return MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+  }
+
+  @Provides
+  @Singleton
+  @SpillThreadPool
+  ListeningExecutorService provideSpillThreadPool() {
+    return MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+  }
+
+  @Provides
+  @Singleton
+  @DecryptionThreadPool
+  ForkJoinPool provideDecryptionThreadPool() {
+    return new ForkJoinPool(4);
+  }
 }
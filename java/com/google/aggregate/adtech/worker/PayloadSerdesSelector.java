@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker;
+
+import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
+import com.google.aggregate.adtech.worker.model.serdes.cbor.CborPayloadSerdes;
+import com.google.aggregate.adtech.worker.model.serdes.cbor.HistogramCborPayloadSerdes;
+
+/** CLI enum to select which {@link PayloadSerdes} decodes the CBOR payloads of reports. */
+public enum PayloadSerdesSelector {
+  JACKSON_CBOR(CborPayloadSerdes.class),
+  HISTOGRAM_CBOR(HistogramCborPayloadSerdes.class);
+
+  private final Class<? extends PayloadSerdes> payloadSerdesClass;
+
+  PayloadSerdesSelector(Class<? extends PayloadSerdes> payloadSerdesClass) {
+    this.payloadSerdesClass = payloadSerdesClass;
+  }
+
+  public Class<? extends PayloadSerdes> getPayloadSerdesClass() {
+    return payloadSerdesClass;
+  }
+}
@@ -16,20 +16,23 @@
 
 package com.google.aggregate.adtech.worker;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.scp.operator.protos.shared.backend.JobErrorCategoryProto.JobErrorCategory.DECRYPTION_ERROR;
 
+import com.google.aggregate.adtech.worker.Annotations.ShortCircuitValidation;
 import com.google.aggregate.adtech.worker.decryption.RecordDecrypter;
 import com.google.aggregate.adtech.worker.decryption.RecordDecrypter.DecryptionException;
 import com.google.aggregate.adtech.worker.model.DecryptionValidationResult;
 import com.google.aggregate.adtech.worker.model.EncryptedReport;
 import com.google.aggregate.adtech.worker.model.ErrorMessage;
 import com.google.aggregate.adtech.worker.model.Report;
+import com.google.aggregate.adtech.worker.validation.CompiledReportValidators;
 import com.google.aggregate.adtech.worker.validation.ReportValidator;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 import com.google.scp.operator.cpio.jobclient.model.Job;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import javax.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +42,10 @@ public final class ReportDecrypterAndValidator {
 
   private final RecordDecrypter recordDecrypter;
   private final Set<ReportValidator> reportValidators;
+  private final boolean shortCircuitValidation;
+  // Validators of the job whose reports are being validated, compiled once per job
+  private volatile CompiledReportValidators compiledValidators;
+  private final Object compileLock = new Object();
 
   private static final Logger logger = LoggerFactory.getLogger(ReportDecrypterAndValidator.class);
 
@@ -50,46 +57,112 @@ public final class ReportDecrypterAndValidator {
    */
   @Inject
   public ReportDecrypterAndValidator(
-      RecordDecrypter recordDecrypter, Set<ReportValidator> reportValidators) {
+      RecordDecrypter recordDecrypter,
+      Set<ReportValidator> reportValidators,
+      @ShortCircuitValidation boolean shortCircuitValidation) {
     this.recordDecrypter = recordDecrypter;
     this.reportValidators = reportValidators;
+    this.shortCircuitValidation = shortCircuitValidation;
   }
 
   /**
-   * Decrypts, deserializes, and validates a report.
+   * Decrypts, deserializes, and validates a report, handing it to the consumer if it is valid.
    *
-   * <p>Performs decryption, deserialization, and validation. The result is a
-   * DecryptionValidationResult which contains either the decrypted report or errors that came up in
-   * decryption/validation which can be summarized and provided to requestors as debug information.
+   * <p>No result is built for valid reports, so that reports can be aggregated as they are
+   * decrypted without an intermediate object per report. Invalid reports come with the errors that
+   * came up in decryption/validation, which can be summarized and provided to requestors as debug
+   * information.
+   *
+   * @return the errors of the report if it is invalid, empty if it was handed to the consumer
    */
-  public DecryptionValidationResult decryptAndValidate(EncryptedReport encryptedReport, Job ctx) {
+  public Optional<DecryptionValidationResult> decryptAndValidate(
+      EncryptedReport encryptedReport, Job ctx, Consumer<? super Report> validReportConsumer) {
+    Report report;
     try {
-      // Decrypt the report
-      Report report = recordDecrypter.decryptSingleReport(encryptedReport);
+      report = recordDecrypter.decryptSingleReport(encryptedReport);
+    } catch (DecryptionException e) {
+      return Optional.of(decryptionFailure(e));
+    }
 
-      // Perform validations
-      ImmutableList<ErrorMessage> validationErrors =
-          reportValidators.stream()
-              .map(reportValidator -> reportValidator.validate(report, ctx))
-              .filter(Optional::isPresent)
-              .map(Optional::get)
-              .collect(toImmutableList());
+    ImmutableList<ErrorMessage> validationErrors = validate(report, ctx);
+    if (!validationErrors.isEmpty()) {
+      return Optional.of(
+          DecryptionValidationResult.builder().addAllErrorMessage(validationErrors).build());
+    }
+    validReportConsumer.accept(report);
+    return Optional.empty();
+  }
 
-      if (validationErrors.isEmpty()) {
-        return DecryptionValidationResult.builder().setReport(report).build();
+  /**
+   * Runs the validators on the report, compiling them for the job when its first report is
+   * validated.
+   */
+  private ImmutableList<ErrorMessage> validate(Report report, Job ctx) {
+    CompiledReportValidators validators = compiledValidators;
+    if (validators == null || validators.job() != ctx) {
+      validators = compileValidators(ctx);
+    }
+    return validators.validate(report);
+  }
+
+  /**
+   * Compiles the validators of the job unless a racing thread already has, so that per-job state
+   * of the validators is not split between copies.
+   */
+  private CompiledReportValidators compileValidators(Job ctx) {
+    synchronized (compileLock) {
+      CompiledReportValidators validators = compiledValidators;
+      if (validators == null || validators.job() != ctx) {
+        validators =
+            CompiledReportValidators.compile(reportValidators, ctx, shortCircuitValidation);
+        compiledValidators = validators;
       }
+      return validators;
+    }
+  }
 
-      return DecryptionValidationResult.builder().addAllErrorMessage(validationErrors).build();
-    } catch (DecryptionException e) {
-      logger.error("Report Decryption Failure", e);
-      String detailedErrorMessage = String.format("Report Decryption Failure, cause: %s", e);
-      return DecryptionValidationResult.builder()
-          .addErrorMessage(
-              ErrorMessage.builder()
-                  .setCategory(DECRYPTION_ERROR.name())
-                  .setDetailedErrorMessage(detailedErrorMessage)
-                  .build())
-          .build();
+  /**
+   * Lets the validators of the job report its statistics once all its reports are validated, and
+   * releases them.
+   */
+  public void jobFinished(Job ctx) {
+    CompiledReportValidators validators;
+    synchronized (compileLock) {
+      validators = compiledValidators;
+      if (validators == null || validators.job() != ctx) {
+        return;
+      }
+      compiledValidators = null;
     }
+    validators.jobFinished();
+  }
+
+  private static DecryptionValidationResult decryptionFailure(DecryptionException e) {
+    logger.error("Report Decryption Failure", e);
+    String detailedErrorMessage = String.format("Report Decryption Failure, cause: %s", e);
+    return DecryptionValidationResult.builder()
+        .addErrorMessage(
+            ErrorMessage.builder()
+                .setCategory(DECRYPTION_ERROR.name())
+                .setDetailedErrorMessage(detailedErrorMessage)
+                .build())
+        .build();
+  }
+
+  /**
+   * Fetches the key for reports encrypted with the given key ID ahead of their decryption.
+   *
+   * @throws DecryptionException if the key could not be fetched
+   */
+  public void prefetchDecryptionKey(String keyId) throws DecryptionException {
+    recordDecrypter.prefetchDecryptionKey(keyId);
+  }
+
+  /**
+   * Hit and miss counts of the decryption keys kept around across jobs, where each miss is a fetch
+   * of the key.
+   */
+  public CacheStats decryptionKeyCacheStats() {
+    return recordDecrypter.decryptionKeyCacheStats();
   }
 }
@@ -19,6 +19,7 @@ package com.google.aggregate.adtech.worker;
 import com.google.aggregate.adtech.worker.Annotations.PullWorkService;
 import com.google.aggregate.adtech.worker.Annotations.WorkerServiceManager;
 import com.google.aggregate.adtech.worker.aggregation.engine.AggregationEngine;
+import com.google.aggregate.adtech.worker.aggregation.engine.AggregationTable;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier;
 import com.google.aggregate.perf.StopwatchRegistry;
 import com.google.aggregate.privacy.noise.proto.Params.PrivacyParameters;
@@ -58,8 +59,8 @@ public final class WorkerModule extends AbstractModule {
   }
 
   @Provides
-  AggregationEngine provideAggregationEngine() {
-    return AggregationEngine.create();
+  AggregationEngine provideAggregationEngine(AggregationTable aggregationTable) {
+    return AggregationEngine.create(aggregationTable);
   }
 
   @Override
@@ -21,7 +21,11 @@ import static com.google.scp.operator.shared.model.BackendModelUtil.toJobKeyStri
 
 import com.google.aggregate.adtech.worker.Annotations.BenchmarkMode;
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.DecryptionThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.KeyFetchThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.ShardRangeFetchThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.SpillThreadPool;
 import com.google.aggregate.adtech.worker.exceptions.AggregationJobProcessException;
 import com.google.aggregate.adtech.worker.validation.JobValidator;
 import com.google.aggregate.perf.StopwatchExporter;
@@ -41,6 +45,7 @@ import com.google.scp.shared.proto.ProtoUtil;
 import java.time.Clock;
 import java.time.Instant;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import javax.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +65,10 @@ public final class WorkerPullWorkService extends AbstractExecutionThreadService
 
   private final ListeningExecutorService nonBlockingThreadPool;
   private final ListeningExecutorService blockingThreadPool;
+  private final ListeningExecutorService keyFetchThreadPool;
+  private final ListeningExecutorService shardRangeFetchThreadPool;
+  private final ListeningExecutorService spillThreadPool;
+  private final ForkJoinPool decryptionThreadPool;
 
   // Tracks whether the service should be pulling more jobs. Once the shutdown of the service
   // is initiated, this is switched to false.
@@ -79,6 +88,10 @@ public final class WorkerPullWorkService extends AbstractExecutionThreadService
       StopwatchExporter stopwatchExporter,
       @NonBlockingThreadPool ListeningExecutorService nonBlockingThreadPool,
       @BlockingThreadPool ListeningExecutorService blockingThreadPool,
+      @KeyFetchThreadPool ListeningExecutorService keyFetchThreadPool,
+      @ShardRangeFetchThreadPool ListeningExecutorService shardRangeFetchThreadPool,
+      @SpillThreadPool ListeningExecutorService spillThreadPool,
+      @DecryptionThreadPool ForkJoinPool decryptionThreadPool,
       @BenchmarkMode boolean benchmarkMode) {
     this.jobClient = jobClient;
     this.jobProcessor = jobProcessor;
@@ -89,6 +102,10 @@ public final class WorkerPullWorkService extends AbstractExecutionThreadService
     this.stopwatchExporter = stopwatchExporter;
     this.nonBlockingThreadPool = nonBlockingThreadPool;
     this.blockingThreadPool = blockingThreadPool;
+    this.keyFetchThreadPool = keyFetchThreadPool;
+    this.shardRangeFetchThreadPool = shardRangeFetchThreadPool;
+    this.spillThreadPool = spillThreadPool;
+    this.decryptionThreadPool = decryptionThreadPool;
     this.benchmarkMode = benchmarkMode;
   }
 
@@ -174,6 +191,10 @@ public final class WorkerPullWorkService extends AbstractExecutionThreadService
 
     nonBlockingThreadPool.shutdownNow();
     blockingThreadPool.shutdownNow();
+    keyFetchThreadPool.shutdownNow();
+    shardRangeFetchThreadPool.shutdownNow();
+    spillThreadPool.shutdownNow();
+    decryptionThreadPool.shutdownNow();
   }
 
   @Override
@@ -24,6 +24,7 @@ import static com.google.aggregate.adtech.worker.AggregationWorkerReturnCode.PRI
 import static com.google.aggregate.adtech.worker.AggregationWorkerReturnCode.PRIVACY_BUDGET_EXHAUSTED;
 import static com.google.aggregate.adtech.worker.AggregationWorkerReturnCode.RESULT_LOGGING_ERROR;
 import static com.google.aggregate.adtech.worker.AggregationWorkerReturnCode.SUCCESS;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.Futures.whenAllSucceed;
@@ -31,14 +32,25 @@ import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.scp.operator.shared.model.BackendModelUtil.toJobKeyString;
 
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.DecryptionBatchSize;
+import com.google.aggregate.adtech.worker.Annotations.DecryptionThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
+import com.google.aggregate.adtech.worker.Annotations.KeyFetchThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.MaxShardReadsInFlight;
+import com.google.aggregate.adtech.worker.Annotations.MaxStreamingBatchesInFlight;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.PrefetchDecryptionKeys;
+import com.google.aggregate.adtech.worker.Annotations.ShardReadAheadBytes;
+import com.google.aggregate.adtech.worker.Annotations.StreamShardsByAvroBlock;
+import com.google.aggregate.adtech.worker.Annotations.StreamingBatchSize;
 import com.google.aggregate.adtech.worker.ErrorSummaryAggregator;
 import com.google.aggregate.adtech.worker.JobProcessor;
 import com.google.aggregate.adtech.worker.ReportDecrypterAndValidator;
 import com.google.aggregate.adtech.worker.ResultLogger;
+import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomain;
 import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainProcessor;
 import com.google.aggregate.adtech.worker.aggregation.engine.AggregationEngine;
+import com.google.aggregate.adtech.worker.aggregation.engine.SortedAggregatedFactIterator;
 import com.google.aggregate.adtech.worker.aggregation.privacy.PrivacyBudgetingServiceBridge;
 import com.google.aggregate.adtech.worker.aggregation.privacy.PrivacyBudgetingServiceBridge.PrivacyBudgetUnit;
 import com.google.aggregate.adtech.worker.aggregation.privacy.PrivacyBudgetingServiceBridge.PrivacyBudgetingServiceBridgeException;
@@ -57,16 +69,14 @@ import com.google.aggregate.perf.StopwatchRegistry;
 import com.google.aggregate.privacy.noise.NoisedAggregationRunner;
 import com.google.aggregate.privacy.noise.model.NoisedAggregatedResultSet;
 import com.google.aggregate.privacy.noise.model.NoisedAggregationResult;
+import com.google.aggregate.protocol.avro.AvroReportsBlock;
 import com.google.aggregate.protocol.avro.AvroReportsReader;
 import com.google.aggregate.protocol.avro.AvroReportsReaderFactory;
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.MapDifference;
-import com.google.common.collect.MapDifference.ValueDifference;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Streams;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -82,15 +92,21 @@ import com.google.scp.operator.protos.shared.backend.ResultInfoProto.ResultInfo;
 import com.google.scp.shared.proto.ProtoUtil;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigInteger;
 import java.security.AccessControlException;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.BitSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.function.Function;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.stream.IntStream;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import org.apache.avro.AvroRuntimeException;
@@ -110,10 +126,6 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
   // Key to indicate whether this is a debug job
   public static final String JOB_PARAM_DEBUG_RUN = "debug_run";
 
-  // Limit on how many invalid reports are collected; if a batch has a lot of invalid records, not
-  // all of them will necessarily be captured.
-  private static final int MAX_INVALID_REPORTS_COLLECTED = 1000;
-
   private static final String PRIVACY_BUDGET_EXHAUSTED_ERROR_MESSAGE =
       "Insufficient privacy budget for one or more aggregatable reports. No aggregatable report can"
           + " appear in more than one batch or contribute to more than one summary report.";
@@ -126,6 +138,7 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
   private final NoisedAggregationRunner noisedAggregationRunner;
   private final ResultLogger resultLogger;
   private final BlobStorageClient blobStorageClient;
+  private final ShardStreamOpener shardStreamOpener;
   private final AvroReportsReaderFactory readerFactory;
   private final AvroRecordEncryptedReportConverter encryptedReportConverter;
   private final Clock clock;
@@ -133,8 +146,16 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
   private final PrivacyBudgetingServiceBridge privacyBudgetingServiceBridge;
   private final ListeningExecutorService blockingThreadPool;
   private final ListeningExecutorService nonBlockingThreadPool;
+  private final ListeningExecutorService keyFetchThreadPool;
+  private final ForkJoinPool decryptionThreadPool;
   private final boolean domainOptional;
-  // Provider<Boolean> used so the value can be dynamically changed in tests
+  private final int streamingBatchSize;
+  private final int maxStreamingBatchesInFlight;
+  private final boolean prefetchDecryptionKeys;
+  private final boolean streamShardsByAvroBlock;
+  private final int maxShardReadsInFlight;
+  private final long shardReadAheadBytes;
+  private final int decryptionBatchSize;
 
   @Inject
   ConcurrentAggregationProcessor(
@@ -144,6 +165,7 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
       NoisedAggregationRunner noisedAggregationRunner,
       ResultLogger resultLogger,
       BlobStorageClient blobStorageClient,
+      ShardStreamOpener shardStreamOpener,
       AvroReportsReaderFactory readerFactory,
       AvroRecordEncryptedReportConverter encryptedReportConverter,
       Clock clock,
@@ -151,13 +173,23 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
       PrivacyBudgetingServiceBridge privacyBudgetingServiceBridge,
       @BlockingThreadPool ListeningExecutorService blockingThreadPool,
       @NonBlockingThreadPool ListeningExecutorService nonBlockingThreadPool,
-      @DomainOptional Boolean domainOptional) {
+      @KeyFetchThreadPool ListeningExecutorService keyFetchThreadPool,
+      @DecryptionThreadPool ForkJoinPool decryptionThreadPool,
+      @DomainOptional Boolean domainOptional,
+      @StreamingBatchSize Integer streamingBatchSize,
+      @MaxStreamingBatchesInFlight Integer maxStreamingBatchesInFlight,
+      @PrefetchDecryptionKeys Boolean prefetchDecryptionKeys,
+      @StreamShardsByAvroBlock Boolean streamShardsByAvroBlock,
+      @MaxShardReadsInFlight Integer maxShardReadsInFlight,
+      @ShardReadAheadBytes Long shardReadAheadBytes,
+      @DecryptionBatchSize Integer decryptionBatchSize) {
     this.reportDecrypterAndValidator = reportDecrypterAndValidator;
     this.engineProvider = engineProvider;
     this.outputDomainProcessor = outputDomainProcessor;
     this.noisedAggregationRunner = noisedAggregationRunner;
     this.resultLogger = resultLogger;
     this.blobStorageClient = blobStorageClient;
+    this.shardStreamOpener = shardStreamOpener;
     this.readerFactory = readerFactory;
     this.encryptedReportConverter = encryptedReportConverter;
     this.clock = clock;
@@ -165,7 +197,16 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
     this.privacyBudgetingServiceBridge = privacyBudgetingServiceBridge;
     this.blockingThreadPool = blockingThreadPool;
     this.nonBlockingThreadPool = nonBlockingThreadPool;
+    this.keyFetchThreadPool = keyFetchThreadPool;
+    this.decryptionThreadPool = decryptionThreadPool;
     this.domainOptional = domainOptional;
+    this.streamingBatchSize = streamingBatchSize;
+    this.maxStreamingBatchesInFlight = maxStreamingBatchesInFlight;
+    this.prefetchDecryptionKeys = prefetchDecryptionKeys;
+    this.streamShardsByAvroBlock = streamShardsByAvroBlock;
+    this.maxShardReadsInFlight = maxShardReadsInFlight;
+    this.shardReadAheadBytes = shardReadAheadBytes;
+    this.decryptionBatchSize = decryptionBatchSize;
   }
 
   /**
@@ -184,6 +225,8 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
     Stopwatch processingStopwatch =
         stopwatches.createStopwatch("concurrent-" + toJobKeyString(job.jobKey()));
     processingStopwatch.start();
+    // Keys are cached across jobs, the counts of this job are taken against those at its start
+    CacheStats keyCacheStatsAtStart = reportDecrypterAndValidator.decryptionKeyCacheStats();
 
     JobResult.Builder jobResultBuilder = JobResult.builder().setJobKey(job.jobKey());
 
@@ -199,7 +242,7 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
       }
     }
 
-    ListenableFuture<ImmutableSet<BigInteger>> outputDomain;
+    ListenableFuture<OutputDomain> outputDomain;
     Optional<DataLocation> outputDomainLocation = Optional.empty();
     Map<String, String> jobParams = job.requestInfo().getJobParameters();
     if (jobParams.containsKey(JOB_PARAM_OUTPUT_DOMAIN_BUCKET_NAME)
@@ -230,7 +273,7 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
       outputDomain =
           outputDomainLocation
               .map(outputDomainProcessor::readAndDedupDomain)
-              .orElse(immediateFuture(ImmutableSet.of()));
+              .orElse(immediateFuture(OutputDomain.empty()));
     } catch (ConcurrentShardReadException e) {
       throw new AggregationJobProcessException(
           INPUT_DATA_READ_FAILED, "Exception while reading reports input data.", e);
@@ -239,60 +282,70 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
           INPUT_DATA_READ_FAILED, "Exception while reading domain input data.", e);
     }
 
-    try {
-      // List of futures, one for each data shard; a shard is read into a list of encrypted reports.
-      ImmutableList<ListenableFuture<ImmutableList<EncryptedReport>>> shardReads =
-          Streams.mapWithIndex(
-                  dataShards.stream(),
-                  (shard, shardIndex) -> readShardAsync(job, shard, shardIndex))
-              .collect(toImmutableList());
-
-      ImmutableList<ListenableFuture<ImmutableList<DecryptionValidationResult>>> decryptedShards =
-          Streams.mapWithIndex(
-                  shardReads.stream(),
-                  (shard, shardIndex) -> decryptShardAsync(job, shard, shardIndex))
-              .collect(toImmutableList());
-
-      ImmutableList<ListenableFuture<ImmutableList<DecryptionValidationResult>>>
-          invalidReportsPerShards =
-              decryptedShards.stream()
-                  .map(this::collectInvalidReportsAsync)
-                  .collect(toImmutableList());
-
-      ListenableFuture<List<ImmutableList<DecryptionValidationResult>>>
-          invalidReportsPerShardUnified = Futures.successfulAsList(invalidReportsPerShards);
-
-      // TODO(b/199208370): Aggregate errors if there are too many.
-      ListenableFuture<ImmutableList<DecryptionValidationResult>> invalidReportsFuture =
-          Futures.transform(
-              invalidReportsPerShardUnified,
-              invalidReportPerShardList ->
-                  invalidReportPerShardList.stream()
-                      .flatMap(ImmutableList::stream)
-                      .limit(MAX_INVALID_REPORTS_COLLECTED)
-                      .collect(toImmutableList()),
-              nonBlockingThreadPool);
-
-      AggregationEngine aggregationEngine = engineProvider.get();
-
-      // List of futures for each decrypted shard: each future finishes when all the reports from
-      // the
-      // shard have been consumed by the aggregation engine.
-      ImmutableList<ListenableFuture<Void>> shardAggregatedFutures =
-          Streams.mapWithIndex(
-                  decryptedShards.stream(),
-                  (shard, shardIndex) -> aggregateShardAsync(aggregationEngine, shard, shardIndex))
-              .collect(toImmutableList());
+    // Closing the engine releases what its table holds outside of the heap, e.g. spill files.
+    try (AggregationEngine aggregationEngine = engineProvider.get()) {
+      Optional<DecryptionKeyPrefetcher> keyPrefetcher =
+          prefetchDecryptionKeys
+              ? Optional.of(
+                  new DecryptionKeyPrefetcher(reportDecrypterAndValidator, keyFetchThreadPool))
+              : Optional.empty();
+      ShardReadScheduler readScheduler =
+          new ShardReadScheduler(blockingThreadPool, maxShardReadsInFlight, shardReadAheadBytes);
+
+      // Errors of invalid reports are counted along the way for the error summary, valid reports
+      // are only handed to the aggregation engine.
+      ErrorSummaryAggregator errorSummaryAggregator = new ErrorSummaryAggregator();
+
+      // List of futures, one for each data shard: each future finishes when all the reports from
+      // the shard have been run through the aggregation engine.
+      ImmutableList<ListenableFuture<Void>> shardAggregatedFutures;
+
+      if (streamingBatchSize > 0 || streamShardsByAvroBlock) {
+        // Shared by all shards of the job, bounds how many batches are held in memory at once.
+        Semaphore batchPermits = new Semaphore(maxStreamingBatchesInFlight);
+
+        shardAggregatedFutures =
+            Streams.mapWithIndex(
+                    dataShards.stream(),
+                    (shard, shardIndex) ->
+                        streamShardAsync(
+                            job,
+                            shard,
+                            shardIndex,
+                            aggregationEngine,
+                            errorSummaryAggregator,
+                            batchPermits,
+                            keyPrefetcher,
+                            readScheduler))
+                .collect(toImmutableList());
+      } else {
+        // A shard is read into a list of encrypted reports once admitted by the read scheduler, and
+        // its reports are released once it has been aggregated.
+        shardAggregatedFutures =
+            Streams.mapWithIndex(
+                    dataShards.stream(),
+                    (shard, shardIndex) ->
+                        processShardAsync(
+                            job,
+                            shard,
+                            shardIndex,
+                            aggregationEngine,
+                            errorSummaryAggregator,
+                            keyPrefetcher,
+                            readScheduler))
+                .collect(toImmutableList());
+      }
 
       // Combines the futures above to produce a future that completes when all reports from all
       // shards have been run through the aggregation engine.
       ListenableFuture<Void> aggregationCompletion =
           whenAllSucceed(shardAggregatedFutures).call(() -> null, directExecutor());
-
-      ListenableFuture<ImmutableMap<BigInteger, AggregatedFact>> aggregationFuture =
+      // The aggregation is read in bucket order to be joined with the output domain as it is
+      // noised, so that only the noised facts are materialized.
+      ListenableFuture<SortedAggregatedFactIterator> aggregationFuture =
           Futures.transform(
               aggregationCompletion,
-              unused -> aggregationEngine.makeAggregation(),
+              unused -> aggregationEngine.sortedAggregatedFactIterator(),
               nonBlockingThreadPool);
 
       ListenableFuture<NoisedAggregatedResultSet> aggregationFinalFuture =
@@ -305,11 +358,12 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
 
       NoisedAggregatedResultSet noisedResultSet = aggregationFinalFuture.get();
 
-      ImmutableList<DecryptionValidationResult> invalidReports = invalidReportsFuture.get();
+      // All shards have been aggregated at this point, so every invalid report has been counted
+      aggregationCompletion.get();
       processingStopwatch.stop();
 
-      // Create error summary from the list of errors from decryption/validation
-      ErrorSummary errorSummary = ErrorSummaryAggregator.createErrorSummary(invalidReports);
+      // Create error summary from the errors counted during decryption/validation
+      ErrorSummary errorSummary = errorSummaryAggregator.createErrorSummary();
 
       ImmutableList<PrivacyBudgetUnit> missingPrivacyBudgetUnits = ImmutableList.of();
 
@@ -387,6 +441,15 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
       }
 
       throw e;
+    } finally {
+      // The validators compiled for the job are released whether it succeeded or not
+      reportDecrypterAndValidator.jobFinished(job);
+      CacheStats keyCacheStats =
+          reportDecrypterAndValidator.decryptionKeyCacheStats().minus(keyCacheStatsAtStart);
+      logger.info(
+          String.format(
+              "Decryption key cache of job %s: %d hits, %d misses",
+              toJobKeyString(job.jobKey()), keyCacheStats.hitCount(), keyCacheStats.missCount()));
     }
   }
 
@@ -413,49 +476,32 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
   }
 
   private NoisedAggregatedResultSet adjustAggregationWithDomainAndNoise(
-      ListenableFuture<ImmutableSet<BigInteger>> outputDomainFuture,
-      ListenableFuture<ImmutableMap<BigInteger, AggregatedFact>> aggregationFuture,
+      ListenableFuture<OutputDomain> outputDomainFuture,
+      ListenableFuture<SortedAggregatedFactIterator> aggregationFuture,
       Optional<Double> debugPrivacyEpsilon,
       Boolean debugRun) {
     try {
-      ImmutableSet<BigInteger> outputDomain = Futures.getDone(outputDomainFuture);
-      ImmutableMap<BigInteger, AggregatedFact> aggregation = Futures.getDone(aggregationFuture);
-
-      // This pseudo-aggregation has all zeroes for the output domain. If a key is present in the
-      // output domain, but not in the aggregation itself, a zero is inserted which will later be
-      // noised to some value.
-      ImmutableMap<BigInteger, AggregatedFact> outputDomainPseudoAggregation =
-          outputDomain.stream()
-              .collect(
-                  ImmutableMap.toImmutableMap(
-                      Function.identity(), key -> AggregatedFact.create(key, /* metric= */ 0)));
-
-      // Difference by key is computed so that the output can be adjusted for the output domain.
-      // Keys that are in the aggregation data, but not in the output domain, are subject to both
-      // noising and thresholding.
-      // Otherwise, the data is subject to noising only.
-      MapDifference<BigInteger, AggregatedFact> pseudoDiff =
-          Maps.difference(aggregation, outputDomainPseudoAggregation);
-
-      // The values for common keys should in theory be differing, since the pseudo aggregation will
-      // have all zeroes, while the 'real' aggregation will have non-zeroes, but just in case to
-      // cover overlapping zeroes, matching keys are also processed.
-      // `overlappingZeroes` includes all the keys present in both domain and reports but
-      // the values are 0.
-      Iterable<AggregatedFact> overlappingZeroes = pseudoDiff.entriesInCommon().values();
-      // `overlappingNonZeroes` includes all the keys present in both domain and reports, and the
-      // value is non-zero in reports.
-      Iterable<AggregatedFact> overlappingNonZeroes =
-          Maps.transformValues(pseudoDiff.entriesDiffering(), ValueDifference::leftValue).values();
-      // `domainOutputOnlyZeroes` only includes keys in domain.
-      Iterable<AggregatedFact> domainOutputOnlyZeroes = pseudoDiff.entriesOnlyOnRight().values();
+      OutputDomain outputDomain = Futures.getDone(outputDomainFuture);
+      SortedAggregatedFactIterator aggregation = Futures.getDone(aggregationFuture);
 
+      // The aggregation is joined with the output domain by key so that the output can be adjusted
+      // for the output domain. Keys that are in the aggregation data, but not in the output domain,
+      // are subject to both noising and thresholding.
+      // Otherwise, the data is subject to noising only.
+      // Keys only in the aggregation are kept aside only if they are part of the output.
+      DomainJoin domainJoin =
+          new DomainJoin(
+              outputDomain, aggregation, /* keepReportsOnly= */ debugRun || domainOptional);
+
+      // `overlapping` includes all the keys present in both domain and reports, with their values
+      // in reports, zero or not. They are joined as they are noised.
+      Iterable<AggregatedFact> overlapping = domainJoin.overlapping();
       NoisedAggregationResult noisedOverlappingNoThreshold =
-          noisedAggregationRunner.noise(
-              Iterables.concat(overlappingZeroes, overlappingNonZeroes),
-              /* doThreshold= */ false,
-              debugPrivacyEpsilon);
+          noisedAggregationRunner.noise(overlapping, /* doThreshold= */ false, debugPrivacyEpsilon);
 
+      // `domainOutputOnlyZeroes` only includes keys in domain. A zero is inserted for each of them,
+      // which will later be noised to some value.
+      Iterable<AggregatedFact> domainOutputOnlyZeroes = domainJoin.domainOnlyZeroes();
       NoisedAggregationResult noisedDomainOnlyNoThreshold =
           noisedAggregationRunner.noise(
               domainOutputOnlyZeroes, /* doThreshold= */ false, debugPrivacyEpsilon);
@@ -470,9 +516,7 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
         // Noise values for keys that are only in reports (not in domain) without thresholding
         NoisedAggregationResult noisedReportsOnlyNoThreshold =
             noisedAggregationRunner.noise(
-                pseudoDiff.entriesOnlyOnLeft().values(),
-                /* doThreshold= */ false,
-                debugPrivacyEpsilon);
+                domainJoin.reportsOnly(), /* doThreshold= */ false, debugPrivacyEpsilon);
 
         NoisedAggregationResult noisedReportsOnlyNoThresholdWithAnno =
             NoisedAggregationResult.addDebugAnnotations(
@@ -494,9 +538,7 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
       if (domainOptional) {
         NoisedAggregationResult noisedReportsOnlyThreshold =
             noisedAggregationRunner.noise(
-                pseudoDiff.entriesOnlyOnLeft().values(),
-                /* doThreshold= */ true,
-                debugPrivacyEpsilon);
+                domainJoin.reportsOnly(), /* doThreshold= */ true, debugPrivacyEpsilon);
         return noisedResultSetBuilder
             .setNoisedResult(
                 NoisedAggregationResult.merge(noisedDomainNoThreshold, noisedReportsOnlyThreshold))
@@ -509,16 +551,46 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
     }
   }
 
-  private ListenableFuture<ImmutableList<EncryptedReport>> readShardAsync(
-      Job ctx, DataLocation shard, long shardIndex) {
-    return blockingThreadPool.submit(() -> readShard(ctx, shard, shardIndex));
+  /**
+   * Reads the shard once admitted by the read scheduler, then decrypts and aggregates its reports.
+   *
+   * @return future that completes once all the reports of the shard have been aggregated
+   */
+  private ListenableFuture<Void> processShardAsync(
+      Job ctx,
+      DataLocation shard,
+      long shardIndex,
+      AggregationEngine aggregationEngine,
+      ErrorSummaryAggregator errorSummaryAggregator,
+      Optional<DecryptionKeyPrefetcher> keyPrefetcher,
+      ShardReadScheduler readScheduler) {
+    return readScheduler.schedule(
+        () -> readShard(ctx, shard, shardIndex),
+        ConcurrentAggregationProcessor::retainedBytesOf,
+        encryptedShard ->
+            decryptShardAsync(
+                ctx,
+                encryptedShard,
+                shardIndex,
+                aggregationEngine,
+                errorSummaryAggregator,
+                keyPrefetcher));
+  }
+
+  /** Returns the number of payload bytes held by the reports of a read shard or batch. */
+  private static long retainedBytesOf(List<EncryptedReport> shardReports) {
+    long bytes = 0;
+    for (EncryptedReport report : shardReports) {
+      bytes += report.payload().sizeIfKnown().or(0L);
+    }
+    return bytes;
   }
 
   private ImmutableList<EncryptedReport> readShard(Job ctx, DataLocation shard, long shardIndex) {
     Stopwatch avroStopwatch =
         stopwatches.createStopwatch(String.format("shard-read-%d", shardIndex));
     avroStopwatch.start();
-    try (InputStream shardStream = blobStorageClient.getBlob(shard);
+    try (InputStream shardStream = shardStreamOpener.open(shard);
         AvroReportsReader reader = readerFactory.create(shardStream)) {
       ImmutableList<EncryptedReport> shardReports =
           reader.streamRecords().map(encryptedReportConverter).collect(toImmutableList());
@@ -529,63 +601,215 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
     }
   }
 
-  private ListenableFuture<ImmutableList<DecryptionValidationResult>> decryptShardAsync(
-      Job ctx, ListenableFuture<ImmutableList<EncryptedReport>> shard, long shardIndex) {
+  private ListenableFuture<Void> decryptShardAsync(
+      Job ctx,
+      ImmutableList<EncryptedReport> encryptedShard,
+      long shardIndex,
+      AggregationEngine aggregationEngine,
+      ErrorSummaryAggregator errorSummaryAggregator,
+      Optional<DecryptionKeyPrefetcher> keyPrefetcher) {
     return Futures.transform(
-        shard,
-        encryptedShard -> decryptShard(ctx, encryptedShard, shardIndex),
-        nonBlockingThreadPool);
+        prefetchKeysAsync(keyPrefetcher, encryptedShard),
+        unused ->
+            decryptShard(
+                ctx, encryptedShard, shardIndex, aggregationEngine, errorSummaryAggregator),
+        decryptionExecutor());
   }
 
-  private ImmutableList<DecryptionValidationResult> decryptShard(
-      Job ctx, ImmutableList<EncryptedReport> shard, long shardIndex) {
+  /**
+   * Returns the executor reports are decrypted on: the work-stealing decryption pool if a
+   * decryption batch size is set, the non-blocking pool otherwise.
+   */
+  private Executor decryptionExecutor() {
+    return decryptionBatchSize > 0 ? decryptionThreadPool : nonBlockingThreadPool;
+  }
+
+  /**
+   * Returns a future that completes once the keys of the reports have been fetched, immediately if
+   * keys are not prefetched.
+   */
+  private static ListenableFuture<Void> prefetchKeysAsync(
+      Optional<DecryptionKeyPrefetcher> keyPrefetcher, Iterable<EncryptedReport> reports) {
+    return keyPrefetcher
+        .map(prefetcher -> prefetcher.prefetchKeysOf(reports))
+        .orElse(immediateFuture(null));
+  }
+
+  private Void decryptShard(
+      Job ctx,
+      ImmutableList<EncryptedReport> shard,
+      long shardIndex,
+      AggregationEngine aggregationEngine,
+      ErrorSummaryAggregator errorSummaryAggregator) {
     Stopwatch decryptionStopwatch =
         stopwatches.createStopwatch(String.format("shard-decrypt-%d", shardIndex));
     decryptionStopwatch.start();
-    ImmutableList<DecryptionValidationResult> results =
-        shard.stream()
-            .map(report -> reportDecrypterAndValidator.decryptAndValidate(report, ctx))
-            .collect(toImmutableList());
+    decryptReports(ctx, shard, aggregationEngine, errorSummaryAggregator);
     decryptionStopwatch.stop();
-    return results;
+    return null;
   }
 
-  private ListenableFuture<ImmutableList<DecryptionValidationResult>> collectInvalidReportsAsync(
-      ListenableFuture<ImmutableList<DecryptionValidationResult>> shard) {
-    return Futures.transform(shard, this::collectInvalidReports, nonBlockingThreadPool);
+  /**
+   * Decrypts and validates the reports, handing the valid ones straight to the aggregation engine
+   * and counting the errors of the invalid ones. Must run on the {@link #decryptionExecutor()}.
+   *
+   * <p>If a decryption batch size is set, the reports are split into batches of at most that many
+   * reports, decrypted in parallel on the work-stealing decryption pool, so that a large shard or
+   * Avro block is spread across all the pool's threads instead of holding back the job on a single
+   * thread.
+   */
+  private Void decryptReports(
+      Job ctx,
+      List<EncryptedReport> reports,
+      AggregationEngine aggregationEngine,
+      ErrorSummaryAggregator errorSummaryAggregator) {
+    DecryptReportsAction decryptAll =
+        new DecryptReportsAction(
+            ctx, reports, aggregationEngine, errorSummaryAggregator, 0, reports.size());
+    if (decryptionBatchSize > 0) {
+      // Already running on the decryption pool, the batches are forked from the current task
+      decryptAll.invoke();
+    } else {
+      decryptAll.decryptRange();
+    }
+    return null;
   }
 
-  private ImmutableList<DecryptionValidationResult> collectInvalidReports(
-      ImmutableList<DecryptionValidationResult> decryptedShard) {
-    return decryptedShard.stream()
-        .filter(decryptedReport -> decryptedReport.report().isEmpty())
-        .limit(MAX_INVALID_REPORTS_COLLECTED)
-        .collect(toImmutableList());
+  private ListenableFuture<Void> streamShardAsync(
+      Job ctx,
+      DataLocation shard,
+      long shardIndex,
+      AggregationEngine aggregationEngine,
+      ErrorSummaryAggregator errorSummaryAggregator,
+      Semaphore batchPermits,
+      Optional<DecryptionKeyPrefetcher> keyPrefetcher,
+      ShardReadScheduler readScheduler) {
+    // Batches are weighed as they are handed off, so streamed shards retain no bytes of their own
+    // once read.
+    return readScheduler.schedule(
+        () ->
+            streamShard(
+                ctx,
+                shard,
+                shardIndex,
+                aggregationEngine,
+                errorSummaryAggregator,
+                batchPermits,
+                keyPrefetcher,
+                readScheduler),
+        shardStreamed -> 0L,
+        shardStreamed -> shardStreamed);
   }
 
-  private ListenableFuture<Void> aggregateShardAsync(
+  /**
+   * Reads the shard in batches of {@code streamingBatchSize} reports and hands every batch off to
+   * the {@link #decryptionExecutor()} for decryption and aggregation as soon as it is read.
+   *
+   * <p>If shards are streamed by Avro block, each block of the file is a batch instead, and only
+   * the reading of the blocks is sequential: blocks are decoded on the non-blocking pool before
+   * their decryption, so a single large shard is spread across all of the pools' threads.
+   *
+   * <p>A permit is taken for each batch before it is handed off and returned once the batch has
+   * been aggregated, so reading blocks when decryption falls behind rather than buffering the
+   * shard. The bytes of the batch are retained on the read scheduler for as long, so that no
+   * further shards are read while the batches in memory exceed the read-ahead limit.
+   *
+   * <p>If keys are prefetched, a batch is decrypted once the keys of its reports have been fetched.
+   *
+   * @return future that completes when all the batches of the shard have been aggregated
+   */
+  private ListenableFuture<Void> streamShard(
+      Job ctx,
+      DataLocation shard,
+      long shardIndex,
       AggregationEngine aggregationEngine,
-      ListenableFuture<ImmutableList<DecryptionValidationResult>> shard,
-      long shardIndex) {
-    return Futures.transform(
-        shard,
-        decryptedShard -> aggregateShard(aggregationEngine, decryptedShard, shardIndex),
-        nonBlockingThreadPool);
+      ErrorSummaryAggregator errorSummaryAggregator,
+      Semaphore batchPermits,
+      Optional<DecryptionKeyPrefetcher> keyPrefetcher,
+      ShardReadScheduler readScheduler)
+      throws InterruptedException {
+    Stopwatch avroStopwatch =
+        stopwatches.createStopwatch(String.format("shard-read-%d", shardIndex));
+    avroStopwatch.start();
+    ImmutableList.Builder<ListenableFuture<Void>> batchFutures = ImmutableList.builder();
+    try (InputStream shardStream = shardStreamOpener.open(shard);
+        AvroReportsReader reader = readerFactory.create(shardStream)) {
+      // Blocks are decoded on the non-blocking pool, batches of records are already decoded
+      Iterator<ReportBatch> batches;
+      Executor decodingExecutor;
+      if (streamShardsByAvroBlock) {
+        batches =
+            Iterators.transform(
+                reader.streamBlocks().iterator(),
+                block -> new ReportBatch(() -> decodeBlock(block), block.sizeInBytes()));
+        decodingExecutor = nonBlockingThreadPool;
+      } else {
+        batches =
+            Iterators.transform(
+                Iterators.partition(
+                    reader.streamRecords().map(encryptedReportConverter).iterator(),
+                    streamingBatchSize),
+                batch -> new ReportBatch(() -> batch, retainedBytesOf(batch)));
+        decodingExecutor = directExecutor();
+      }
+      while (batches.hasNext()) {
+        ReportBatch batch = batches.next();
+        batchPermits.acquire();
+        readScheduler.retain(batch.bytes);
+        Runnable releaseBatch =
+            () -> {
+              readScheduler.release(batch.bytes);
+              batchPermits.release();
+            };
+        ListenableFuture<Void> batchAggregated;
+        try {
+          batchAggregated =
+              Futures.transformAsync(
+                  Futures.submit(batch.reports, decodingExecutor),
+                  reports ->
+                      Futures.transform(
+                          prefetchKeysAsync(keyPrefetcher, reports),
+                          unused ->
+                              decryptReports(
+                                  ctx, reports, aggregationEngine, errorSummaryAggregator),
+                          decryptionExecutor()),
+                  directExecutor());
+        } catch (RuntimeException e) {
+          releaseBatch.run();
+          throw e;
+        }
+        // Released however the batch completes, including when it is rejected by the pool
+        batchAggregated.addListener(releaseBatch, directExecutor());
+        batchFutures.add(batchAggregated);
+      }
+      avroStopwatch.stop();
+    } catch (BlobStorageClientException | IOException | AvroRuntimeException e) {
+      throw new ConcurrentShardReadException(e);
+    }
+    return whenAllSucceed(batchFutures.build()).call(() -> null, directExecutor());
+  }
+
+  private ImmutableList<EncryptedReport> decodeBlock(AvroReportsBlock block) {
+    try {
+      return block.decode().stream().map(encryptedReportConverter).collect(toImmutableList());
+    } catch (AvroRuntimeException e) {
+      throw new ConcurrentShardReadException(e);
+    }
   }
 
-  private Void aggregateShard(
+  private Void aggregateBatch(
+      Job ctx,
+      List<EncryptedReport> batch,
       AggregationEngine aggregationEngine,
-      ImmutableList<DecryptionValidationResult> decryptedShard,
-      long shardIndex) {
-    Stopwatch aggregateStopwatch =
-        stopwatches.createStopwatch(String.format("shard-aggregation-%d", shardIndex));
-    aggregateStopwatch.start();
-    decryptedShard.stream()
-        .map(DecryptionValidationResult::report)
-        .filter(Optional::isPresent)
-        .map(Optional::get)
-        .forEach(aggregationEngine);
-    aggregateStopwatch.stop();
+      ErrorSummaryAggregator errorSummaryAggregator) {
+    // Valid reports go straight into the engine, only invalid ones materialize a result
+    for (EncryptedReport encryptedReport : batch) {
+      Optional<DecryptionValidationResult> invalidReport =
+          reportDecrypterAndValidator.decryptAndValidate(encryptedReport, ctx, aggregationEngine);
+      if (invalidReport.isPresent()) {
+        errorSummaryAggregator.add(invalidReport.get());
+      }
+    }
     return null;
   }
 
@@ -606,4 +830,147 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
     }
     return epsilonValueFromJobReq;
   }
+
+  /**
+   * Merge join of the output domain with the aggregation, both sorted by key, splitting the
+   * aggregated facts by whether their key is in the domain.
+   *
+   * <p>The aggregation is read once: the facts with a key in the domain are joined as {@link
+   * #overlapping()} is iterated, which must be done before getting the other sides of the join.
+   * Keys only in the domain are not materialized until they are iterated, and facts with a key only
+   * in reports are only kept if asked for.
+   */
+  private static final class DomainJoin {
+
+    private final OutputDomain outputDomain;
+    private final SortedAggregatedFactIterator aggregation;
+    private final boolean keepReportsOnly;
+    // Aggregated facts with a key only in reports, if kept
+    private final ImmutableList.Builder<AggregatedFact> reportsOnly = ImmutableList.builder();
+    // Indices of the output domain keys that are in reports
+    private final BitSet domainKeysInReports;
+    private boolean overlappingIterated = false;
+    private boolean joined = false;
+
+    private DomainJoin(
+        OutputDomain outputDomain,
+        SortedAggregatedFactIterator aggregation,
+        boolean keepReportsOnly) {
+      this.outputDomain = outputDomain;
+      this.aggregation = aggregation;
+      this.keepReportsOnly = keepReportsOnly;
+      this.domainKeysInReports = new BitSet(outputDomain.size());
+    }
+
+    /** Aggregated facts with a key in the output domain, joined as they are iterated, once. */
+    Iterable<AggregatedFact> overlapping() {
+      return () -> {
+        checkState(!overlappingIterated, "Overlapping facts can only be iterated once");
+        overlappingIterated = true;
+        return new AbstractIterator<AggregatedFact>() {
+          private int domainIndex = 0;
+
+          @Override
+          protected AggregatedFact computeNext() {
+            while (aggregation.hasNext()) {
+              AggregatedFact fact = aggregation.next();
+              long high = aggregation.highBits();
+              long low = aggregation.lowBits();
+              while (domainIndex < outputDomain.size()
+                  && outputDomain.compareAt(domainIndex, high, low) < 0) {
+                domainIndex++;
+              }
+              if (domainIndex < outputDomain.size()
+                  && outputDomain.compareAt(domainIndex, high, low) == 0) {
+                domainKeysInReports.set(domainIndex++);
+                return fact;
+              }
+              if (keepReportsOnly) {
+                reportsOnly.add(fact);
+              }
+            }
+            joined = true;
+            return endOfData();
+          }
+        };
+      };
+    }
+
+    /** Aggregated facts with a key only in reports, which must have been kept. */
+    ImmutableList<AggregatedFact> reportsOnly() {
+      checkState(joined, "Overlapping facts must be iterated first");
+      checkState(keepReportsOnly, "Facts only in reports were not kept");
+      return reportsOnly.build();
+    }
+
+    /** Zero facts for the keys only in the domain, created as they are iterated. */
+    Iterable<AggregatedFact> domainOnlyZeroes() {
+      checkState(joined, "Overlapping facts must be iterated first");
+      return () ->
+          IntStream.range(0, outputDomain.size())
+              .filter(index -> !domainKeysInReports.get(index))
+              .mapToObj(index -> AggregatedFact.create(outputDomain.get(index), /* metric= */ 0))
+              .iterator();
+    }
+  }
+
+  /** Batch of a streamed shard, with the number of bytes it holds until it has been aggregated. */
+  private static final class ReportBatch {
+
+    private final Callable<List<EncryptedReport>> reports;
+    private final long bytes;
+
+    private ReportBatch(Callable<List<EncryptedReport>> reports, long bytes) {
+      this.reports = reports;
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * Decrypts a range of reports into the aggregation engine, splitting it in halves to be
+   * decrypted in parallel until it is no larger than the decryption batch size.
+   */
+  private final class DecryptReportsAction extends RecursiveAction {
+
+    private final Job ctx;
+    private final List<EncryptedReport> reports;
+    private final AggregationEngine aggregationEngine;
+    private final ErrorSummaryAggregator errorSummaryAggregator;
+    private final int start;
+    private final int end;
+
+    private DecryptReportsAction(
+        Job ctx,
+        List<EncryptedReport> reports,
+        AggregationEngine aggregationEngine,
+        ErrorSummaryAggregator errorSummaryAggregator,
+        int start,
+        int end) {
+      this.ctx = ctx;
+      this.reports = reports;
+      this.aggregationEngine = aggregationEngine;
+      this.errorSummaryAggregator = errorSummaryAggregator;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= decryptionBatchSize) {
+        decryptRange();
+        return;
+      }
+      int middle = (start + end) >>> 1;
+      invokeAll(
+          new DecryptReportsAction(
+              ctx, reports, aggregationEngine, errorSummaryAggregator, start, middle),
+          new DecryptReportsAction(
+              ctx, reports, aggregationEngine, errorSummaryAggregator, middle, end));
+    }
+
+    /** Decrypts the whole range on the current thread. */
+    void decryptRange() {
+      aggregateBatch(ctx, reports.subList(start, end), aggregationEngine, errorSummaryAggregator);
+    }
+  }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.concurrent;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.aggregate.adtech.worker.ReportDecrypterAndValidator;
+import com.google.aggregate.adtech.worker.model.EncryptedReport;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches the decryption keys of a job's reports on the key fetch thread pool as the reports are
+ * read, so that decryption on the non-blocking thread pool finds the keys already fetched instead
+ * of waiting on the key service.
+ *
+ * <p>Each distinct key ID is fetched once per job, concurrently with the fetches of other key IDs.
+ * Failed fetches are only logged: the reports using the key are then handled by decryption, which
+ * fetches the key again and reports the failure as it would have without prefetching.
+ *
+ * <p>Fetches must not run on the blocking thread pool: streamed shards hold its threads while
+ * waiting for batch permits, which are only returned once the keys of the batches holding them
+ * have been fetched.
+ */
+final class DecryptionKeyPrefetcher {
+
+  private static final Logger logger = LoggerFactory.getLogger(DecryptionKeyPrefetcher.class);
+
+  private final ReportDecrypterAndValidator reportDecrypterAndValidator;
+  private final ListeningExecutorService keyFetchThreadPool;
+  private final ConcurrentMap<String, ListenableFuture<Void>> keyFetches =
+      new ConcurrentHashMap<>();
+
+  DecryptionKeyPrefetcher(
+      ReportDecrypterAndValidator reportDecrypterAndValidator,
+      ListeningExecutorService keyFetchThreadPool) {
+    this.reportDecrypterAndValidator = reportDecrypterAndValidator;
+    this.keyFetchThreadPool = keyFetchThreadPool;
+  }
+
+  /**
+   * Starts fetching the keys of the reports that were not requested before.
+   *
+   * @return future that completes, successfully even if fetches failed, once the fetches of all
+   *     the keys of the reports have completed
+   */
+  ListenableFuture<Void> prefetchKeysOf(Iterable<EncryptedReport> reports) {
+    ImmutableList.Builder<ListenableFuture<Void>> fetches = ImmutableList.builder();
+    String previousKeyId = null;
+    for (EncryptedReport report : reports) {
+      String keyId = report.keyId();
+      // Neighbouring reports mostly share their key, skip the map lookup for those
+      if (keyId.equals(previousKeyId)) {
+        continue;
+      }
+      previousKeyId = keyId;
+      fetches.add(keyFetches.computeIfAbsent(keyId, this::fetchKeyAsync));
+    }
+    return Futures.whenAllComplete(fetches.build()).call(() -> null, directExecutor());
+  }
+
+  private ListenableFuture<Void> fetchKeyAsync(String keyId) {
+    return keyFetchThreadPool.submit(
+        () -> {
+          try {
+            reportDecrypterAndValidator.prefetchDecryptionKey(keyId);
+          } catch (Exception e) {
+            logger.warn(String.format("Failed to prefetch decryption key %s", keyId), e);
+          }
+          return null;
+        });
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.concurrent;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.ToLongFunction;
+
+/**
+ * Admits the shard reads of a job onto the blocking thread pool in order, instead of queueing all
+ * of them at once.
+ *
+ * <p>A read is admitted once fewer than {@code maxReadsInFlight} reads are running and the shards
+ * read but not yet consumed, together with the reads running, retain fewer than {@code
+ * maxRetainedBytes}. The bytes a shard retains are weighed once it has been read, and released once
+ * it has been consumed, so reading stays a few shards ahead of decryption and aggregation instead
+ * of reading the whole job into memory. Running reads are estimated to retain the average of the
+ * shards read so far, and only one read runs until a shard has been weighed. A limit of 0 or less
+ * disables it.
+ *
+ * <p>A shard that is consumed while it is being read, such as a streamed shard, instead retains the
+ * bytes of its batches as they are handed off, from {@link #retain} until {@link #release}.
+ *
+ * <p>Reads waiting for admission do not occupy the blocking thread pool, which remains available
+ * to other blocking work such as fetching decryption keys.
+ */
+final class ShardReadScheduler {
+
+  private final ListeningExecutorService readExecutor;
+  private final int maxReadsInFlight;
+  private final long maxRetainedBytes;
+
+  // Guarded by this
+  private final Deque<ScheduledRead<?, ?>> pendingReads = new ArrayDeque<>();
+  private int readsInFlight = 0;
+  private long retainedBytes = 0;
+  private int completedReads = 0;
+  private long completedReadBytes = 0;
+
+  ShardReadScheduler(
+      ListeningExecutorService readExecutor, int maxReadsInFlight, long maxRetainedBytes) {
+    this.readExecutor = readExecutor;
+    this.maxReadsInFlight = maxReadsInFlight;
+    this.maxRetainedBytes = maxRetainedBytes;
+  }
+
+  /**
+   * Schedules a read, which is started on the read executor once admitted.
+   *
+   * @param read reads the shard
+   * @param weigher returns the number of bytes the read shard retains until it has been consumed
+   * @param consume consumes the read shard, returning a future that completes once it is done
+   * @return future of the consumption of the shard
+   */
+  <T, R> ListenableFuture<R> schedule(
+      Callable<T> read, ToLongFunction<? super T> weigher, AsyncFunction<? super T, R> consume) {
+    ScheduledRead<T, R> scheduledRead = new ScheduledRead<>(read, weigher, consume);
+    synchronized (this) {
+      pendingReads.add(scheduledRead);
+    }
+    admitReads();
+    return scheduledRead.result;
+  }
+
+  private void admitReads() {
+    List<ScheduledRead<?, ?>> admittedReads = new ArrayList<>();
+    synchronized (this) {
+      while (!pendingReads.isEmpty() && canAdmitRead()) {
+        readsInFlight++;
+        admittedReads.add(pendingReads.poll());
+      }
+    }
+    // Started outside of the lock as a read can complete, and admit further reads, synchronously
+    admittedReads.forEach(ScheduledRead::start);
+  }
+
+  private boolean canAdmitRead() {
+    boolean belowReadLimit = maxReadsInFlight <= 0 || readsInFlight < maxReadsInFlight;
+    return belowReadLimit && belowMemoryLimit();
+  }
+
+  private boolean belowMemoryLimit() {
+    if (maxRetainedBytes <= 0) {
+      return true;
+    }
+    if (completedReads == 0) {
+      return readsInFlight == 0;
+    }
+    long averageReadBytes = completedReadBytes / completedReads;
+    return retainedBytes + readsInFlight * averageReadBytes < maxRetainedBytes;
+  }
+
+  private void onReadDone(long readBytes) {
+    synchronized (this) {
+      readsInFlight--;
+      retainedBytes += readBytes;
+      completedReads++;
+      completedReadBytes += readBytes;
+    }
+    admitReads();
+  }
+
+  /** Counts bytes retained by a shard being read, holding further reads once over the limit. */
+  void retain(long bytes) {
+    synchronized (this) {
+      retainedBytes += bytes;
+    }
+  }
+
+  /** Releases bytes retained by a shard, admitting the reads that are then under the limit. */
+  void release(long bytes) {
+    synchronized (this) {
+      retainedBytes -= bytes;
+    }
+    admitReads();
+  }
+
+  private final class ScheduledRead<T, R> {
+
+    private final Callable<T> read;
+    private final ToLongFunction<? super T> weigher;
+    private final AsyncFunction<? super T, R> consume;
+    private final SettableFuture<R> result = SettableFuture.create();
+    // Set by the read before its future completes, read by listeners of that future
+    private long readBytes = 0;
+
+    private ScheduledRead(
+        Callable<T> read, ToLongFunction<? super T> weigher, AsyncFunction<? super T, R> consume) {
+      this.read = read;
+      this.weigher = weigher;
+      this.consume = consume;
+    }
+
+    private void start() {
+      ListenableFuture<T> readFuture = readExecutor.submit(this::readAndWeigh);
+      ListenableFuture<R> consumed = Futures.transformAsync(readFuture, consume, directExecutor());
+      consumed.addListener(() -> release(readBytes), directExecutor());
+      result.setFuture(consumed);
+    }
+
+    private T readAndWeigh() throws Exception {
+      try {
+        T value = read.call();
+        readBytes = weigher.applyAsLong(value);
+        return value;
+      } finally {
+        onReadDone(readBytes);
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.concurrent;
+
+import com.google.aggregate.adtech.worker.Annotations.ParallelShardReadStreams;
+import com.google.aggregate.adtech.worker.Annotations.ShardRangeFetchThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.ShardReadRangeBytes;
+import com.google.aggregate.adtech.worker.reader.ranged.ParallelRangedInputStream;
+import com.google.aggregate.adtech.worker.reader.ranged.RangedBlobReader;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient;
+import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.BlobStorageClientException;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.inject.Inject;
+
+/**
+ * Opens report shards for reading. Shards larger than a range are fetched as concurrent byte
+ * ranges if more than one read stream per shard is configured, otherwise as a single stream.
+ */
+final class ShardStreamOpener {
+
+  private final BlobStorageClient blobStorageClient;
+  private final RangedBlobReader rangedBlobReader;
+  private final int parallelShardReadStreams;
+  private final int shardReadRangeBytes;
+  // Ranges are fetched on their own pool: shards are read on the blocking thread pool, which could
+  // otherwise be exhausted by reads waiting on their own range fetches.
+  private final ListeningExecutorService rangeFetchThreadPool;
+
+  @Inject
+  ShardStreamOpener(
+      BlobStorageClient blobStorageClient,
+      RangedBlobReader rangedBlobReader,
+      @ParallelShardReadStreams Integer parallelShardReadStreams,
+      @ShardReadRangeBytes Integer shardReadRangeBytes,
+      @ShardRangeFetchThreadPool ListeningExecutorService rangeFetchThreadPool) {
+    this.blobStorageClient = blobStorageClient;
+    this.rangedBlobReader = rangedBlobReader;
+    this.parallelShardReadStreams = parallelShardReadStreams;
+    this.shardReadRangeBytes = shardReadRangeBytes;
+    this.rangeFetchThreadPool = rangeFetchThreadPool;
+  }
+
+  InputStream open(DataLocation shard) throws BlobStorageClientException, IOException {
+    if (parallelShardReadStreams <= 1) {
+      return blobStorageClient.getBlob(shard);
+    }
+    long shardSize = rangedBlobReader.getBlobSize(shard);
+    if (shardSize <= shardReadRangeBytes) {
+      return blobStorageClient.getBlob(shard);
+    }
+    return new ParallelRangedInputStream(
+        rangedBlobReader,
+        shard,
+        shardSize,
+        shardReadRangeBytes,
+        parallelShardReadStreams,
+        rangeFetchThreadPool);
+  }
+}
@@ -16,8 +16,6 @@
 
 package com.google.aggregate.adtech.worker.aggregation.domain;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
-
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
 import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
@@ -26,14 +24,12 @@ import com.google.aggregate.protocol.avro.AvroOutputDomainReader;
 import com.google.aggregate.protocol.avro.AvroOutputDomainReaderFactory;
 import com.google.aggregate.protocol.avro.AvroOutputDomainRecord;
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient;
 import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.BlobStorageClientException;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigInteger;
 import java.util.UUID;
 import javax.inject.Inject;
 import org.apache.avro.AvroRuntimeException;
@@ -67,19 +63,16 @@ public final class AvroOutputDomainProcessor extends OutputDomainProcessor {
   }
 
   @Override
-  protected ImmutableList<BigInteger> readShard(DataLocation outputDomainLocation) {
+  protected OutputDomain readShard(DataLocation outputDomainLocation) {
     Stopwatch stopwatch =
         stopwatches.createStopwatch(String.format("domain-shard-read-%s", UUID.randomUUID()));
     stopwatch.start();
     try (InputStream domainStream = blobStorageClient.getBlob(outputDomainLocation)) {
       AvroOutputDomainReader outputDomainReader = avroReaderFactory.create(domainStream);
-      ImmutableList<BigInteger> shard =
-          outputDomainReader
-              .streamRecords()
-              .map(AvroOutputDomainRecord::bucket)
-              .collect(toImmutableList());
+      OutputDomain.Builder shard = OutputDomain.builder();
+      outputDomainReader.streamRecords().map(AvroOutputDomainRecord::bucket).forEach(shard::add);
       stopwatch.stop();
-      return shard;
+      return shard.build();
     } catch (IOException | BlobStorageClientException | AvroRuntimeException e) {
       stopwatch.stop(); // stop the stopwatch if an exception occurs
       throw new DomainReadException(e);
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.UINT_128_MAX;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.compareUInt128;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.sortUInt128;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128FromLongs;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128HighBits;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128LowBits;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.aggregate.adtech.worker.util.NumericConversions.UInt128Sortable;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Buckets of the output domain, sorted in ascending unsigned order and without duplicates.
+ *
+ * <p>Buckets are unsigned 128-bit integers held as their high and low bits in parallel arrays, so
+ * the domain takes 16 bytes per bucket, and can be joined with other sorted buckets by merging.
+ */
+public final class OutputDomain {
+
+  private static final OutputDomain EMPTY = new OutputDomain(new long[0], new long[0], 0);
+
+  private final long[] highs;
+  private final long[] lows;
+  private final int size;
+
+  private OutputDomain(long[] highs, long[] lows, int size) {
+    this.highs = highs;
+    this.lows = lows;
+    this.size = size;
+  }
+
+  /** Returns the domain without buckets. */
+  public static OutputDomain empty() {
+    return EMPTY;
+  }
+
+  /** Returns a domain of the given buckets. */
+  public static OutputDomain of(BigInteger... buckets) {
+    Builder builder = builder();
+    for (BigInteger bucket : buckets) {
+      builder.add(bucket);
+    }
+    return builder.build();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Merges domains into a single domain, buckets present in more than one of them are only kept
+   * once.
+   */
+  public static OutputDomain merge(List<OutputDomain> domains) {
+    if (domains.isEmpty()) {
+      return EMPTY;
+    }
+    // Merges pairs of domains until one is left, so every bucket is copied log(domains) times
+    List<OutputDomain> merged = new ArrayList<>(domains);
+    while (merged.size() > 1) {
+      List<OutputDomain> next = new ArrayList<>((merged.size() + 1) / 2);
+      for (int i = 0; i + 1 < merged.size(); i += 2) {
+        next.add(merge(merged.get(i), merged.get(i + 1)));
+      }
+      if (merged.size() % 2 == 1) {
+        next.add(merged.get(merged.size() - 1));
+      }
+      merged = next;
+    }
+    return merged.get(0);
+  }
+
+  /** Number of buckets in the domain. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** High bits of the bucket at the index in sorted order. */
+  public long highBits(int index) {
+    return highs[index];
+  }
+
+  /** Low bits of the bucket at the index in sorted order. */
+  public long lowBits(int index) {
+    return lows[index];
+  }
+
+  /**
+   * Compares the bucket at the index in sorted order with a bucket given as high and low bits, both
+   * read as unsigned.
+   */
+  public int compareAt(int index, long high, long low) {
+    return compareUInt128(highs[index], lows[index], high, low);
+  }
+
+  /** Returns the bucket at the index in sorted order. */
+  public BigInteger get(int index) {
+    return uInt128FromLongs(highs[index], lows[index]);
+  }
+
+  /** Streams the buckets in sorted order, creating each of them as it is reached. */
+  public Stream<BigInteger> stream() {
+    return IntStream.range(0, size).mapToObj(this::get);
+  }
+
+  private static OutputDomain merge(OutputDomain first, OutputDomain second) {
+    long[] highs = new long[first.size + second.size];
+    long[] lows = new long[first.size + second.size];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < first.size || j < second.size) {
+      int comparison;
+      if (i == first.size) {
+        comparison = 1;
+      } else if (j == second.size) {
+        comparison = -1;
+      } else {
+        comparison = compareUInt128(first.highs[i], first.lows[i], second.highs[j], second.lows[j]);
+      }
+      if (comparison <= 0) {
+        highs[size] = first.highs[i];
+        lows[size] = first.lows[i];
+        i++;
+        if (comparison == 0) {
+          j++;
+        }
+      } else {
+        highs[size] = second.highs[j];
+        lows[size] = second.lows[j];
+        j++;
+      }
+      size++;
+    }
+    return new OutputDomain(trim(highs, size), trim(lows, size), size);
+  }
+
+  private static long[] trim(long[] array, int size) {
+    return array.length == size ? array : Arrays.copyOf(array, size);
+  }
+
+  /** Collects buckets in any order, then sorts and deduplicates them when built. */
+  public static final class Builder {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] highs = new long[INITIAL_CAPACITY];
+    private long[] lows = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private Builder() {}
+
+    /**
+     * Adds a bucket to the domain.
+     *
+     * @throws IllegalArgumentException if the bucket is not in the range of 0 to 2^128-1 inclusive
+     */
+    public Builder add(BigInteger bucket) {
+      checkArgument(
+          bucket.signum() >= 0 && bucket.compareTo(UINT_128_MAX) <= 0,
+          "Bucket outside of valid range. Valid range is 0 to %s, bucket was %s",
+          UINT_128_MAX,
+          bucket);
+      if (size == highs.length) {
+        int capacity = highs.length + (highs.length >> 1);
+        highs = Arrays.copyOf(highs, capacity);
+        lows = Arrays.copyOf(lows, capacity);
+      }
+      highs[size] = uInt128HighBits(bucket);
+      lows[size] = uInt128LowBits(bucket);
+      size++;
+      return this;
+    }
+
+    public OutputDomain build() {
+      if (size == 0) {
+        return EMPTY;
+      }
+      sortUInt128(
+          new UInt128Sortable() {
+            @Override
+            public long highBits(int index) {
+              return highs[index];
+            }
+
+            @Override
+            public long lowBits(int index) {
+              return lows[index];
+            }
+
+            @Override
+            public void swap(int i, int j) {
+              long high = highs[i];
+              long low = lows[i];
+              highs[i] = highs[j];
+              lows[i] = lows[j];
+              highs[j] = high;
+              lows[j] = low;
+            }
+          },
+          0,
+          size - 1);
+      // Keeps the first of every run of equal buckets
+      int distinct = 1;
+      for (int i = 1; i < size; i++) {
+        if (highs[i] != highs[distinct - 1] || lows[i] != lows[distinct - 1]) {
+          highs[distinct] = highs[i];
+          lows[distinct] = lows[i];
+          distinct++;
+        }
+      }
+      return new OutputDomain(trim(highs, distinct), trim(lows, distinct), distinct);
+    }
+  }
+}
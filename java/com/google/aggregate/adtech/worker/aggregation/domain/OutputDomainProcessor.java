@@ -22,7 +22,6 @@ import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
 import com.google.aggregate.perf.StopwatchRegistry;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -30,8 +29,6 @@ import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient;
 import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.BlobStorageClientException;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
-import java.math.BigInteger;
-import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import org.slf4j.Logger;
@@ -59,18 +56,18 @@ public abstract class OutputDomainProcessor {
   }
 
   /**
-   * Asynchronously reads output domain from {@link DataLocation} and returns a deduped set of
-   * buckets in output domain as {@link BigInteger}. The input data location can contain many
-   * shards.
+   * Asynchronously reads output domain from {@link DataLocation} and returns the deduped buckets
+   * in output domain as a sorted {@link OutputDomain}. The input data location can contain many
+   * shards, each of them is sorted as it is read and the shards are then merged.
    *
    * <p>Shards are listed synchronously and read asynchronously. If there is an error reading the
    * shards the future will complete with an exception.
    *
    * @throws DomainReadException (unchecked) if there is an error listing the shards or the location
    *     provided has no shards present.
-   * @return ListenableFuture containing the output domain buckets in a set
+   * @return ListenableFuture containing the output domain buckets
    */
-  public ListenableFuture<ImmutableSet<BigInteger>> readAndDedupDomain(
+  public ListenableFuture<OutputDomain> readAndDedupDomain(
       DataLocation outputDomainLocation) {
     ImmutableList<DataLocation> shards = listShards(outputDomainLocation);
 
@@ -80,12 +77,12 @@ public abstract class OutputDomainProcessor {
               "No output domain shards found for location: " + outputDomainLocation));
     }
 
-    ImmutableList<ListenableFuture<ImmutableList<BigInteger>>> futureShardReads =
+    ImmutableList<ListenableFuture<OutputDomain>> futureShardReads =
         shards.stream()
             .map(shard -> blockingThreadPool.submit(() -> readShard(shard)))
             .collect(ImmutableList.toImmutableList());
 
-    ListenableFuture<List<ImmutableList<BigInteger>>> allFutureShards =
+    ListenableFuture<List<OutputDomain>> allFutureShards =
         Futures.allAsList(futureShardReads);
 
     return Futures.transform(
@@ -95,10 +92,7 @@ public abstract class OutputDomainProcessor {
               stopwatches.createStopwatch(
                   String.format("domain-combine-shards-%s", UUID.randomUUID()));
           stopwatch.start();
-          ImmutableSet<BigInteger> domain =
-              readShards.stream()
-                  .flatMap(Collection::stream)
-                  .collect(ImmutableSet.toImmutableSet());
+          OutputDomain domain = OutputDomain.merge(readShards);
           stopwatch.stop();
           return domain;
         },
@@ -131,7 +125,7 @@ public abstract class OutputDomainProcessor {
    * Reads a given shard of the output domain
    *
    * @param shardLocation the location of the file to read
-   * @return the contents of the shard as a {@link ImmutableList}
+   * @return the contents of the shard as a sorted {@link OutputDomain}
    */
-  protected abstract ImmutableList<BigInteger> readShard(DataLocation shardLocation);
+  protected abstract OutputDomain readShard(DataLocation shardLocation);
 }
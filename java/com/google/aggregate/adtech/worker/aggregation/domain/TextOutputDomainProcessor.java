@@ -16,7 +16,6 @@
 
 package com.google.aggregate.adtech.worker.aggregation.domain;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.nio.charset.StandardCharsets.US_ASCII;
 
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
@@ -25,7 +24,6 @@ import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
 import com.google.aggregate.adtech.worker.util.NumericConversions;
 import com.google.aggregate.perf.StopwatchRegistry;
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteSource;
 import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -34,7 +32,6 @@ import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.BlobStor
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigInteger;
 import java.util.UUID;
 import java.util.stream.Stream;
 import javax.inject.Inject;
@@ -60,17 +57,17 @@ public final class TextOutputDomainProcessor extends OutputDomainProcessor {
     this.stopwatches = stopwatches;
   }
 
-  public ImmutableList<BigInteger> readShard(DataLocation outputDomainLocation) {
+  public OutputDomain readShard(DataLocation outputDomainLocation) {
     Stopwatch stopwatch =
         stopwatches.createStopwatch(String.format("domain-shard-read-%s", UUID.randomUUID()));
     stopwatch.start();
     try (InputStream domainStream = blobStorageClient.getBlob(outputDomainLocation)) {
       byte[] bytes = ByteStreams.toByteArray(domainStream);
       try (Stream<String> fileLines = ByteSource.wrap(bytes).asCharSource(US_ASCII).lines()) {
-        ImmutableList<BigInteger> shard =
-            fileLines.map(NumericConversions::createBucketFromString).collect(toImmutableList());
+        OutputDomain.Builder shard = OutputDomain.builder();
+        fileLines.map(NumericConversions::createBucketFromString).forEach(shard::add);
         stopwatch.stop();
-        return shard;
+        return shard.build();
       }
     } catch (IOException | BlobStorageClientException e) {
       stopwatch.stop();
@@ -16,7 +16,6 @@
 
 package com.google.aggregate.adtech.worker.aggregation.engine;
 
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.Sets.newConcurrentHashSet;
 import static java.time.temporal.ChronoUnit.HOURS;
 
@@ -26,13 +25,10 @@ import com.google.aggregate.adtech.worker.model.Fact;
 import com.google.aggregate.adtech.worker.model.Report;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.MapMaker;
 import java.math.BigInteger;
+import java.util.Iterator;
 import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
-import java.util.function.Function;
 
 /**
  * Data engine for centrally aggregating facts coming in from different threads
@@ -42,37 +38,33 @@ import java.util.function.Function;
  *
  * <p>This implementation is thread-safe.
  *
- * <p>The engine aggregates by keeping a map of aggregation data, keyed by facts' buckets. The
+ * <p>The engine aggregates by keeping a table of aggregation data, keyed by facts' buckets. The
  * engine is a consumer of reports and aggregates by flattening individual facts from reports and
  * adds +1 for each fact bucket count and +x for fact value.
+ *
+ * <p>The engine is closed once the job is done with it, whether the aggregation was read or not.
  */
-public final class AggregationEngine implements Consumer<Report> {
+public final class AggregationEngine implements Consumer<Report>, AutoCloseable {
 
   // Track aggregations for individual facts, keyed by fact buckets that are 128-bit integers.
-  private final ConcurrentMap<BigInteger, SingleFactAggregation> aggregationMap;
+  private final AggregationTable aggregationTable;
 
   // Tracks distinct privacy budget unit identifiers for the reports aggregated.
   private final Set<PrivacyBudgetUnit> privacyBudgetUnits;
 
   /** reportIdSet tracks the unique report ids within a single aggregation batch. */
-  private final Set<UUID> reportIdSet;
+  private final ReportIdSet reportIdSet;
 
   public static AggregationEngine create() {
-    // Number of logical cores available to the JVM is used to hint the concurrent map maker. Any
-    // number will work, this is just a hint that is passed to the map maker, but different values
-    // may result in different performance.
-    //
-    // NOTE: when JVM runtime is probed, it returns the *logical* number of cores. This can be
-    // different from the number of physical cores available on the machine, e.g. if hyperthreading
-    // is used, the number obtained here is 2x larger than the number of physical cores.
-    int concurrentMapConcurrencyHint = Runtime.getRuntime().availableProcessors();
-
-    ConcurrentMap<BigInteger, SingleFactAggregation> aggregationMap =
-        new MapMaker().concurrencyLevel(concurrentMapConcurrencyHint).makeMap();
+    return create(new ConcurrentMapAggregationTable());
+  }
+
+  /** Creates an engine accumulating the facts in the given, empty, aggregation table. */
+  public static AggregationEngine create(AggregationTable aggregationTable) {
     Set<PrivacyBudgetUnit> privacyBudgetUnits = newConcurrentHashSet();
-    Set<UUID> reportIdSet = newConcurrentHashSet();
+    ReportIdSet reportIdSet = new ReportIdSet();
 
-    return new AggregationEngine(aggregationMap, privacyBudgetUnits, reportIdSet);
+    return new AggregationEngine(aggregationTable, privacyBudgetUnits, reportIdSet);
   }
 
   /**
@@ -82,7 +74,7 @@ public final class AggregationEngine implements Consumer<Report> {
   @Override
   public void accept(Report report) {
     if (report.sharedInfo().reportId().isPresent()
-        && reportIdSet.add(UUID.fromString(report.sharedInfo().reportId().get()))) {
+        && reportIdSet.add(report.sharedInfo().reportId().get())) {
       PrivacyBudgetUnit budgetUnitId =
           PrivacyBudgetUnit.create(
               report.sharedInfo().getPrivacyBudgetKey(),
@@ -97,13 +89,31 @@ public final class AggregationEngine implements Consumer<Report> {
    */
   // TODO: investigate enforcing call of makeAggregation strictly after all accepts.
   public ImmutableMap<BigInteger, AggregatedFact> makeAggregation() {
-    return aggregationMap.entrySet().stream()
-        .map(
-            factAggr -> {
-              SingleFactAggregation aggregation = factAggr.getValue();
-              return AggregatedFact.create(factAggr.getKey(), aggregation.getSum());
-            })
-        .collect(toImmutableMap(AggregatedFact::bucket, Function.identity()));
+    return aggregationTable.makeAggregation();
+  }
+
+  /**
+   * Iterates over the aggregated facts without materializing the aggregation, for tables keeping
+   * their buckets off the heap or on disk. Like {@link #makeAggregation()}, it is expected that
+   * this is called after all the reports have been accepted.
+   */
+  public Iterator<AggregatedFact> aggregatedFactIterator() {
+    return aggregationTable.aggregatedFactIterator();
+  }
+
+  /**
+   * Iterates over the aggregated facts in ascending bucket order, e.g. to merge them with the
+   * sorted output domain. Like {@link #makeAggregation()}, it is expected that this is called after
+   * all the reports have been accepted.
+   */
+  public SortedAggregatedFactIterator sortedAggregatedFactIterator() {
+    return aggregationTable.sortedAggregatedFactIterator();
+  }
+
+  /** Releases what the aggregation table holds outside of the heap. */
+  @Override
+  public void close() {
+    aggregationTable.close();
   }
 
   /** Gets a set of distinct privacy budget units observed during the aggregation */
@@ -115,20 +125,18 @@ public final class AggregationEngine implements Consumer<Report> {
    * Upserts (updates or inserts) an aggregation for a fact
    *
    * <p>If the fact key has not been encountered before, a new entry will be created in the
-   * aggregation map, and started with the given fact's info. Otherwise, the aggregation for the
+   * aggregation table, and started with the given fact's info. Otherwise, the aggregation for the
    * fact is just updated.
    */
   private void upsertAggregationForFact(Fact fact) {
-    aggregationMap
-        .computeIfAbsent(fact.bucket(), unused -> new SingleFactAggregation())
-        .accept(fact);
+    aggregationTable.add(fact.bucket(), fact.value());
   }
 
   private AggregationEngine(
-      ConcurrentMap<BigInteger, SingleFactAggregation> aggregationMap,
+      AggregationTable aggregationTable,
       Set<PrivacyBudgetUnit> privacyBudgetUnits,
-      Set<UUID> reportIdSet) {
-    this.aggregationMap = aggregationMap;
+      ReportIdSet reportIdSet) {
+    this.aggregationTable = aggregationTable;
     this.privacyBudgetUnits = privacyBudgetUnits;
     this.reportIdSet = reportIdSet;
   }
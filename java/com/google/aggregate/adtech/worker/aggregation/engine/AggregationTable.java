@@ -0,0 +1,68 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.ImplementedBy;
+import java.math.BigInteger;
+import java.util.Iterator;
+
+/**
+ * Table of sums keyed by fact buckets, used by {@link AggregationEngine} to accumulate facts.
+ *
+ * <p>Implementations must be thread-safe, {@link #add(BigInteger, long)} is called concurrently
+ * from multiple threads.
+ */
+@ImplementedBy(ConcurrentMapAggregationTable.class)
+public interface AggregationTable {
+
+  /** Adds the value to the sum of the bucket, creating the bucket if it was not seen before. */
+  void add(BigInteger bucket, long value);
+
+  /**
+   * Creates the materialized aggregation of all the buckets added so far. It is expected that this
+   * is called only after all the facts have been added.
+   */
+  ImmutableMap<BigInteger, AggregatedFact> makeAggregation();
+
+  /**
+   * Iterates over the aggregated facts of all the buckets added so far, in no particular order,
+   * without materializing them all at once. It is expected that this is called only after all the
+   * facts have been added.
+   */
+  default Iterator<AggregatedFact> aggregatedFactIterator() {
+    return makeAggregation().values().iterator();
+  }
+
+  /**
+   * Iterates over the aggregated facts of all the buckets added so far in ascending bucket order.
+   * It is expected that this is called only after all the facts have been added.
+   *
+   * <p>The default implementation copies the buckets to primitive arrays to sort them, tables
+   * keeping their buckets as bits should copy those directly.
+   */
+  default SortedAggregatedFactIterator sortedAggregatedFactIterator() {
+    return SortedBuckets.of(aggregatedFactIterator()).iterator();
+  }
+
+  /**
+   * Releases what the table holds outside of the heap, e.g. files it spilled to. Called once the
+   * table is no longer used, whether the aggregation was read or not.
+   */
+  default void close() {}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128FromLongs;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.common.collect.AbstractIterator;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing (linear probing) hash table of sums keyed by 128-bit buckets, stored as two
+ * {@code long}s (high and low bits) next to a {@code long} sum in parallel primitive arrays.
+ *
+ * <p>Capacity is always a power of two and the table is grown once it is half full.
+ *
+ * <p>This class is not thread-safe, callers are responsible for synchronization.
+ */
+final class BucketSumTable {
+
+  static final int DEFAULT_INITIAL_CAPACITY = 1 << 10;
+  // Largest power of two that is a valid array length
+  static final int MAXIMUM_CAPACITY = 1 << 30;
+  // Heap bytes of a slot: the high and low bits of its bucket, its sum and its occupancy
+  static final int BYTES_PER_SLOT = 3 * Long.BYTES + 1;
+  // Once grown, a table has at most this many slots per bucket as it doubles when half full
+  static final int MAX_SLOTS_PER_BUCKET = 4;
+
+  private long[] highBits;
+  private long[] lowBits;
+  private long[] sums;
+  // Any bucket, including 0, is a valid key so occupancy is tracked separately.
+  private boolean[] occupied;
+  private int size;
+
+  BucketSumTable() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  /** Creates a table that holds {@code expectedSize} buckets without growing. */
+  static BucketSumTable withExpectedSize(int expectedSize) {
+    return new BucketSumTable(capacityFor(expectedSize));
+  }
+
+  /**
+   * Capacity of a table that holds {@code expectedSize} buckets at most half full, capped at
+   * {@link #MAXIMUM_CAPACITY}.
+   */
+  static int capacityFor(int expectedSize) {
+    // Computed in long so that it does not overflow for expected sizes of 2^29 and above
+    long capacity = Long.highestOneBit(Math.max(expectedSize, 1)) << 2;
+    return (int) Math.min(Math.max(capacity, DEFAULT_INITIAL_CAPACITY), MAXIMUM_CAPACITY);
+  }
+
+  private BucketSumTable(int capacity) {
+    allocate(capacity);
+  }
+
+  /**
+   * Mixes both halves of a bucket into a well-distributed hash. Callers may use the high bits of
+   * the hash to partition buckets between tables, the table itself uses the low bits.
+   */
+  static long hash(long high, long low) {
+    // Finalizer of MurmurHash3 applied to a combination of both halves of the bucket.
+    long hash = high * 0x9e3779b97f4a7c15L ^ low;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /**
+   * Adds the value to the sum of the bucket, {@code hash} must be {@link #hash(long, long)}.
+   *
+   * @return true if the bucket was not in the table before
+   */
+  boolean add(long high, long low, long hash, long value) {
+    int mask = occupied.length - 1;
+    int slot = (int) hash & mask;
+    while (occupied[slot]) {
+      if (highBits[slot] == high && lowBits[slot] == low) {
+        sums[slot] += value;
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (size == MAXIMUM_CAPACITY - 1) {
+      // The last free slot ends the probe sequences, so it is never filled
+      throw new IllegalStateException("Bucket table is full: " + size + " buckets");
+    }
+    occupied[slot] = true;
+    highBits[slot] = high;
+    lowBits[slot] = low;
+    sums[slot] = value;
+    size++;
+    // Past half full at the maximum capacity, the table only fails once a single free slot is left
+    if (size * 2L > occupied.length && occupied.length < MAXIMUM_CAPACITY) {
+      grow();
+    }
+    return true;
+  }
+
+  /** Adds all the sums of the other table to this table. */
+  void addAll(BucketSumTable other) {
+    for (int slot = 0; slot < other.occupied.length; slot++) {
+      if (other.occupied[slot]) {
+        long high = other.highBits[slot];
+        long low = other.lowBits[slot];
+        add(high, low, hash(high, low), other.sums[slot]);
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Number of bytes held by the arrays of the table. */
+  long sizeInBytes() {
+    return (long) highBits.length * BYTES_PER_SLOT;
+  }
+
+  /** Passes every bucket of the table with its sum to the consumer, in no particular order. */
+  void forEachAggregatedFact(Consumer<AggregatedFact> consumer) {
+    for (int slot = 0; slot < occupied.length; slot++) {
+      if (occupied[slot]) {
+        BigInteger bucket = uInt128FromLongs(highBits[slot], lowBits[slot]);
+        consumer.accept(AggregatedFact.create(bucket, sums[slot]));
+      }
+    }
+  }
+
+  /**
+   * Copies the buckets and sums of the table into the parallel arrays, starting at {@code offset}.
+   *
+   * @return the offset following the last copied entry
+   */
+  int copyTo(long[] highs, long[] lows, long[] sumsOut, int offset) {
+    for (int slot = 0; slot < occupied.length; slot++) {
+      if (occupied[slot]) {
+        highs[offset] = highBits[slot];
+        lows[offset] = lowBits[slot];
+        sumsOut[offset] = sums[slot];
+        offset++;
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * Moves the buckets and sums of the table to the start of its arrays and sorts them there, so
+   * they are sorted without copying the table. Nothing may be added to the table afterwards.
+   */
+  SortedBuckets sortInPlace() {
+    int sorted = 0;
+    for (int slot = 0; slot < occupied.length; slot++) {
+      if (occupied[slot]) {
+        highBits[sorted] = highBits[slot];
+        lowBits[sorted] = lowBits[slot];
+        sums[sorted] = sums[slot];
+        sorted++;
+      }
+    }
+    // Buckets are no longer at their hash slots
+    occupied = new boolean[0];
+    return SortedBuckets.sortInPlace(size, highBits, lowBits, sums);
+  }
+
+  /** Iterates over every bucket of the table with its sum, in no particular order. */
+  Iterator<AggregatedFact> iterator() {
+    return new AbstractIterator<AggregatedFact>() {
+      private int slot = 0;
+
+      @Override
+      protected AggregatedFact computeNext() {
+        while (slot < occupied.length) {
+          int current = slot++;
+          if (occupied[current]) {
+            BigInteger bucket = uInt128FromLongs(highBits[current], lowBits[current]);
+            return AggregatedFact.create(bucket, sums[current]);
+          }
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  private void grow() {
+    long[] oldHighBits = highBits;
+    long[] oldLowBits = lowBits;
+    long[] oldSums = sums;
+    boolean[] oldOccupied = occupied;
+    allocate(oldOccupied.length * 2);
+    int mask = occupied.length - 1;
+    for (int oldSlot = 0; oldSlot < oldOccupied.length; oldSlot++) {
+      if (!oldOccupied[oldSlot]) {
+        continue;
+      }
+      int slot = (int) hash(oldHighBits[oldSlot], oldLowBits[oldSlot]) & mask;
+      while (occupied[slot]) {
+        slot = (slot + 1) & mask;
+      }
+      occupied[slot] = true;
+      highBits[slot] = oldHighBits[oldSlot];
+      lowBits[slot] = oldLowBits[oldSlot];
+      sums[slot] = oldSums[oldSlot];
+    }
+  }
+
+  private void allocate(int capacity) {
+    highBits = new long[capacity];
+    lowBits = new long[capacity];
+    sums = new long[capacity];
+    occupied = new boolean[capacity];
+  }
+}
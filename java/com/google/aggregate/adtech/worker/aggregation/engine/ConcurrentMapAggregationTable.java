@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.MapMaker;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import javax.inject.Inject;
+
+/**
+ * {@link AggregationTable} backed by a concurrent map from {@link BigInteger} buckets to {@link
+ * SingleFactAggregation}.
+ */
+public final class ConcurrentMapAggregationTable implements AggregationTable {
+
+  // Track aggregations for individual facts, keyed by fact buckets that are 128-bit integers.
+  private final ConcurrentMap<BigInteger, SingleFactAggregation> aggregationMap;
+
+  @Inject
+  public ConcurrentMapAggregationTable() {
+    // Number of logical cores available to the JVM is used to hint the concurrent map maker. Any
+    // number will work, this is just a hint that is passed to the map maker, but different values
+    // may result in different performance.
+    //
+    // NOTE: when JVM runtime is probed, it returns the *logical* number of cores. This can be
+    // different from the number of physical cores available on the machine, e.g. if hyperthreading
+    // is used, the number obtained here is 2x larger than the number of physical cores.
+    int concurrentMapConcurrencyHint = Runtime.getRuntime().availableProcessors();
+
+    aggregationMap = new MapMaker().concurrencyLevel(concurrentMapConcurrencyHint).makeMap();
+  }
+
+  @Override
+  public void add(BigInteger bucket, long value) {
+    aggregationMap.computeIfAbsent(bucket, unused -> new SingleFactAggregation()).add(value);
+  }
+
+  @Override
+  public ImmutableMap<BigInteger, AggregatedFact> makeAggregation() {
+    return aggregationMap.entrySet().stream()
+        .map(
+            factAggr -> {
+              SingleFactAggregation aggregation = factAggr.getValue();
+              return AggregatedFact.create(factAggr.getKey(), aggregation.getSum());
+            })
+        .collect(toImmutableMap(AggregatedFact::bucket, Function.identity()));
+  }
+
+  @Override
+  public Iterator<AggregatedFact> aggregatedFactIterator() {
+    return Iterators.transform(
+        aggregationMap.entrySet().iterator(),
+        factAggr -> AggregatedFact.create(factAggr.getKey(), factAggr.getValue().getSum()));
+  }
+}
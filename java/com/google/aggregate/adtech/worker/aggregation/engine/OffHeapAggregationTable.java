@@ -0,0 +1,300 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.sortUInt128;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128FromLongs;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128HighBits;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128LowBits;
+import static java.nio.ByteOrder.nativeOrder;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.util.NumericConversions.UInt128Sortable;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import javax.inject.Inject;
+
+/**
+ * {@link AggregationTable} storing buckets and sums outside of the Java heap.
+ *
+ * <p>Buckets and sums are kept in direct {@link ByteBuffer}s as 24-byte entries (high bits, low
+ * bits and sum of the bucket) of an open-addressing hash table; only a bitset of occupied slots
+ * stays on the heap. The table is split into independently locked segments, and every segment
+ * spreads its entries over fixed-size buffer chunks so it can grow past the 2GB limit of a single
+ * buffer.
+ *
+ * <p>Direct memory is only released by the garbage collector, once the table is no longer
+ * referenced, and the chunks a segment replaces when it grows are released the same way. The JDK
+ * collects garbage to free direct memory before failing an allocation past {@code
+ * -XX:MaxDirectMemorySize}, so that option must not be combined with {@code
+ * -XX:+DisableExplicitGC}, and must leave room for the table plus the old and new chunks of the
+ * largest segment while it grows, i.e. about 1.5 times that segment on top of the table. Use {@link
+ * #sortedAggregatedFactIterator()} or {@link #aggregatedFactIterator()} rather than {@link
+ * #makeAggregation()} to read the aggregation without copying it all back to the heap: sorting only
+ * orders references to the entries, 8 bytes per bucket, on the heap.
+ */
+public final class OffHeapAggregationTable implements AggregationTable {
+
+  private final Segment[] segments;
+  private final int segmentMask;
+
+  @Inject
+  public OffHeapAggregationTable() {
+    // Several segments per logical core keep lock contention low when all cores write at once.
+    this(Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  OffHeapAggregationTable(int concurrencyHint) {
+    int segmentCount = Math.max(1, Integer.highestOneBit(concurrencyHint - 1) << 1);
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(BucketSumTable.DEFAULT_INITIAL_CAPACITY);
+    }
+    segmentMask = segmentCount - 1;
+  }
+
+  @Override
+  public void add(BigInteger bucket, long value) {
+    long highBits = uInt128HighBits(bucket);
+    long lowBits = uInt128LowBits(bucket);
+    long hash = BucketSumTable.hash(highBits, lowBits);
+    // High bits of the hash pick the segment, low bits pick the slot within the segment.
+    segments[(int) (hash >>> 32) & segmentMask].add(highBits, lowBits, hash, value);
+  }
+
+  @Override
+  public ImmutableMap<BigInteger, AggregatedFact> makeAggregation() {
+    ImmutableMap.Builder<BigInteger, AggregatedFact> aggregation =
+        ImmutableMap.builderWithExpectedSize(size());
+    aggregatedFactIterator().forEachRemaining(fact -> aggregation.put(fact.bucket(), fact));
+    return aggregation.build();
+  }
+
+  @Override
+  public Iterator<AggregatedFact> aggregatedFactIterator() {
+    return Iterators.concat(Iterators.transform(Iterators.forArray(segments), Segment::iterator));
+  }
+
+  @Override
+  public SortedAggregatedFactIterator sortedAggregatedFactIterator() {
+    // Each entry is referenced by its segment index in the high half and its slot in the low half
+    long[] entries = new long[size()];
+    int entryCount = 0;
+    for (int segmentIndex = 0; segmentIndex < segments.length; segmentIndex++) {
+      entryCount = segments[segmentIndex].copyEntriesTo(segmentIndex, entries, entryCount);
+    }
+    sortUInt128(
+        new UInt128Sortable() {
+          @Override
+          public long highBits(int index) {
+            return getLong(entries[index], Segment.HIGH_BITS_OFFSET);
+          }
+
+          @Override
+          public long lowBits(int index) {
+            return getLong(entries[index], Segment.LOW_BITS_OFFSET);
+          }
+
+          @Override
+          public void swap(int i, int j) {
+            long entry = entries[i];
+            entries[i] = entries[j];
+            entries[j] = entry;
+          }
+        },
+        0,
+        entryCount - 1);
+
+    int size = entryCount;
+    return new SortedAggregatedFactIterator() {
+      private int next = 0;
+
+      @Override
+      protected boolean advance() {
+        if (next == size) {
+          return false;
+        }
+        long entry = entries[next++];
+        high = getLong(entry, Segment.HIGH_BITS_OFFSET);
+        low = getLong(entry, Segment.LOW_BITS_OFFSET);
+        sum = getLong(entry, Segment.SUM_OFFSET);
+        return true;
+      }
+    };
+  }
+
+  /** Number of distinct buckets in the table. */
+  int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  private long getLong(long entry, int fieldOffset) {
+    return segments[(int) (entry >>> 32)].getLong((int) entry, fieldOffset);
+  }
+
+  /**
+   * Open-addressing (linear probing) table in direct memory guarded by its own monitor. Capacity
+   * is always a power of two and the table is grown once it is half full, up to {@link
+   * #MAXIMUM_CAPACITY} slots.
+   */
+  private static final class Segment {
+
+    private static final int ENTRY_BYTES = 3 * Long.BYTES;
+    private static final int HIGH_BITS_OFFSET = 0;
+    private static final int LOW_BITS_OFFSET = Long.BYTES;
+    private static final int SUM_OFFSET = 2 * Long.BYTES;
+    // 2^20 entries, i.e. 24MB, per chunk.
+    private static final int CHUNK_SLOTS_SHIFT = 20;
+    private static final int MAX_CHUNK_SLOTS = 1 << CHUNK_SLOTS_SHIFT;
+    private static final int CHUNK_SLOT_MASK = MAX_CHUNK_SLOTS - 1;
+    // Slots are indexed by int, so capacity can't double past this power of two
+    private static final int MAXIMUM_CAPACITY = BucketSumTable.MAXIMUM_CAPACITY;
+
+    private ByteBuffer[] chunks;
+    // Any bucket, including 0, is a valid key so occupancy is tracked separately.
+    private long[] occupied;
+    private int capacity;
+    private int size;
+
+    Segment(int capacity) {
+      allocate(capacity);
+    }
+
+    synchronized void add(long high, long low, long hash, long value) {
+      int mask = capacity - 1;
+      int slot = (int) hash & mask;
+      while (isOccupied(occupied, slot)) {
+        if (getLong(slot, HIGH_BITS_OFFSET) == high && getLong(slot, LOW_BITS_OFFSET) == low) {
+          putLong(slot, SUM_OFFSET, getLong(slot, SUM_OFFSET) + value);
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+      if (size == MAXIMUM_CAPACITY - 1) {
+        // The last free slot ends the probe sequences, so it is never filled
+        throw new IllegalStateException("Bucket table segment is full: " + size + " buckets");
+      }
+      put(slot, high, low, value);
+      size++;
+      if (size * 2L > capacity && capacity < MAXIMUM_CAPACITY) {
+        grow();
+      }
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    /**
+     * Copies references to the occupied slots of the segment into {@code entries}, starting at
+     * {@code offset}, with the segment index in the high half and the slot in the low half.
+     *
+     * @return the offset following the last copied reference
+     */
+    synchronized int copyEntriesTo(int segmentIndex, long[] entries, int offset) {
+      for (int slot = 0; slot < capacity; slot++) {
+        if (isOccupied(occupied, slot)) {
+          entries[offset++] = (long) segmentIndex << 32 | slot;
+        }
+      }
+      return offset;
+    }
+
+    Iterator<AggregatedFact> iterator() {
+      return new AbstractIterator<AggregatedFact>() {
+        private int slot = 0;
+
+        @Override
+        protected AggregatedFact computeNext() {
+          synchronized (Segment.this) {
+            while (slot < capacity) {
+              int current = slot++;
+              if (isOccupied(occupied, current)) {
+                BigInteger bucket =
+                    uInt128FromLongs(
+                        getLong(current, HIGH_BITS_OFFSET), getLong(current, LOW_BITS_OFFSET));
+                return AggregatedFact.create(bucket, getLong(current, SUM_OFFSET));
+              }
+            }
+          }
+          return endOfData();
+        }
+      };
+    }
+
+    private void grow() {
+      ByteBuffer[] oldChunks = chunks;
+      long[] oldOccupied = occupied;
+      int oldCapacity = capacity;
+      allocate(oldCapacity * 2);
+      int mask = capacity - 1;
+      for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+        if (!isOccupied(oldOccupied, oldSlot)) {
+          continue;
+        }
+        ByteBuffer oldChunk = oldChunks[oldSlot >>> CHUNK_SLOTS_SHIFT];
+        int oldOffset = (oldSlot & CHUNK_SLOT_MASK) * ENTRY_BYTES;
+        long high = oldChunk.getLong(oldOffset + HIGH_BITS_OFFSET);
+        long low = oldChunk.getLong(oldOffset + LOW_BITS_OFFSET);
+        int slot = (int) BucketSumTable.hash(high, low) & mask;
+        while (isOccupied(occupied, slot)) {
+          slot = (slot + 1) & mask;
+        }
+        put(slot, high, low, oldChunk.getLong(oldOffset + SUM_OFFSET));
+      }
+    }
+
+    private void allocate(int newCapacity) {
+      int chunkSlots = Math.min(newCapacity, MAX_CHUNK_SLOTS);
+      chunks = new ByteBuffer[newCapacity / chunkSlots];
+      for (int i = 0; i < chunks.length; i++) {
+        chunks[i] = ByteBuffer.allocateDirect(chunkSlots * ENTRY_BYTES).order(nativeOrder());
+      }
+      occupied = new long[Math.max(1, newCapacity / Long.SIZE)];
+      capacity = newCapacity;
+    }
+
+    private void put(int slot, long high, long low, long sum) {
+      occupied[slot >>> 6] |= 1L << slot;
+      putLong(slot, HIGH_BITS_OFFSET, high);
+      putLong(slot, LOW_BITS_OFFSET, low);
+      putLong(slot, SUM_OFFSET, sum);
+    }
+
+    private long getLong(int slot, int fieldOffset) {
+      return chunks[slot >>> CHUNK_SLOTS_SHIFT].getLong(
+          (slot & CHUNK_SLOT_MASK) * ENTRY_BYTES + fieldOffset);
+    }
+
+    private void putLong(int slot, int fieldOffset, long value) {
+      chunks[slot >>> CHUNK_SLOTS_SHIFT].putLong(
+          (slot & CHUNK_SLOT_MASK) * ENTRY_BYTES + fieldOffset, value);
+    }
+
+    private static boolean isOccupied(long[] occupied, int slot) {
+      return (occupied[slot >>> 6] & (1L << slot)) != 0;
+    }
+  }
+}
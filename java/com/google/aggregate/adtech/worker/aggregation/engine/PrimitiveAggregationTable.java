@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128HighBits;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128LowBits;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import java.math.BigInteger;
+import java.util.Iterator;
+import javax.inject.Inject;
+
+/**
+ * {@link AggregationTable} storing buckets and sums in primitive arrays.
+ *
+ * <p>Each 128-bit bucket is kept as two {@code long}s (high and low bits) next to a {@code long}
+ * sum in parallel arrays of an open-addressing hash table, so no objects are allocated per bucket.
+ * The table is split into independently locked segments to let concurrent writers proceed in
+ * parallel; buckets are assigned to segments by hash.
+ */
+public final class PrimitiveAggregationTable implements AggregationTable {
+
+  private final BucketSumTable[] segments;
+  private final int segmentMask;
+
+  @Inject
+  public PrimitiveAggregationTable() {
+    // Several segments per logical core keep lock contention low when all cores write at once.
+    this(Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  PrimitiveAggregationTable(int concurrencyHint) {
+    int segmentCount = Math.max(1, Integer.highestOneBit(concurrencyHint - 1) << 1);
+    segments = new BucketSumTable[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new BucketSumTable();
+    }
+    segmentMask = segmentCount - 1;
+  }
+
+  @Override
+  public void add(BigInteger bucket, long value) {
+    long highBits = uInt128HighBits(bucket);
+    long lowBits = uInt128LowBits(bucket);
+    long hash = BucketSumTable.hash(highBits, lowBits);
+    // High bits of the hash pick the segment, low bits pick the slot within the segment.
+    BucketSumTable segment = segments[(int) (hash >>> 32) & segmentMask];
+    synchronized (segment) {
+      segment.add(highBits, lowBits, hash, value);
+    }
+  }
+
+  @Override
+  public ImmutableMap<BigInteger, AggregatedFact> makeAggregation() {
+    ImmutableMap.Builder<BigInteger, AggregatedFact> aggregation =
+        ImmutableMap.builderWithExpectedSize(size());
+    for (BucketSumTable segment : segments) {
+      synchronized (segment) {
+        segment.forEachAggregatedFact(fact -> aggregation.put(fact.bucket(), fact));
+      }
+    }
+    return aggregation.build();
+  }
+
+  @Override
+  public Iterator<AggregatedFact> aggregatedFactIterator() {
+    return Iterators.concat(
+        Iterators.transform(Iterators.forArray(segments), BucketSumTable::iterator));
+  }
+
+  @Override
+  public SortedAggregatedFactIterator sortedAggregatedFactIterator() {
+    return SortedBuckets.of(segments).iterator();
+  }
+
+  /** Number of distinct buckets in the table. */
+  int size() {
+    int size = 0;
+    for (BucketSumTable segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+}
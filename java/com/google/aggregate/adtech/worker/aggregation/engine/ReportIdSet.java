@@ -0,0 +1,185 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Concurrent set of report IDs, used to detect duplicate reports within an aggregation batch.
+ *
+ * <p>Report IDs are UUIDs, kept as their two 64-bit halves in open-addressing (linear probing)
+ * tables of {@code long}s rather than as {@link UUID} objects, so a report ID costs 16 bytes (plus
+ * free slots) instead of a {@link UUID} and a hash set node. The set is split into independently
+ * locked stripes, selected by hash, so concurrent adds rarely contend.
+ *
+ * <p>IDs in the canonical 36-character form are parsed directly; any other form goes through {@link
+ * UUID#fromString(String)}, so the IDs accepted and their equality are the same as for {@link
+ * UUID}s.
+ */
+final class ReportIdSet {
+
+  private static final int INITIAL_STRIPE_CAPACITY = 1 << 10;
+
+  private final Stripe[] stripes;
+  private final int stripeMask;
+
+  // The nil UUID (all zeroes) marks empty slots in the stripes, so it is tracked separately.
+  private final AtomicBoolean containsNilId = new AtomicBoolean();
+
+  ReportIdSet() {
+    // Several stripes per logical core keep lock contention low when all cores add at once.
+    this(Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  ReportIdSet(int concurrencyHint) {
+    int stripeCount = Math.max(1, Integer.highestOneBit(concurrencyHint - 1) << 1);
+    stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(INITIAL_STRIPE_CAPACITY);
+    }
+    stripeMask = stripeCount - 1;
+  }
+
+  /**
+   * Adds the report ID to the set.
+   *
+   * @return true if the ID was not in the set before
+   * @throws IllegalArgumentException if the ID is not a valid UUID
+   */
+  boolean add(String reportId) {
+    long mostSignificantBits;
+    long leastSignificantBits;
+    if (isCanonicalUuid(reportId)) {
+      mostSignificantBits =
+          parseHex(reportId, 0, 8) << 32
+              | parseHex(reportId, 9, 13) << 16
+              | parseHex(reportId, 14, 18);
+      leastSignificantBits = parseHex(reportId, 19, 23) << 48 | parseHex(reportId, 24, 36);
+    } else {
+      UUID uuid = UUID.fromString(reportId);
+      mostSignificantBits = uuid.getMostSignificantBits();
+      leastSignificantBits = uuid.getLeastSignificantBits();
+    }
+    return add(mostSignificantBits, leastSignificantBits);
+  }
+
+  /**
+   * Adds the report ID given as the two halves of its UUID to the set.
+   *
+   * @return true if the ID was not in the set before
+   */
+  boolean add(long mostSignificantBits, long leastSignificantBits) {
+    if (mostSignificantBits == 0 && leastSignificantBits == 0) {
+      return containsNilId.compareAndSet(false, true);
+    }
+    long hash = BucketSumTable.hash(mostSignificantBits, leastSignificantBits);
+    Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+    synchronized (stripe) {
+      return stripe.add(mostSignificantBits, leastSignificantBits, (int) hash);
+    }
+  }
+
+  /** Number of distinct report IDs in the set. */
+  long size() {
+    long size = containsNilId.get() ? 1 : 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size;
+      }
+    }
+    return size;
+  }
+
+  private static boolean isCanonicalUuid(String id) {
+    if (id.length() != 36) {
+      return false;
+    }
+    for (int i = 0; i < 36; i++) {
+      char c = id.charAt(i);
+      boolean valid =
+          (i == 8 || i == 13 || i == 18 || i == 23) ? c == '-' : Character.digit(c, 16) >= 0;
+      if (!valid) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Parses the hex digits between the bounds, which must have been validated beforehand. */
+  private static long parseHex(String id, int from, int to) {
+    long value = 0;
+    for (int i = from; i < to; i++) {
+      value = value << 4 | Character.digit(id.charAt(i), 16);
+    }
+    return value;
+  }
+
+  /**
+   * Open-addressing table of 128-bit IDs stored as pairs of {@code long}s, where a pair of zeroes
+   * is an empty slot. Capacity is always a power of two and the table is grown once it is half
+   * full. Not thread-safe, callers synchronize on the stripe.
+   */
+  private static final class Stripe {
+
+    // The halves of the ID in a slot are next to each other: slot i is at 2 * i and 2 * i + 1.
+    private long[] ids;
+    private int size;
+
+    Stripe(int capacity) {
+      ids = new long[capacity * 2];
+    }
+
+    boolean add(long mostSignificantBits, long leastSignificantBits, int hash) {
+      if (!insert(ids, mostSignificantBits, leastSignificantBits, hash)) {
+        return false;
+      }
+      size++;
+      if (size * 4 > ids.length) {
+        grow();
+      }
+      return true;
+    }
+
+    private void grow() {
+      long[] oldIds = ids;
+      ids = new long[oldIds.length * 2];
+      for (int i = 0; i < oldIds.length; i += 2) {
+        if (oldIds[i] != 0 || oldIds[i + 1] != 0) {
+          int hash = (int) BucketSumTable.hash(oldIds[i], oldIds[i + 1]);
+          insert(ids, oldIds[i], oldIds[i + 1], hash);
+        }
+      }
+    }
+
+    /** Inserts the ID if absent, returns false if it was already in the table. */
+    private static boolean insert(
+        long[] ids, long mostSignificantBits, long leastSignificantBits, int hash) {
+      int mask = ids.length / 2 - 1;
+      int slot = hash & mask;
+      while (ids[2 * slot] != 0 || ids[2 * slot + 1] != 0) {
+        if (ids[2 * slot] == mostSignificantBits && ids[2 * slot + 1] == leastSignificantBits) {
+          return false;
+        }
+        slot = (slot + 1) & mask;
+      }
+      ids[2 * slot] = mostSignificantBits;
+      ids[2 * slot + 1] = leastSignificantBits;
+      return true;
+    }
+  }
+}
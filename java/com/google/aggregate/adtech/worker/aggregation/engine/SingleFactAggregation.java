@@ -35,7 +35,12 @@ final class SingleFactAggregation implements Consumer<Fact> {
 
   @Override
   public void accept(Fact fact) {
-    sum.add(fact.value());
+    add(fact.value());
+  }
+
+  /** Adds a fact value to the aggregation. */
+  void add(long value) {
+    sum.add(value);
   }
 
   /**
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128FromLongs;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over aggregated facts in ascending bucket order, buckets being compared as unsigned
+ * 128-bit integers. Each bucket appears once.
+ *
+ * <p>The high and low bits of the bucket of the fact last returned by {@link #next()} are exposed
+ * as well, so that consumers can compare buckets without going through {@link BigInteger}.
+ */
+public abstract class SortedAggregatedFactIterator implements Iterator<AggregatedFact> {
+
+  // Entry moved to by advance(), set by implementations
+  protected long high;
+  protected long low;
+  protected long sum;
+
+  private boolean advanced;
+  private boolean exhausted;
+  private long lastHighBits;
+  private long lastLowBits;
+
+  /**
+   * Moves to the next entry in bucket order, setting {@link #high}, {@link #low} and {@link #sum}.
+   *
+   * @return false once there are no more entries
+   */
+  protected abstract boolean advance();
+
+  @Override
+  public final boolean hasNext() {
+    if (!advanced && !exhausted) {
+      if (advance()) {
+        advanced = true;
+      } else {
+        exhausted = true;
+      }
+    }
+    return advanced;
+  }
+
+  @Override
+  public final AggregatedFact next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    advanced = false;
+    lastHighBits = high;
+    lastLowBits = low;
+    return AggregatedFact.create(uInt128FromLongs(high, low), sum);
+  }
+
+  /** High 64 bits of the bucket of the fact last returned by {@link #next()}. */
+  public final long highBits() {
+    return lastHighBits;
+  }
+
+  /** Low 64 bits of the bucket of the fact last returned by {@link #next()}. */
+  public final long lowBits() {
+    return lastLowBits;
+  }
+}
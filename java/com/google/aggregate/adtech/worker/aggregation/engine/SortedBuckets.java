@@ -0,0 +1,154 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.sortUInt128;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128HighBits;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128LowBits;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.util.NumericConversions.UInt128Sortable;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/** Buckets and sums in parallel primitive arrays, sorted by bucket. */
+final class SortedBuckets {
+
+  final int size;
+  final long[] highs;
+  final long[] lows;
+  final long[] sums;
+
+  private SortedBuckets(int size, long[] highs, long[] lows, long[] sums) {
+    this.size = size;
+    this.highs = highs;
+    this.lows = lows;
+    this.sums = sums;
+  }
+
+  /**
+   * Copies and sorts the entries of tables holding disjoint buckets. Each table is synchronized on
+   * while it is read.
+   */
+  static SortedBuckets of(BucketSumTable... tables) {
+    int size = 0;
+    for (BucketSumTable table : tables) {
+      synchronized (table) {
+        size += table.size();
+      }
+    }
+    long[] highs = new long[size];
+    long[] lows = new long[size];
+    long[] sums = new long[size];
+    int offset = 0;
+    for (BucketSumTable table : tables) {
+      synchronized (table) {
+        offset = table.copyTo(highs, lows, sums, offset);
+      }
+    }
+    // Buckets may have been added since the tables were sized
+    SortedBuckets buckets = new SortedBuckets(offset, highs, lows, sums);
+    buckets.sort();
+    return buckets;
+  }
+
+  /**
+   * Sorts, without copying them, the first {@code size} entries of parallel arrays holding distinct
+   * buckets.
+   */
+  static SortedBuckets sortInPlace(int size, long[] highs, long[] lows, long[] sums) {
+    SortedBuckets buckets = new SortedBuckets(size, highs, lows, sums);
+    buckets.sort();
+    return buckets;
+  }
+
+  /** Copies and sorts the aggregated facts, which must all have distinct buckets. */
+  static SortedBuckets of(Iterator<AggregatedFact> facts) {
+    long[] highs = new long[BucketSumTable.DEFAULT_INITIAL_CAPACITY];
+    long[] lows = new long[highs.length];
+    long[] sums = new long[highs.length];
+    int size = 0;
+    while (facts.hasNext()) {
+      if (size == highs.length) {
+        int capacity = highs.length * 2;
+        highs = Arrays.copyOf(highs, capacity);
+        lows = Arrays.copyOf(lows, capacity);
+        sums = Arrays.copyOf(sums, capacity);
+      }
+      AggregatedFact fact = facts.next();
+      highs[size] = uInt128HighBits(fact.bucket());
+      lows[size] = uInt128LowBits(fact.bucket());
+      sums[size] = fact.metric();
+      size++;
+    }
+    SortedBuckets buckets = new SortedBuckets(size, highs, lows, sums);
+    buckets.sort();
+    return buckets;
+  }
+
+  SortedAggregatedFactIterator iterator() {
+    return new SortedAggregatedFactIterator() {
+      private int next = 0;
+
+      @Override
+      protected boolean advance() {
+        if (next == size) {
+          return false;
+        }
+        high = highs[next];
+        low = lows[next];
+        sum = sums[next];
+        next++;
+        return true;
+      }
+    };
+  }
+
+  private void sort() {
+    sortUInt128(
+        new UInt128Sortable() {
+          @Override
+          public long highBits(int index) {
+            return highs[index];
+          }
+
+          @Override
+          public long lowBits(int index) {
+            return lows[index];
+          }
+
+          @Override
+          public void swap(int i, int j) {
+            SortedBuckets.this.swap(i, j);
+          }
+        },
+        0,
+        size - 1);
+  }
+
+  private void swap(int i, int j) {
+    long high = highs[i];
+    long low = lows[i];
+    long sum = sums[i];
+    highs[i] = highs[j];
+    lows[i] = lows[j];
+    sums[i] = sums[j];
+    highs[j] = high;
+    lows[j] = low;
+    sums[j] = sum;
+  }
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.compareUInt128;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128HighBits;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128LowBits;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.BindingAnnotation;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+
+/**
+ * {@link AggregationTable} bounded by a memory budget, which spills to disk once the budget is
+ * exceeded.
+ *
+ * <p>Buckets are accumulated in memory as in {@link PrimitiveAggregationTable}. When the number of
+ * buckets in memory exceeds half of what the budget allows, the in-memory segments are swapped for
+ * empty ones. The spill executor then sorts the swapped out segments in place and merges them into
+ * a run file in the spill directory, while adding goes on with the new segments, which get the
+ * other half of the budget. Only one run is written at a time: a thread that has to spill while the
+ * previous run is still being written waits for it, which holds adding back when the disk can't
+ * keep up.
+ *
+ * <p>Reading the aggregation k-way merges all the runs with the buckets still in memory, summing
+ * the buckets that were spilled more than once, and yields the aggregated facts in ascending bucket
+ * order. The aggregation can be read only once. Run files are deleted once the merge is fully read
+ * or, at the latest, when the table is closed.
+ */
+public final class SpillingAggregationTable implements AggregationTable {
+
+  // Heap bytes of a bucket in memory, at most, once its segment has grown past its initial capacity
+  static final long BYTES_PER_BUCKET =
+      (long) BucketSumTable.BYTES_PER_SLOT * BucketSumTable.MAX_SLOTS_PER_BUCKET;
+
+  private final Path spillDirectory;
+  private final Executor spillExecutor;
+  private final long maxBucketsInMemory;
+  private final int segmentMask;
+
+  // Swapped for new segments to spill the current ones, adding threads only lock the segment they
+  // add to.
+  private volatile Segment[] segments;
+  private final AtomicLong bucketsInMemory = new AtomicLong();
+
+  private final Object spillLock = new Object();
+  // Runs being or already written, in spill order. Guarded by spillLock.
+  private final List<ListenableFuture<Path>> runs = new ArrayList<>();
+  // Guarded by spillLock.
+  private MergingIterator merge;
+  private boolean closed;
+
+  @Inject
+  public SpillingAggregationTable(
+      @SpillDirectory Path spillDirectory,
+      @MemoryBudgetBytes Long memoryBudgetBytes,
+      @SpillExecutor Executor spillExecutor) {
+    this(
+        spillDirectory,
+        memoryBudgetBytes,
+        spillExecutor,
+        /* concurrencyHint= */ Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  SpillingAggregationTable(
+      Path spillDirectory, long memoryBudgetBytes, Executor spillExecutor, int concurrencyHint) {
+    this.spillDirectory = spillDirectory;
+    this.spillExecutor = spillExecutor;
+    // Half of the budget for the buckets being added to, half for the ones being spilled
+    this.maxBucketsInMemory = Math.max(1, memoryBudgetBytes / BYTES_PER_BUCKET / 2);
+    int segmentCount = Math.max(1, Integer.highestOneBit(concurrencyHint - 1) << 1);
+    segmentMask = segmentCount - 1;
+    segments = newSegments();
+  }
+
+  @Override
+  public void add(BigInteger bucket, long value) {
+    long highBits = uInt128HighBits(bucket);
+    long lowBits = uInt128LowBits(bucket);
+    long hash = BucketSumTable.hash(highBits, lowBits);
+    int segmentIndex = (int) (hash >>> 32) & segmentMask;
+
+    boolean newBucket;
+    while (true) {
+      Segment segment = segments[segmentIndex];
+      synchronized (segment) {
+        if (!segment.retired) {
+          newBucket = segment.buckets.add(highBits, lowBits, hash, value);
+          break;
+        }
+      }
+      // The segments were swapped out after this thread read them, retries with the new ones.
+    }
+
+    if (newBucket && bucketsInMemory.incrementAndGet() > maxBucketsInMemory) {
+      spill();
+    }
+  }
+
+  @Override
+  public ImmutableMap<BigInteger, AggregatedFact> makeAggregation() {
+    ImmutableMap.Builder<BigInteger, AggregatedFact> aggregation = ImmutableMap.builder();
+    aggregatedFactIterator().forEachRemaining(fact -> aggregation.put(fact.bucket(), fact));
+    return aggregation.build();
+  }
+
+  /** Iterates over the aggregated facts in ascending bucket order. */
+  @Override
+  public Iterator<AggregatedFact> aggregatedFactIterator() {
+    return sortedAggregatedFactIterator();
+  }
+
+  /** The merge of the runs, already in bucket order, so it is not sorted again. */
+  @Override
+  public SortedAggregatedFactIterator sortedAggregatedFactIterator() {
+    synchronized (spillLock) {
+      checkState(merge == null && !closed, "Aggregation already read or table closed");
+      ImmutableList.Builder<RunCursor> cursors = ImmutableList.builder();
+      for (ListenableFuture<Path> run : runs) {
+        cursors.add(new FileRunCursor(awaitRun(run)));
+      }
+      for (Segment segment : swapSegments()) {
+        cursors.add(new MemoryRunCursor(segment.buckets.sortInPlace()));
+      }
+      merge = new MergingIterator(cursors.build());
+      return merge;
+    }
+  }
+
+  /**
+   * Deletes the run files, once the run being written if any is done, and closes the merge if the
+   * aggregation was read. Adding after the table is closed no longer spills.
+   */
+  @Override
+  public void close() {
+    List<IOException> failures = new ArrayList<>();
+    synchronized (spillLock) {
+      closed = true;
+      if (merge != null) {
+        try {
+          merge.closeAll();
+        } catch (UncheckedIOException e) {
+          failures.add(e.getCause());
+        }
+      }
+      for (ListenableFuture<Path> run : runs) {
+        try {
+          Files.deleteIfExists(getUninterruptibly(run));
+        } catch (ExecutionException e) {
+          // Nothing to delete, the file of a run is deleted when writing it fails
+        } catch (IOException e) {
+          failures.add(e);
+        }
+      }
+      runs.clear();
+    }
+    if (!failures.isEmpty()) {
+      throw new UncheckedIOException("Could not clean up aggregation spill files", failures.get(0));
+    }
+  }
+
+  /** Number of spilled runs, for tests. */
+  int runCount() {
+    synchronized (spillLock) {
+      return runs.size();
+    }
+  }
+
+  private void spill() {
+    synchronized (spillLock) {
+      // Another thread may have spilled while this one waited for the lock.
+      if (bucketsInMemory.get() <= maxBucketsInMemory) {
+        return;
+      }
+      if (closed) {
+        // The job is over, e.g. it failed while shards were still being aggregated
+        swapSegments();
+        return;
+      }
+      if (!runs.isEmpty()) {
+        awaitRun(runs.get(runs.size() - 1));
+      }
+      Segment[] spilledSegments = swapSegments();
+      runs.add(Futures.submit(() -> writeRun(spilledSegments), spillExecutor));
+    }
+  }
+
+  /** Sorts the segments in place and writes their buckets to a new run file in bucket order. */
+  private Path writeRun(Segment[] spilledSegments) throws IOException {
+    ImmutableList.Builder<RunCursor> cursors = ImmutableList.builder();
+    int size = 0;
+    for (Segment segment : spilledSegments) {
+      SortedBuckets sorted = segment.buckets.sortInPlace();
+      size += sorted.size;
+      cursors.add(new MemoryRunCursor(sorted));
+    }
+    // Segments hold disjoint buckets, merging them streams the buckets in order without a copy.
+    MergingIterator run = new MergingIterator(cursors.build());
+
+    Path runFile = Files.createTempFile(spillDirectory, "aggregation-spill-", ".run");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile)))) {
+      out.writeInt(size);
+      while (run.advance()) {
+        out.writeLong(run.high);
+        out.writeLong(run.low);
+        out.writeLong(run.sum);
+      }
+    } catch (IOException | RuntimeException e) {
+      try {
+        Files.deleteIfExists(runFile);
+      } catch (IOException deleteFailure) {
+        e.addSuppressed(deleteFailure);
+      }
+      throw e;
+    }
+    return runFile;
+  }
+
+  /** Waits for the run to be written and returns its file. */
+  private static Path awaitRun(ListenableFuture<Path> run) {
+    try {
+      return getUninterruptibly(run);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw new UncheckedIOException(
+            "Could not write aggregation spill file", (IOException) e.getCause());
+      }
+      throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Swaps the segments for new ones and retires the old ones, which are no longer added to once
+   * this returns. Called with the spill lock held.
+   */
+  private Segment[] swapSegments() {
+    Segment[] swapped = segments;
+    segments = newSegments();
+    bucketsInMemory.set(0);
+    for (Segment segment : swapped) {
+      synchronized (segment) {
+        segment.retired = true;
+      }
+    }
+    return swapped;
+  }
+
+  private Segment[] newSegments() {
+    Segment[] newSegments = new Segment[segmentMask + 1];
+    for (int i = 0; i < newSegments.length; i++) {
+      newSegments[i] = new Segment();
+    }
+    return newSegments;
+  }
+
+  /** Buckets of a slice of the hash space, guarded by the segment's monitor. */
+  private static final class Segment {
+
+    final BucketSumTable buckets = new BucketSumTable();
+    // Set once the segment is swapped out, it is then only read by the thread spilling it.
+    boolean retired;
+  }
+
+  /** Reads a sorted run one entry at a time. */
+  private abstract static class RunCursor {
+
+    long high;
+    long low;
+    long sum;
+
+    /** Moves to the next entry of the run, returns false when the run is exhausted. */
+    abstract boolean advance() throws IOException;
+
+    abstract void close() throws IOException;
+  }
+
+  private static final class MemoryRunCursor extends RunCursor {
+
+    private final SortedBuckets run;
+    private int next = 0;
+
+    MemoryRunCursor(SortedBuckets run) {
+      this.run = run;
+    }
+
+    @Override
+    boolean advance() {
+      if (next == run.size) {
+        return false;
+      }
+      high = run.highs[next];
+      low = run.lows[next];
+      sum = run.sums[next];
+      next++;
+      return true;
+    }
+
+    @Override
+    void close() {}
+  }
+
+  /** Opens the run file when first advanced, and deletes it when closed. */
+  private static final class FileRunCursor extends RunCursor {
+
+    private final Path runFile;
+    private DataInputStream in;
+    private int remaining;
+
+    FileRunCursor(Path runFile) {
+      this.runFile = runFile;
+    }
+
+    @Override
+    boolean advance() throws IOException {
+      if (in == null) {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFile)));
+        remaining = in.readInt();
+      }
+      if (remaining == 0) {
+        return false;
+      }
+      high = in.readLong();
+      low = in.readLong();
+      sum = in.readLong();
+      remaining--;
+      return true;
+    }
+
+    @Override
+    void close() throws IOException {
+      if (in != null) {
+        in.close();
+      }
+      Files.deleteIfExists(runFile);
+    }
+  }
+
+  /** K-way merge of sorted runs, summing the entries of a bucket found in several runs. */
+  private static final class MergingIterator extends SortedAggregatedFactIterator {
+
+    private final ImmutableList<RunCursor> cursors;
+    private final PriorityQueue<RunCursor> heads =
+        new PriorityQueue<>(
+            (first, second) -> compareUInt128(first.high, first.low, second.high, second.low));
+
+    MergingIterator(ImmutableList<RunCursor> cursors) {
+      this.cursors = cursors;
+      for (RunCursor cursor : cursors) {
+        advanceAndEnqueue(cursor);
+      }
+    }
+
+    @Override
+    protected boolean advance() {
+      RunCursor smallest = heads.poll();
+      if (smallest == null) {
+        closeAll();
+        return false;
+      }
+      high = smallest.high;
+      low = smallest.low;
+      sum = smallest.sum;
+      advanceAndEnqueue(smallest);
+      while (!heads.isEmpty() && heads.peek().high == high && heads.peek().low == low) {
+        RunCursor sameBucket = heads.poll();
+        sum += sameBucket.sum;
+        advanceAndEnqueue(sameBucket);
+      }
+      return true;
+    }
+
+    private void advanceAndEnqueue(RunCursor cursor) {
+      try {
+        if (cursor.advance()) {
+          heads.add(cursor);
+        }
+      } catch (IOException e) {
+        closeAll();
+        throw new UncheckedIOException("Could not read aggregation spill file", e);
+      }
+    }
+
+    /** Closes the runs, the last cursor is closed even if closing another one failed. */
+    void closeAll() {
+      List<IOException> failures = new ArrayList<>();
+      for (RunCursor cursor : cursors) {
+        try {
+          cursor.close();
+        } catch (IOException e) {
+          failures.add(e);
+        }
+      }
+      if (!failures.isEmpty()) {
+        throw new UncheckedIOException(
+            "Could not clean up aggregation spill files", failures.get(0));
+      }
+    }
+  }
+
+  /** Annotation for the directory {@link SpillingAggregationTable} writes its runs to. */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface SpillDirectory {}
+
+  /** Annotation for the memory budget in bytes of {@link SpillingAggregationTable}. */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface MemoryBudgetBytes {}
+
+  /**
+   * Annotation for the executor {@link SpillingAggregationTable} writes its runs on. Threads adding
+   * to the table wait for the previous run when spilling, so it must not depend on them.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface SpillExecutor {}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128HighBits;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128LowBits;
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.BindingAnnotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.inject.Inject;
+
+/**
+ * {@link AggregationTable} where every adding thread accumulates into its own, unsynchronized,
+ * partial table. The partial tables are merged when the aggregation is made.
+ *
+ * <p>Threads never contend on shared buckets while adding, which matters for skewed workloads where
+ * a few buckets receive most of the facts. Each partial table is split into partitions by bucket
+ * hash, so partitions are merged in parallel without shared state: on the merge executor, and on
+ * the calling thread which only waits for the partitions taken by executor threads. The merge thus
+ * completes even when it is called from a thread of the merge executor itself.
+ *
+ * <p>{@link #makeAggregation()} must only be called once all adding threads are done and their
+ * writes are visible to the calling thread, e.g. after the futures adding the facts completed.
+ */
+public final class ThreadLocalAggregationTable implements AggregationTable {
+
+  private final Executor mergeExecutor;
+  private final int partitionCount;
+  private final int partitionMask;
+
+  // Partial tables keyed by the thread adding to them. Owned by this table rather than held in a
+  // ThreadLocal, so the partials are released with the table even if pool threads outlive the job.
+  private final ConcurrentMap<Thread, BucketSumTable[]> partials = new ConcurrentHashMap<>();
+
+  @Inject
+  public ThreadLocalAggregationTable(@MergeExecutor Executor mergeExecutor) {
+    this(mergeExecutor, Runtime.getRuntime().availableProcessors());
+  }
+
+  ThreadLocalAggregationTable(Executor mergeExecutor, int mergeParallelism) {
+    this.mergeExecutor = mergeExecutor;
+    partitionCount = Math.max(1, Integer.highestOneBit(mergeParallelism - 1) << 1);
+    partitionMask = partitionCount - 1;
+  }
+
+  @Override
+  public void add(BigInteger bucket, long value) {
+    long highBits = uInt128HighBits(bucket);
+    long lowBits = uInt128LowBits(bucket);
+    long hash = BucketSumTable.hash(highBits, lowBits);
+    // High bits of the hash pick the partition, low bits pick the slot within the partition.
+    BucketSumTable[] partial = partials.computeIfAbsent(Thread.currentThread(), this::newPartial);
+    partial[(int) (hash >>> 32) & partitionMask].add(highBits, lowBits, hash, value);
+  }
+
+  @Override
+  public ImmutableMap<BigInteger, AggregatedFact> makeAggregation() {
+    BucketSumTable[] mergedPartitions = mergePartitions();
+
+    ImmutableMap.Builder<BigInteger, AggregatedFact> aggregation =
+        ImmutableMap.builderWithExpectedSize(
+            Arrays.stream(mergedPartitions).mapToInt(BucketSumTable::size).sum());
+    for (BucketSumTable partition : mergedPartitions) {
+      partition.forEachAggregatedFact(fact -> aggregation.put(fact.bucket(), fact));
+    }
+    return aggregation.build();
+  }
+
+  /** Same requirements as {@link #makeAggregation()}. */
+  @Override
+  public SortedAggregatedFactIterator sortedAggregatedFactIterator() {
+    return SortedBuckets.of(mergePartitions()).iterator();
+  }
+
+  private BucketSumTable[] mergePartitions() {
+    BucketSumTable[] mergedPartitions = new BucketSumTable[partitionCount];
+    AtomicInteger nextPartition = new AtomicInteger();
+    CountDownLatch partitionsMerged = new CountDownLatch(partitionCount);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Runnable mergeRemainingPartitions =
+        () -> {
+          for (int partitionIndex = nextPartition.getAndIncrement();
+              partitionIndex < partitionCount;
+              partitionIndex = nextPartition.getAndIncrement()) {
+            try {
+              mergedPartitions[partitionIndex] = mergePartition(partitionIndex);
+            } catch (RuntimeException | Error e) {
+              failure.compareAndSet(null, e);
+            } finally {
+              partitionsMerged.countDown();
+            }
+          }
+        };
+    for (int i = 1; i < partitionCount; i++) {
+      mergeExecutor.execute(mergeRemainingPartitions);
+    }
+    mergeRemainingPartitions.run();
+    // Tasks that did not start before the calling thread took the last partition find none left
+    Uninterruptibles.awaitUninterruptibly(partitionsMerged);
+    if (failure.get() != null) {
+      Throwables.throwIfUnchecked(failure.get());
+    }
+    return mergedPartitions;
+  }
+
+  private BucketSumTable mergePartition(int partitionIndex) {
+    int expectedSize =
+        partials.values().stream()
+            .mapToInt(partial -> partial[partitionIndex].size())
+            .max()
+            .orElse(0);
+    BucketSumTable merged = BucketSumTable.withExpectedSize(expectedSize);
+    partials.values().forEach(partial -> merged.addAll(partial[partitionIndex]));
+    return merged;
+  }
+
+  private BucketSumTable[] newPartial(Thread unused) {
+    BucketSumTable[] partial = new BucketSumTable[partitionCount];
+    for (int i = 0; i < partitionCount; i++) {
+      partial[i] = new BucketSumTable();
+    }
+    return partial;
+  }
+
+  /** Annotation for the executor {@link ThreadLocalAggregationTable} merges partitions on. */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface MergeExecutor {}
+}
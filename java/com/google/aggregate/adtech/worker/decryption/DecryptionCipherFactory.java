@@ -17,6 +17,7 @@
 package com.google.aggregate.adtech.worker.decryption;
 
 import com.google.aggregate.adtech.worker.model.EncryptedReport;
+import com.google.common.cache.CacheStats;
 
 /**
  * Interface to fetch the decryption cipher to decrypt an enrypted report. This can have multiple
@@ -27,6 +28,20 @@ public interface DecryptionCipherFactory {
   DecryptionCipher decryptionCipherFor(EncryptedReport encryptedReport)
       throws CipherCreationException;
 
+  /**
+   * Fetches the key for reports encrypted with the given key ID ahead of decryption, for
+   * implementations that keep keys around. Does nothing by default.
+   */
+  default void prefetchDecryptionKey(String keyId) throws CipherCreationException {}
+
+  /**
+   * Hit and miss counts of the ciphers kept around by the factory, where each miss is a fetch of
+   * the key. Zero by default.
+   */
+  default CacheStats cipherCacheStats() {
+    return new CacheStats(0, 0, 0, 0, 0, 0);
+  }
+
   final class CipherCreationException extends Exception {
 
     public CipherCreationException(Throwable cause) {
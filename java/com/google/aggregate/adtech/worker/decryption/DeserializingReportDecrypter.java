@@ -24,6 +24,7 @@ import com.google.aggregate.adtech.worker.model.Report;
 import com.google.aggregate.adtech.worker.model.SharedInfo;
 import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
 import com.google.aggregate.adtech.worker.model.serdes.SharedInfoSerdes;
+import com.google.common.cache.CacheStats;
 import com.google.common.io.ByteSource;
 import com.google.inject.Inject;
 import java.util.Optional;
@@ -83,4 +84,18 @@ public final class DeserializingReportDecrypter implements RecordDecrypter {
       throw new DecryptionException(e);
     }
   }
+
+  @Override
+  public void prefetchDecryptionKey(String keyId) throws DecryptionException {
+    try {
+      decryptionCipherFactory.prefetchDecryptionKey(keyId);
+    } catch (CipherCreationException e) {
+      throw new DecryptionException(e);
+    }
+  }
+
+  @Override
+  public CacheStats decryptionKeyCacheStats() {
+    return decryptionCipherFactory.cipherCacheStats();
+  }
 }
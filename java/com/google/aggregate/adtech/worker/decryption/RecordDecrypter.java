@@ -18,6 +18,7 @@ package com.google.aggregate.adtech.worker.decryption;
 
 import com.google.aggregate.adtech.worker.model.EncryptedReport;
 import com.google.aggregate.adtech.worker.model.Report;
+import com.google.common.cache.CacheStats;
 
 /**
  * Interface for decrypting a stream of encrypted reports,
@@ -33,6 +34,20 @@ public interface RecordDecrypter {
    */
   Report decryptSingleReport(EncryptedReport encryptedReport) throws DecryptionException;
 
+  /**
+   * Fetches the key for reports encrypted with the given key ID ahead of decryption, for decrypters
+   * that keep keys around. Does nothing by default.
+   */
+  default void prefetchDecryptionKey(String keyId) throws DecryptionException {}
+
+  /**
+   * Hit and miss counts of the keys kept around by the decrypter, where each miss is a fetch of the
+   * key. Zero by default.
+   */
+  default CacheStats decryptionKeyCacheStats() {
+    return new CacheStats(0, 0, 0, 0, 0, 0);
+  }
+
   class DecryptionException extends Exception {
 
     public DecryptionException(Throwable cause) {
@@ -21,7 +21,9 @@ import static com.google.aggregate.adtech.worker.model.SharedInfo.VERSION_0_1;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.aggregate.adtech.worker.decryption.DecryptionCipher;
+import com.google.aggregate.shared.io.ByteBufferByteSource;
 import com.google.common.io.ByteSource;
+import com.google.common.primitives.Bytes;
 import com.google.crypto.tink.HybridDecrypt;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
@@ -38,6 +40,11 @@ public final class HybridDecryptionCipher implements DecryptionCipher {
   public static final String ASSOCIATED_DATA_PREFIX_WITH_NULL_TERMINATOR = "aggregation_service\0";
   public static final String ASSOCIATED_DATA_PREFIX = "aggregation_service";
 
+  private static final byte[] ASSOCIATED_DATA_PREFIX_WITH_NULL_TERMINATOR_BYTES =
+      ASSOCIATED_DATA_PREFIX_WITH_NULL_TERMINATOR.getBytes(UTF_8);
+  private static final byte[] ASSOCIATED_DATA_PREFIX_BYTES = ASSOCIATED_DATA_PREFIX.getBytes(UTF_8);
+  private static final byte[] NO_ASSOCIATED_DATA = new byte[0];
+
   private final HybridDecrypt hybridDecrypt;
 
   public static HybridDecryptionCipher of(HybridDecrypt hybridDecrypt) {
@@ -53,21 +60,43 @@ public final class HybridDecryptionCipher implements DecryptionCipher {
       ByteSource encryptedPayload, String sharedInfo, String sharedInfoVersion)
       throws PayloadDecryptionException {
     try {
-      String associatedDataString = "";
+      byte[] associatedData = NO_ASSOCIATED_DATA;
 
       /*
-       * Only reports with empty version need NULL terminator in associatedDataString while decryption
+       * Only reports with empty version need NULL terminator in associatedData while decryption
        */
       if (sharedInfoVersion.isEmpty() || sharedInfoVersion.equals(DEFAULT_VERSION)) {
-        associatedDataString = ASSOCIATED_DATA_PREFIX_WITH_NULL_TERMINATOR + sharedInfo;
+        associatedData =
+            associatedData(ASSOCIATED_DATA_PREFIX_WITH_NULL_TERMINATOR_BYTES, sharedInfo);
       } else if (sharedInfoVersion.equals(VERSION_0_1)) {
-        associatedDataString = ASSOCIATED_DATA_PREFIX + sharedInfo;
+        associatedData = associatedData(ASSOCIATED_DATA_PREFIX_BYTES, sharedInfo);
       }
 
-      byte[] associatedData = associatedDataString.getBytes(UTF_8);
-      return ByteSource.wrap(hybridDecrypt.decrypt(encryptedPayload.read(), associatedData));
+      // The ciphertext is only read by decryption and the plaintext only by deserialization, so
+      // neither is copied
+      byte[] ciphertext = ByteBufferByteSource.bytesOf(encryptedPayload);
+      return ByteBufferByteSource.wrap(hybridDecrypt.decrypt(ciphertext, associatedData));
     } catch (GeneralSecurityException | IOException e) {
       throw new PayloadDecryptionException(e);
     }
   }
+
+  /**
+   * Encodes the prefix followed by the UTF-8 encoding of the shared info. Shared info is JSON and
+   * almost always ASCII, which is copied straight into the result instead of going through an
+   * intermediate String and encoder.
+   */
+  private static byte[] associatedData(byte[] prefix, String sharedInfo) {
+    int length = sharedInfo.length();
+    byte[] associatedData = new byte[prefix.length + length];
+    System.arraycopy(prefix, 0, associatedData, 0, prefix.length);
+    for (int i = 0; i < length; i++) {
+      char c = sharedInfo.charAt(i);
+      if (c >= 0x80) {
+        return Bytes.concat(prefix, sharedInfo.getBytes(UTF_8));
+      }
+      associatedData[prefix.length + i] = (byte) c;
+    }
+    return associatedData;
+  }
 }
@@ -19,11 +19,18 @@ package com.google.aggregate.adtech.worker.decryption.hybrid;
 import com.google.aggregate.adtech.worker.decryption.DecryptionCipher;
 import com.google.aggregate.adtech.worker.decryption.DecryptionCipherFactory;
 import com.google.aggregate.adtech.worker.model.EncryptedReport;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 import com.google.scp.operator.cpio.cryptoclient.DecryptionKeyService;
 import com.google.scp.operator.cpio.cryptoclient.DecryptionKeyService.KeyFetchException;
 import com.google.scp.operator.cpio.cryptoclient.model.ErrorReason;
 import java.security.AccessControlException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
 
 /**
  * {@code DecryptionCipherFactory} that provides {@code DecryptionCipher}s for the hybrid decryption
@@ -32,29 +39,70 @@ import java.security.AccessControlException;
  * <p>Inspects the provided {@code EncryptedReport} for the key used to decrypt, retrieves the key
  * it needs from the {@code DecryptionKeyService}, and constructs a decryption cipher using that
  * key.
+ *
+ * <p>Reports of a job are encrypted with only a handful of keys, so ciphers are cached by key ID
+ * for {@link #CIPHER_CACHE_TTL} and the key is fetched once per key ID rather than once per report.
+ * Failed fetches are not cached.
  */
 public final class HybridDecryptionCipherFactory implements DecryptionCipherFactory {
 
+  static final Duration CIPHER_CACHE_TTL = Duration.ofHours(1);
+  private static final int MAX_CACHED_CIPHERS = 1000;
+
   private final DecryptionKeyService decryptionKeyService;
+  private final LoadingCache<String, HybridDecryptionCipher> ciphersByKeyId;
 
   @Inject
   public HybridDecryptionCipherFactory(DecryptionKeyService decryptionKeyService) {
     this.decryptionKeyService = decryptionKeyService;
+    this.ciphersByKeyId =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_CIPHERS)
+            .expireAfterWrite(CIPHER_CACHE_TTL)
+            .recordStats()
+            .build(
+                new CacheLoader<String, HybridDecryptionCipher>() {
+                  @Override
+                  public HybridDecryptionCipher load(String keyId) throws KeyFetchException {
+                    return HybridDecryptionCipher.of(decryptionKeyService.getDecrypter(keyId));
+                  }
+                });
   }
 
   /** Retrieves the key needed to decrypt the report and constucts a decryption cipher for it. */
   @Override
   public DecryptionCipher decryptionCipherFor(EncryptedReport encryptedReport)
       throws CipherCreationException {
+    return cipherFor(encryptedReport.keyId());
+  }
+
+  /** Loads the cipher for the key ID into the cache, so later reports using it find it there. */
+  @Override
+  public void prefetchDecryptionKey(String keyId) throws CipherCreationException {
+    cipherFor(keyId);
+  }
 
+  /** Hit and miss counts of the cipher cache, where each miss is a fetch of the key. */
+  @Override
+  public CacheStats cipherCacheStats() {
+    return ciphersByKeyId.stats();
+  }
+
+  private HybridDecryptionCipher cipherFor(String keyId) throws CipherCreationException {
     try {
-      var decryptionKey = decryptionKeyService.getDecrypter(encryptedReport.keyId());
-      return HybridDecryptionCipher.of(decryptionKey);
-    } catch (KeyFetchException e) {
-      if (e.getReason() == ErrorReason.PERMISSION_DENIED) {
-        throw new AccessControlException("Permission denied in fetching decryption keys.");
+      return ciphersByKeyId.get(keyId);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof KeyFetchException) {
+        KeyFetchException keyFetchException = (KeyFetchException) e.getCause();
+        if (keyFetchException.getReason() == ErrorReason.PERMISSION_DENIED) {
+          throw new AccessControlException("Permission denied in fetching decryption keys.");
+        }
+        throw new CipherCreationException(keyFetchException);
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
       }
-      throw new CipherCreationException(e);
+      throw new CipherCreationException(e.getCause());
     }
   }
 }
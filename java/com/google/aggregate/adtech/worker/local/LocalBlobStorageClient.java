@@ -16,11 +16,15 @@
 
 package com.google.aggregate.adtech.worker.local;
 
+import com.google.aggregate.adtech.worker.util.MappedFileInput;
 import com.google.common.collect.ImmutableList;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
 import com.google.scp.operator.cpio.blobstorageclient.testing.FSBlobStorageClient;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.FileSystem;
+import java.nio.file.Path;
 import javax.inject.Inject;
 
 /**
@@ -42,4 +46,19 @@ public class LocalBlobStorageClient extends FSBlobStorageClient {
     BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
     return ImmutableList.of(blobLocation.key());
   }
+
+  /**
+   * Reads the file through a memory mapping. Files that can't be mapped, such as those of in-memory
+   * file systems, are read by the file system client as before.
+   */
+  @Override
+  public InputStream getBlob(DataLocation location) throws BlobStorageClientException {
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    Path path = fileSystem.getPath(blobLocation.bucket(), blobLocation.key());
+    try {
+      return MappedFileInput.open(path).asInputStream();
+    } catch (IOException | UnsupportedOperationException e) {
+      return super.getBlob(location);
+    }
+  }
 }
@@ -24,6 +24,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.hash.Hashing;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
@@ -91,6 +92,11 @@ public abstract class SharedInfo {
   @JsonProperty("debug_mode")
   public abstract Optional<String> reportDebugModeString();
 
+  // Fields the privacy budget key is derived from starting version 0.1, not part of the JSON. Set
+  // when the SharedInfo is built, the key is hashed once per instance of them.
+  @JsonIgnore
+  abstract Optional<PrivacyBudgetKeyInput> derivedPrivacyBudgetKeyInput();
+
   // Convert the debugMode string field to boolean.
   @JsonIgnore
   public final boolean getReportDebugMode() {
@@ -135,6 +141,50 @@ public abstract class SharedInfo {
     @JsonProperty("debug_mode")
     public abstract Builder setReportDebugModeString(String value);
 
+    /**
+     * Sets an instance of the {@link #privacyBudgetKeyInput()} shared across reports, so that its
+     * privacy budget key is hashed once for all of them. Ignored if it does not equal the input of
+     * the fields when building. Only applies to the next SharedInfo built.
+     */
+    @JsonIgnore
+    public abstract Builder setDerivedPrivacyBudgetKeyInput(PrivacyBudgetKeyInput value);
+
+    @JsonIgnore
+    abstract Builder setDerivedPrivacyBudgetKeyInput(Optional<PrivacyBudgetKeyInput> value);
+
+    abstract Optional<String> version();
+
+    abstract Optional<String> api();
+
+    abstract Optional<String> reportingOrigin();
+
+    abstract Optional<String> destination();
+
+    abstract Optional<Instant> sourceRegistrationTime();
+
+    abstract Optional<PrivacyBudgetKeyInput> derivedPrivacyBudgetKeyInput();
+
+    /**
+     * Returns the fields the privacy budget key is derived from if the version is "0.1" and they
+     * are all set, empty otherwise.
+     */
+    public final Optional<PrivacyBudgetKeyInput> privacyBudgetKeyInput() {
+      if (!version().equals(Optional.of(VERSION_0_1))
+          || api().isEmpty()
+          || reportingOrigin().isEmpty()
+          || destination().isEmpty()
+          || sourceRegistrationTime().isEmpty()) {
+        return Optional.empty();
+      }
+      return Optional.of(
+          PrivacyBudgetKeyInput.create(
+              api().get(),
+              VERSION_0_1,
+              reportingOrigin().get(),
+              destination().get(),
+              sourceRegistrationTime().get()));
+    }
+
     /**
      * Use boolean values for debug mode in the program and convert it to string value enabled for
      * result json files.
@@ -147,8 +197,20 @@ public abstract class SharedInfo {
       return this;
     }
 
-    public abstract SharedInfo build(); // not public
+    abstract SharedInfo autoBuild();
+
+    public final SharedInfo build() {
+      Optional<PrivacyBudgetKeyInput> privacyBudgetKeyInput = privacyBudgetKeyInput();
+      if (!derivedPrivacyBudgetKeyInput().equals(privacyBudgetKeyInput)) {
+        setDerivedPrivacyBudgetKeyInput(privacyBudgetKeyInput);
+      }
+      SharedInfo sharedInfo = autoBuild();
+      // The input only holds for the current fields, which may be changed to build another one
+      setDerivedPrivacyBudgetKeyInput(Optional.empty());
+      return sharedInfo;
+    }
   }
+
   /**
    * If version is set to "0.1", returns privacy budget key hash using following shared Info fields-
    * api, version, reporting_origin, destination and source_registration_time. If version is not
@@ -156,26 +218,58 @@ public abstract class SharedInfo {
    */
   public String getPrivacyBudgetKey() {
     if (version().equals(VERSION_0_1)) {
+      // Only missing if fields it is derived from are missing, which throws like their get() would
+      return derivedPrivacyBudgetKeyInput().get().hash();
+    }
+
+    if (privacyBudgetKey().isPresent()) {
+      return privacyBudgetKey().get();
+    }
+    throw new IllegalStateException("Unable to get Privacy Budget Key");
+  }
+
+  /** Fields of the shared_info the privacy budget key is derived from starting version 0.1. */
+  @AutoValue
+  public abstract static class PrivacyBudgetKeyInput {
+
+    static PrivacyBudgetKeyInput create(
+        String api,
+        String version,
+        String reportingOrigin,
+        String destination,
+        Instant sourceRegistrationTime) {
+      return new AutoValue_SharedInfo_PrivacyBudgetKeyInput(
+          api, version, reportingOrigin, destination, sourceRegistrationTime);
+    }
+
+    abstract String api();
+
+    abstract String version();
+
+    abstract String reportingOrigin();
+
+    abstract String destination();
+
+    abstract Instant sourceRegistrationTime();
+
+    /** Returns the privacy budget key, the SHA-256 of the fields, hashed once per instance. */
+    @Memoized
+    public String hash() {
       String privacyBudgetKeyHashInput =
-          api().get()
+          api()
               + PRIVACY_BUDGET_KEY_DELIMITER
               + version()
               + PRIVACY_BUDGET_KEY_DELIMITER
               + reportingOrigin()
               + PRIVACY_BUDGET_KEY_DELIMITER
-              + destination().get()
+              + destination()
               + PRIVACY_BUDGET_KEY_DELIMITER
-              + sourceRegistrationTime().get();
+              + sourceRegistrationTime();
       return Hashing.sha256()
           .newHasher()
           .putBytes(privacyBudgetKeyHashInput.getBytes(StandardCharsets.UTF_8))
           .hash()
           .toString();
     }
-
-    if (privacyBudgetKey().isPresent()) {
-      return privacyBudgetKey().get();
-    }
-    throw new IllegalStateException("Unable to get Privacy Budget Key");
   }
 }
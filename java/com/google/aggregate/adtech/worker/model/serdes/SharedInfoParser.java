@@ -0,0 +1,226 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.model.serdes;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.aggregate.adtech.worker.model.SharedInfo;
+import com.google.aggregate.adtech.worker.model.SharedInfo.PrivacyBudgetKeyInput;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Streaming JSON parser specialized for {@link SharedInfo}.
+ *
+ * <p>Reports of a job carry the same version, api, origin and destination values over and over, so
+ * those fields are resolved through small direct-mapped caches straight from the parser's character
+ * buffer: a repeated value is returned as the previously decoded {@link String} without allocating,
+ * and repeated timestamps share their {@link Instant}. Reports from the same source likewise share
+ * the instance of their privacy budget key inputs, whose key is hashed once per distinct set of
+ * inputs rather than once per report. The caches adapt to the values of the batch being processed,
+ * as a value evicts whatever previously mapped to its slot.
+ *
+ * <p>Only the shape Chrome produces is handled: string fields as JSON strings and timestamps as
+ * epoch seconds. Anything else, including malformed input, yields {@code Optional.empty()} and is
+ * left to the Jackson data binding of {@link SharedInfoSerdes}. Thread-safe.
+ */
+final class SharedInfoParser {
+
+  private static final int STRING_CACHE_SIZE = 1 << 10;
+  private static final int INSTANT_CACHE_SIZE = 1 << 10;
+  private static final int PRIVACY_BUDGET_KEY_CACHE_SIZE = 1 << 10;
+
+  // Decimal digits of the largest epoch second that is parsed without overflow checks
+  private static final int MAX_EPOCH_SECOND_DIGITS = 18;
+
+  private final JsonFactory jsonFactory;
+  private final AtomicReferenceArray<String> stringCache =
+      new AtomicReferenceArray<>(STRING_CACHE_SIZE);
+  private final AtomicReferenceArray<Instant> instantCache =
+      new AtomicReferenceArray<>(INSTANT_CACHE_SIZE);
+  private final AtomicReferenceArray<PrivacyBudgetKeyInput> privacyBudgetKeyCache =
+      new AtomicReferenceArray<>(PRIVACY_BUDGET_KEY_CACHE_SIZE);
+
+  SharedInfoParser(JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+  }
+
+  /**
+   * Parses the JSON string of a {@link SharedInfo}.
+   *
+   * @return the SharedInfo, or empty if the string is not in the specialized shape or invalid
+   */
+  Optional<SharedInfo> parse(String sharedInfoJsonString) {
+    try (JsonParser parser = jsonFactory.createParser(sharedInfoJsonString)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return Optional.empty();
+      }
+      // Same starting point as the Jackson data binding, which uses the @JsonCreator builder
+      SharedInfo.Builder builder = SharedInfo.Builder.builder();
+      String fieldName;
+      while ((fieldName = parser.nextFieldName()) != null) {
+        JsonToken value = parser.nextToken();
+        switch (fieldName) {
+          case "version":
+            builder.setVersion(readCachedString(parser, value));
+            break;
+          case "api":
+            builder.setApi(readCachedString(parser, value));
+            break;
+          case "privacy_budget_key":
+            builder.setPrivacyBudgetKey(readCachedString(parser, value));
+            break;
+          case "reporting_origin":
+            builder.setReportingOrigin(readCachedString(parser, value));
+            break;
+          case "attribution_destination":
+            builder.setDestination(readCachedString(parser, value));
+            break;
+          case "debug_mode":
+            builder.setReportDebugModeString(readCachedString(parser, value));
+            break;
+          case "report_id":
+            // Unique per report, so not worth caching
+            if (value != JsonToken.VALUE_STRING) {
+              return Optional.empty();
+            }
+            builder.setReportId(parser.getText());
+            break;
+          case "scheduled_report_time":
+            builder.setScheduledReportTime(readInstant(parser, value));
+            break;
+          case "source_registration_time":
+            builder.setSourceRegistrationTime(readInstant(parser, value));
+            break;
+          default:
+            // Unknown fields are ignored, as with the Jackson data binding
+            parser.skipChildren();
+        }
+      }
+      if (parser.currentToken() != JsonToken.END_OBJECT) {
+        return Optional.empty();
+      }
+      Optional<PrivacyBudgetKeyInput> privacyBudgetKeyInput = builder.privacyBudgetKeyInput();
+      if (privacyBudgetKeyInput.isPresent()) {
+        builder.setDerivedPrivacyBudgetKeyInput(sharedInstanceOf(privacyBudgetKeyInput.get()));
+      }
+      return Optional.of(builder.build());
+    } catch (IOException
+        | UnsupportedValueException
+        | DateTimeException
+        | IllegalStateException e) {
+      // IllegalStateException is thrown by the builder when required fields are missing
+      return Optional.empty();
+    }
+  }
+
+  private String readCachedString(JsonParser parser, JsonToken value)
+      throws IOException, UnsupportedValueException {
+    if (value != JsonToken.VALUE_STRING) {
+      throw new UnsupportedValueException();
+    }
+    char[] chars = parser.getTextCharacters();
+    int offset = parser.getTextOffset();
+    int length = parser.getTextLength();
+
+    int hash = 0;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + chars[i];
+    }
+    int slot = (hash ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1);
+
+    String cached = stringCache.get(slot);
+    if (cached != null && contentEquals(cached, chars, offset, length)) {
+      return cached;
+    }
+    String decoded = new String(chars, offset, length);
+    stringCache.lazySet(slot, decoded);
+    return decoded;
+  }
+
+  private Instant readInstant(JsonParser parser, JsonToken value)
+      throws IOException, UnsupportedValueException {
+    long epochSecond;
+    if (value == JsonToken.VALUE_NUMBER_INT) {
+      epochSecond = parser.getLongValue();
+    } else if (value == JsonToken.VALUE_STRING) {
+      epochSecond = parseEpochSecond(parser);
+    } else {
+      throw new UnsupportedValueException();
+    }
+
+    int slot = (int) (epochSecond ^ (epochSecond >>> 32)) & (INSTANT_CACHE_SIZE - 1);
+    Instant cached = instantCache.get(slot);
+    if (cached != null && cached.getEpochSecond() == epochSecond) {
+      return cached;
+    }
+    Instant instant = Instant.ofEpochSecond(epochSecond);
+    instantCache.lazySet(slot, instant);
+    return instant;
+  }
+
+  private PrivacyBudgetKeyInput sharedInstanceOf(PrivacyBudgetKeyInput input) {
+    int hash = input.hashCode();
+    int slot = (hash ^ (hash >>> 16)) & (PRIVACY_BUDGET_KEY_CACHE_SIZE - 1);
+    PrivacyBudgetKeyInput cached = privacyBudgetKeyCache.get(slot);
+    if (cached != null && cached.equals(input)) {
+      return cached;
+    }
+    privacyBudgetKeyCache.lazySet(slot, input);
+    return input;
+  }
+
+  /** Parses a string of decimal digits, as Chrome writes timestamps, without decoding a String. */
+  private static long parseEpochSecond(JsonParser parser)
+      throws IOException, UnsupportedValueException {
+    char[] chars = parser.getTextCharacters();
+    int offset = parser.getTextOffset();
+    int length = parser.getTextLength();
+    if (length == 0 || length > MAX_EPOCH_SECOND_DIGITS) {
+      throw new UnsupportedValueException();
+    }
+    long epochSecond = 0;
+    for (int i = offset; i < offset + length; i++) {
+      char c = chars[i];
+      if (c < '0' || c > '9') {
+        // Decimal or ISO-8601 timestamps
+        throw new UnsupportedValueException();
+      }
+      epochSecond = epochSecond * 10 + (c - '0');
+    }
+    return epochSecond;
+  }
+
+  private static boolean contentEquals(String string, char[] chars, int offset, int length) {
+    if (string.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (string.charAt(i) != chars[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Thrown for values outside of the shape the parser is specialized for. */
+  private static final class UnsupportedValueException extends Exception {}
+}
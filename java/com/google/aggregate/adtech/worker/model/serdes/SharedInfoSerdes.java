@@ -36,16 +36,21 @@ public final class SharedInfoSerdes extends Converter<String, Optional<SharedInf
   private static final Logger logger = LoggerFactory.getLogger(SharedInfoSerdes.class);
 
   TimeObjectMapper objectMapper;
+  private final SharedInfoParser sharedInfoParser;
 
   @Inject
   SharedInfoSerdes(TimeObjectMapper objectMapper) {
     objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, true);
     this.objectMapper = objectMapper;
+    this.sharedInfoParser = new SharedInfoParser(objectMapper.getFactory());
   }
 
   /**
    * Convert a JSON String to a {@link SharedInfo}.
    *
+   * <p>The shared_info Chrome produces is decoded by {@link SharedInfoParser}, other valid JSON
+   * falls back to the Jackson data binding.
+   *
    * @param sharedInfoJsonString JSON string of a serialized SharedInfo object
    * @return {@link Optional} with SharedInfo present if deserialization succeeds, empty if it
    *     fails. If an empty string is provided as input an empty Optional is returned.
@@ -53,6 +58,10 @@ public final class SharedInfoSerdes extends Converter<String, Optional<SharedInf
   @Override
   protected Optional<SharedInfo> doForward(String sharedInfoJsonString) {
     if (!sharedInfoJsonString.isEmpty()) {
+      Optional<SharedInfo> sharedInfo = sharedInfoParser.parse(sharedInfoJsonString);
+      if (sharedInfo.isPresent()) {
+        return sharedInfo;
+      }
       try {
         return Optional.of(objectMapper.readValue(sharedInfoJsonString, SharedInfo.class));
       } catch (JsonProcessingException ignored) {
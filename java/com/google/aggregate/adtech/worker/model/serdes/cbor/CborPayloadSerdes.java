@@ -19,6 +19,7 @@ package com.google.aggregate.adtech.worker.model.serdes.cbor;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.aggregate.adtech.worker.model.Payload;
 import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
+import com.google.aggregate.shared.io.ByteBufferByteSource;
 import com.google.common.io.ByteSource;
 import java.io.IOException;
 import java.util.Optional;
@@ -55,7 +56,8 @@ public final class CborPayloadSerdes extends PayloadSerdes {
         logger.warn("Empty byte source for deserializing");
         return Optional.empty();
       }
-      return Optional.of(cborMapper.readValue(byteSource.read(), Payload.class));
+      return Optional.of(
+          cborMapper.readValue(ByteBufferByteSource.bytesOf(byteSource), Payload.class));
     } catch (IOException e) {
       // Exception is not included because stack trace includes the decrypted payload which is
       // private information
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.model.serdes.cbor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.aggregate.adtech.worker.model.Fact;
+import com.google.aggregate.adtech.worker.model.Payload;
+import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
+import com.google.aggregate.shared.io.ByteBufferByteSource;
+import com.google.common.io.ByteSource;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Optional;
+import javax.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts to/from a ByteSource containing a CBOR serialized {@link Payload}, decoding with a
+ * streaming parser specialized for the histogram payload layout:
+ *
+ * <pre>{operation: text, data: [{bucket: bytes, value: bytes}, ...], padding: any}</pre>
+ *
+ * <p>Buckets and values are read straight from the plaintext bytes without building an
+ * intermediate tree, and {@code padding} and other unknown keys are skipped without allocating.
+ * Well-formed CBOR that this parser does not specialize for (e.g. indefinite-length byte strings
+ * or tagged items) is handed to {@link CborPayloadSerdes}, so both implementations accept the same
+ * inputs. Serialization is always delegated to {@link CborPayloadSerdes}.
+ *
+ * <p>Optionals are used in lieu of checked exceptions.
+ */
+public final class HistogramCborPayloadSerdes extends PayloadSerdes {
+
+  private static final Logger logger = LoggerFactory.getLogger(HistogramCborPayloadSerdes.class);
+
+  private static final int MAJOR_TYPE_UNSIGNED_INT = 0;
+  private static final int MAJOR_TYPE_NEGATIVE_INT = 1;
+  private static final int MAJOR_TYPE_BYTE_STRING = 2;
+  private static final int MAJOR_TYPE_TEXT_STRING = 3;
+  private static final int MAJOR_TYPE_ARRAY = 4;
+  private static final int MAJOR_TYPE_MAP = 5;
+  private static final int MAJOR_TYPE_TAG = 6;
+
+  private static final int ADDITIONAL_INFO_INDEFINITE = 31;
+  private static final int BREAK = 0xff;
+  private static final long INDEFINITE_LENGTH = -1;
+
+  private static final byte[] OPERATION_KEY = "operation".getBytes(UTF_8);
+  private static final byte[] DATA_KEY = "data".getBytes(UTF_8);
+  private static final byte[] BUCKET_KEY = "bucket".getBytes(UTF_8);
+  private static final byte[] VALUE_KEY = "value".getBytes(UTF_8);
+  private static final byte[] HISTOGRAM_OPERATION = Payload.HISTOGRAM_OPERATION.getBytes(UTF_8);
+
+  private static final int MAX_BUCKET_BYTES = 16;
+  private static final int MAX_VALUE_BYTES = 4;
+  // Nesting of skipped items, far deeper than any payload nests but well within the thread stack
+  private static final int MAX_SKIP_DEPTH = 1000;
+
+  private final CborPayloadSerdes cborPayloadSerdes;
+
+  @Inject
+  public HistogramCborPayloadSerdes(CborPayloadSerdes cborPayloadSerdes) {
+    this.cborPayloadSerdes = cborPayloadSerdes;
+  }
+
+  /**
+   * Convert bytes to a {@link Payload}.
+   *
+   * @param byteSource raw, plaintext bytes of a CBOR serialized Payload object
+   * @return {@link Optional} with Payload present if deserialization succeeds, empty if it fails.
+   */
+  @Override
+  protected Optional<Payload> doForward(ByteSource byteSource) {
+    byte[] bytes;
+    try {
+      bytes = ByteBufferByteSource.bytesOf(byteSource);
+    } catch (IOException e) {
+      logger.warn("Failed to read CBOR bytes of Payload");
+      return Optional.empty();
+    }
+    if (bytes.length == 0) {
+      logger.warn("Empty byte source for deserializing");
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.of(new Decoder(bytes).decodePayload());
+    } catch (UnspecializedCborException e) {
+      return cborPayloadSerdes.convert(byteSource);
+    } catch (MalformedPayloadException e) {
+      // Exception is not included because its message may include the decrypted payload which is
+      // private information
+      logger.warn("Failed to deserialize from CBOR bytes to Payload");
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Convert a {@link Payload} to bytes.
+   *
+   * @param payload the optional payload object
+   * @return raw, plaintext, bytes of a CBOR serialized payload object. ByteSource will be empty if
+   *     the input Optional is empty.
+   */
+  @Override
+  protected ByteSource doBackward(Optional<Payload> payload) {
+    return cborPayloadSerdes.reverse().convert(payload);
+  }
+
+  /** Single-use cursor over the plaintext bytes of one payload. */
+  private static final class Decoder {
+
+    private final byte[] bytes;
+    private int position = 0;
+
+    // Head of the item most recently read by readHead()
+    private int majorType;
+    private int additionalInfo;
+
+    private Decoder(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    private Payload decodePayload() throws MalformedPayloadException, UnspecializedCborException {
+      Payload.Builder payloadBuilder = Payload.builder();
+      boolean hasOperation = false;
+
+      long entries = readContainerHead(MAJOR_TYPE_MAP);
+      for (long i = 0; hasNext(entries, i); i++) {
+        int keyLength = readTextKey();
+        int keyOffset = position;
+        position += keyLength;
+
+        if (keyEquals(keyOffset, keyLength, OPERATION_KEY)) {
+          payloadBuilder.setOperation(readOperation());
+          hasOperation = true;
+        } else if (keyEquals(keyOffset, keyLength, DATA_KEY)) {
+          long facts = readContainerHead(MAJOR_TYPE_ARRAY);
+          for (long j = 0; hasNext(facts, j); j++) {
+            payloadBuilder.addFact(readFact());
+          }
+        } else {
+          // "padding" and unknown keys are ignored, as with the Jackson based deserialization
+          skipItem();
+        }
+      }
+      if (!hasOperation) {
+        throw new MalformedPayloadException();
+      }
+      return payloadBuilder.build();
+    }
+
+    private Fact readFact() throws MalformedPayloadException, UnspecializedCborException {
+      BigInteger bucket = null;
+      long value = -1;
+
+      long entries = readContainerHead(MAJOR_TYPE_MAP);
+      for (long i = 0; hasNext(entries, i); i++) {
+        int keyLength = readTextKey();
+        int keyOffset = position;
+        position += keyLength;
+
+        if (keyEquals(keyOffset, keyLength, BUCKET_KEY)) {
+          int length = readByteStringHead();
+          if (length > MAX_BUCKET_BYTES) {
+            throw new MalformedPayloadException();
+          }
+          checkAvailable(length);
+          // Big-endian unsigned magnitude, read in place from the plaintext bytes
+          bucket = length == 0 ? BigInteger.ZERO : new BigInteger(1, bytes, position, length);
+          position += length;
+        } else if (keyEquals(keyOffset, keyLength, VALUE_KEY)) {
+          int length = readByteStringHead();
+          if (length > MAX_VALUE_BYTES) {
+            throw new MalformedPayloadException();
+          }
+          checkAvailable(length);
+          value = 0;
+          for (int end = position + length; position < end; position++) {
+            value = (value << 8) | (bytes[position] & 0xff);
+          }
+        } else {
+          skipItem();
+        }
+      }
+      if (bucket == null || value < 0) {
+        throw new MalformedPayloadException();
+      }
+      return Fact.builder().setBucket(bucket).setValue(value).build();
+    }
+
+    private String readOperation() throws MalformedPayloadException, UnspecializedCborException {
+      readHead();
+      if (majorType != MAJOR_TYPE_TEXT_STRING || additionalInfo == ADDITIONAL_INFO_INDEFINITE) {
+        throw new UnspecializedCborException();
+      }
+      int length = toLength(readArgument());
+      checkAvailable(length);
+      int offset = position;
+      position += length;
+      // Share the constant for the only supported operation instead of decoding a new string
+      return keyEquals(offset, length, HISTOGRAM_OPERATION)
+          ? Payload.HISTOGRAM_OPERATION
+          : new String(bytes, offset, length, UTF_8);
+    }
+
+    /** Reads the head of a definite-length text string map key, returning the key's length. */
+    private int readTextKey() throws MalformedPayloadException, UnspecializedCborException {
+      readHead();
+      if (majorType != MAJOR_TYPE_TEXT_STRING || additionalInfo == ADDITIONAL_INFO_INDEFINITE) {
+        throw new UnspecializedCborException();
+      }
+      int length = toLength(readArgument());
+      checkAvailable(length);
+      return length;
+    }
+
+    private int readByteStringHead() throws MalformedPayloadException, UnspecializedCborException {
+      readHead();
+      if (majorType != MAJOR_TYPE_BYTE_STRING || additionalInfo == ADDITIONAL_INFO_INDEFINITE) {
+        throw new UnspecializedCborException();
+      }
+      return toLength(readArgument());
+    }
+
+    /**
+     * Reads the head of a map or array, returning its number of entries or {@link
+     * #INDEFINITE_LENGTH}.
+     */
+    private long readContainerHead(int expectedMajorType)
+        throws MalformedPayloadException, UnspecializedCborException {
+      readHead();
+      if (majorType != expectedMajorType) {
+        throw new UnspecializedCborException();
+      }
+      if (additionalInfo == ADDITIONAL_INFO_INDEFINITE) {
+        return INDEFINITE_LENGTH;
+      }
+      long entries = readArgument();
+      if (entries < 0) {
+        throw new MalformedPayloadException();
+      }
+      return entries;
+    }
+
+    /**
+     * Whether the container with the given number of entries has an entry at the index. Consumes
+     * the break marker that ends an indefinite-length container.
+     */
+    private boolean hasNext(long entries, long index) throws MalformedPayloadException {
+      if (entries != INDEFINITE_LENGTH) {
+        return index < entries;
+      }
+      if (atBreak()) {
+        position++;
+        return false;
+      }
+      return true;
+    }
+
+    /** Whether the next byte is the break marker that ends an indefinite-length item. */
+    private boolean atBreak() throws MalformedPayloadException {
+      checkAvailable(1);
+      return (bytes[position] & 0xff) == BREAK;
+    }
+
+    /** Skips the next data item, including all nested items, without materializing it. */
+    private void skipItem() throws MalformedPayloadException {
+      skipItem(/* depth= */ 0);
+    }
+
+    /**
+     * Skips the next data item nested {@code depth} levels into a skipped item, rejecting payloads
+     * nested too deeply to be skipped without overflowing the stack.
+     */
+    private void skipItem(int depth) throws MalformedPayloadException {
+      if (depth > MAX_SKIP_DEPTH) {
+        throw new MalformedPayloadException();
+      }
+      readHead();
+      switch (majorType) {
+        case MAJOR_TYPE_UNSIGNED_INT:
+        case MAJOR_TYPE_NEGATIVE_INT:
+          readArgument();
+          return;
+        case MAJOR_TYPE_BYTE_STRING:
+        case MAJOR_TYPE_TEXT_STRING:
+          if (additionalInfo == ADDITIONAL_INFO_INDEFINITE) {
+            while (!atBreak()) {
+              skipItem(depth + 1);
+            }
+            position++;
+          } else {
+            int length = toLength(readArgument());
+            checkAvailable(length);
+            position += length;
+          }
+          return;
+        case MAJOR_TYPE_ARRAY:
+        case MAJOR_TYPE_MAP:
+          int itemsPerEntry = majorType == MAJOR_TYPE_MAP ? 2 : 1;
+          if (additionalInfo == ADDITIONAL_INFO_INDEFINITE) {
+            while (!atBreak()) {
+              for (int i = 0; i < itemsPerEntry; i++) {
+                skipItem(depth + 1);
+              }
+            }
+            position++;
+          } else {
+            long entries = readArgument();
+            if (entries < 0) {
+              throw new MalformedPayloadException();
+            }
+            for (long i = 0; i < entries; i++) {
+              for (int j = 0; j < itemsPerEntry; j++) {
+                skipItem(depth + 1);
+              }
+            }
+          }
+          return;
+        case MAJOR_TYPE_TAG:
+          readArgument();
+          skipItem(depth + 1);
+          return;
+        default:
+          // Simple values and floats, whose argument holds the entire value
+          if (additionalInfo == ADDITIONAL_INFO_INDEFINITE) {
+            // A break outside of an indefinite-length item
+            throw new MalformedPayloadException();
+          }
+          readArgument();
+      }
+    }
+
+    private void readHead() throws MalformedPayloadException {
+      checkAvailable(1);
+      int initialByte = bytes[position++] & 0xff;
+      majorType = initialByte >>> 5;
+      additionalInfo = initialByte & 0x1f;
+    }
+
+    /** Reads the argument of the item whose head was just read, for additional info below 28. */
+    private long readArgument() throws MalformedPayloadException {
+      if (additionalInfo < 24) {
+        return additionalInfo;
+      }
+      int argumentBytes;
+      switch (additionalInfo) {
+        case 24:
+          argumentBytes = 1;
+          break;
+        case 25:
+          argumentBytes = 2;
+          break;
+        case 26:
+          argumentBytes = 4;
+          break;
+        case 27:
+          argumentBytes = 8;
+          break;
+        default:
+          throw new MalformedPayloadException();
+      }
+      checkAvailable(argumentBytes);
+      long argument = 0;
+      for (int end = position + argumentBytes; position < end; position++) {
+        argument = (argument << 8) | (bytes[position] & 0xff);
+      }
+      return argument;
+    }
+
+    private int toLength(long argument) throws MalformedPayloadException {
+      if (argument < 0 || argument > bytes.length - position) {
+        throw new MalformedPayloadException();
+      }
+      return (int) argument;
+    }
+
+    private void checkAvailable(int length) throws MalformedPayloadException {
+      if (length > bytes.length - position) {
+        throw new MalformedPayloadException();
+      }
+    }
+
+    private boolean keyEquals(int offset, int length, byte[] key) {
+      if (length != key.length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (bytes[offset + i] != key[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Thrown when the bytes are not a valid CBOR serialized Payload. */
+  private static final class MalformedPayloadException extends Exception {}
+
+  /** Thrown when the bytes use CBOR features the specialized decoder does not handle. */
+  private static final class UnspecializedCborException extends Exception {}
+}
@@ -18,6 +18,8 @@ package com.google.aggregate.adtech.worker.reader.avro;
 
 import com.google.aggregate.adtech.worker.RecordReader.RecordReadException;
 import com.google.aggregate.adtech.worker.RecordReaderFactory;
+import com.google.aggregate.adtech.worker.util.MappedFileInput;
+import com.google.aggregate.protocol.avro.AvroReportsReader;
 import com.google.aggregate.protocol.avro.AvroReportsReaderFactory;
 import com.google.inject.Inject;
 import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient;
@@ -66,8 +68,14 @@ public class LocalNioPathAvroReaderFactory implements RecordReaderFactory {
   }
 
   private LocalNioPathAvroRecordReader makeLocalNioReader(Path nioPath) throws IOException {
-    return new LocalNioPathAvroRecordReader(
-        reportsReaderFactory.create(Files.newInputStream(nioPath)));
+    AvroReportsReader reportsReader;
+    try {
+      reportsReader = reportsReaderFactory.create(MappedFileInput.open(nioPath));
+    } catch (UnsupportedOperationException e) {
+      // Files of in-memory file systems can't be mapped
+      reportsReader = reportsReaderFactory.create(Files.newInputStream(nioPath));
+    }
+    return new LocalNioPathAvroRecordReader(reportsReader);
   }
 
   private LocalNioPathAvroRecordReader makeBlobStorageClientReader(DataLocation dataLocation)
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.ranged;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import com.google.common.io.ByteStreams;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.inject.Inject;
+
+/** {@link RangedBlobReader} for blobs stored as files, with the bucket as their directory. */
+public final class FileSystemRangedBlobReader implements RangedBlobReader {
+
+  private final FileSystem fileSystem;
+
+  @Inject
+  public FileSystemRangedBlobReader(FileSystem fileSystem) {
+    this.fileSystem = fileSystem;
+  }
+
+  @Override
+  public long getBlobSize(DataLocation location) throws IOException {
+    return Files.size(toPath(location));
+  }
+
+  @Override
+  public InputStream getBlobRange(DataLocation location, long offset, long length)
+      throws IOException {
+    SeekableByteChannel channel = Files.newByteChannel(toPath(location), READ);
+    channel.position(offset);
+    return ByteStreams.limit(Channels.newInputStream(channel), length);
+  }
+
+  private Path toPath(DataLocation location) {
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    return fileSystem.getPath(blobLocation.bucket(), blobLocation.key());
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.ranged;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.io.ByteStreams;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Stream over a blob that is fetched as consecutive byte ranges over several concurrent streams.
+ *
+ * <p>Up to {@code maxRangesInFlight} ranges following the one being read are fetched ahead, each
+ * into its own buffer; a buffer is reused for a later range once the stream has been read past it.
+ * Memory use is therefore bounded by {@code maxRangesInFlight + 1} ranges, however large the blob.
+ *
+ * <p>Like other input streams, instances are not thread-safe.
+ */
+public final class ParallelRangedInputStream extends InputStream {
+
+  private final RangedBlobReader rangedBlobReader;
+  private final DataLocation location;
+  private final long blobSize;
+  private final int rangeSize;
+  private final int maxRangesInFlight;
+  private final ExecutorService fetchExecutor;
+
+  // Fetches in the order of their ranges
+  private final Deque<Future<FetchedRange>> rangeFetches = new ArrayDeque<>();
+  private final Deque<byte[]> freeBuffers = new ArrayDeque<>();
+  private long nextRangeOffset = 0;
+  private FetchedRange currentRange = null;
+  private int currentPosition = 0;
+  private boolean closed = false;
+
+  /**
+   * Starts fetching the first ranges of the blob.
+   *
+   * @param blobSize size of the blob, as returned by {@link RangedBlobReader#getBlobSize}
+   * @param rangeSize size of the ranges fetched, in bytes
+   * @param maxRangesInFlight maximum number of ranges fetched concurrently
+   * @param fetchExecutor executor the ranges are fetched on, which must not be needed by the
+   *     reader of the stream to make progress
+   */
+  public ParallelRangedInputStream(
+      RangedBlobReader rangedBlobReader,
+      DataLocation location,
+      long blobSize,
+      int rangeSize,
+      int maxRangesInFlight,
+      ExecutorService fetchExecutor) {
+    checkArgument(rangeSize > 0, "Range size must be positive, was %s", rangeSize);
+    checkArgument(
+        maxRangesInFlight > 0, "Ranges in flight must be positive, was %s", maxRangesInFlight);
+    this.rangedBlobReader = rangedBlobReader;
+    this.location = location;
+    this.blobSize = blobSize;
+    this.rangeSize = rangeSize;
+    this.maxRangesInFlight = maxRangesInFlight;
+    this.fetchExecutor = fetchExecutor;
+    startFetches();
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureCurrentRange()) {
+      return -1;
+    }
+    return currentRange.buffer[currentPosition++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!ensureCurrentRange()) {
+      return -1;
+    }
+    int readCount = Math.min(length, currentRange.length - currentPosition);
+    System.arraycopy(currentRange.buffer, currentPosition, bytes, offset, readCount);
+    currentPosition += readCount;
+    return readCount;
+  }
+
+  @Override
+  public int available() {
+    return currentRange == null ? 0 : currentRange.length - currentPosition;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    rangeFetches.forEach(fetch -> fetch.cancel(/* mayInterruptIfRunning= */ true));
+    rangeFetches.clear();
+    freeBuffers.clear();
+    currentRange = null;
+  }
+
+  /**
+   * Moves on to the next range if the current one has been read.
+   *
+   * @return false if the end of the blob has been reached
+   */
+  private boolean ensureCurrentRange() throws IOException {
+    if (closed) {
+      throw new IOException("stream is closed");
+    }
+    if (currentRange != null && currentPosition < currentRange.length) {
+      return true;
+    }
+    if (currentRange != null) {
+      freeBuffers.push(currentRange.buffer);
+      currentRange = null;
+    }
+    startFetches();
+    Future<FetchedRange> nextRange = rangeFetches.poll();
+    if (nextRange == null) {
+      return false;
+    }
+    try {
+      currentRange = nextRange.get();
+      currentPosition = 0;
+    } catch (ExecutionException e) {
+      close();
+      throw new IOException("Failed to read range of blob " + location, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new InterruptedIOException("Interrupted while reading blob " + location);
+    }
+    return true;
+  }
+
+  private void startFetches() {
+    while (rangeFetches.size() < maxRangesInFlight && nextRangeOffset < blobSize) {
+      long offset = nextRangeOffset;
+      int length = (int) Math.min(rangeSize, blobSize - offset);
+      byte[] buffer = freeBuffers.isEmpty() ? new byte[rangeSize] : freeBuffers.pop();
+      rangeFetches.add(fetchExecutor.submit(() -> fetchRange(offset, length, buffer)));
+      nextRangeOffset += length;
+    }
+  }
+
+  private FetchedRange fetchRange(long offset, int length, byte[] buffer) throws IOException {
+    try (InputStream rangeStream = rangedBlobReader.getBlobRange(location, offset, length)) {
+      ByteStreams.readFully(rangeStream, buffer, 0, length);
+    }
+    return new FetchedRange(buffer, length);
+  }
+
+  private static final class FetchedRange {
+
+    private final byte[] buffer;
+    private final int length;
+
+    private FetchedRange(byte[] buffer, int length) {
+      this.buffer = buffer;
+      this.length = length;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.ranged;
+
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Reads byte ranges of blobs, so that a single blob can be fetched over several streams. */
+public interface RangedBlobReader {
+
+  /** Returns the size of the blob in bytes. */
+  long getBlobSize(DataLocation location) throws IOException;
+
+  /**
+   * Opens a stream over {@code length} bytes of the blob starting at {@code offset}. The range must
+   * lie within the blob.
+   */
+  InputStream getBlobRange(DataLocation location, long offset, long length) throws IOException;
+}
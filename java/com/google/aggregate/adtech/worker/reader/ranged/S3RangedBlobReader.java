@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.ranged;
+
+import com.google.scp.operator.cpio.blobstorageclient.aws.S3BlobStorageClientModule.S3EndpointOverrideBinding;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import javax.inject.Inject;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+
+/** {@link RangedBlobReader} for S3 objects, reading ranges with ranged GET requests. */
+public final class S3RangedBlobReader implements RangedBlobReader {
+
+  private final S3Client s3Client;
+
+  @Inject
+  public S3RangedBlobReader(
+      SdkHttpClient httpClient, @S3EndpointOverrideBinding URI endpointOverride) {
+    S3ClientBuilder s3ClientBuilder = S3Client.builder().httpClient(httpClient);
+    if (!endpointOverride.toString().isEmpty()) {
+      s3ClientBuilder.endpointOverride(endpointOverride);
+    }
+    this.s3Client = s3ClientBuilder.build();
+  }
+
+  @Override
+  public long getBlobSize(DataLocation location) throws IOException {
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    try {
+      return s3Client
+          .headObject(
+              HeadObjectRequest.builder()
+                  .bucket(blobLocation.bucket())
+                  .key(blobLocation.key())
+                  .build())
+          .contentLength();
+    } catch (SdkException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public InputStream getBlobRange(DataLocation location, long offset, long length)
+      throws IOException {
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    try {
+      return s3Client.getObject(
+          GetObjectRequest.builder()
+              .bucket(blobLocation.bucket())
+              .key(blobLocation.key())
+              // HTTP byte ranges are inclusive
+              .range(String.format("bytes=%d-%d", offset, offset + length - 1))
+              .build());
+    } catch (SdkException e) {
+      throw new IOException(e);
+    }
+  }
+}
@@ -16,22 +16,32 @@
 
 package com.google.aggregate.adtech.worker.selector;
 
+import com.google.aggregate.adtech.worker.reader.ranged.FileSystemRangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.ranged.RangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.ranged.S3RangedBlobReader;
 import com.google.inject.Module;
 import com.google.scp.operator.cpio.blobstorageclient.aws.S3BlobStorageClientModule;
 import com.google.scp.operator.cpio.blobstorageclient.testing.FSBlobStorageClientModule;
 
 /** CLI enum to select the data handler client implementation */
 public enum BlobStorageClientSelector {
-  AWS_S3_CLIENT(new S3BlobStorageClientModule()),
-  LOCAL_FS_CLIENT(new FSBlobStorageClientModule());
+  AWS_S3_CLIENT(new S3BlobStorageClientModule(), S3RangedBlobReader.class),
+  LOCAL_FS_CLIENT(new FSBlobStorageClientModule(), FileSystemRangedBlobReader.class);
 
   private final Module blobStorageClientModule;
+  private final Class<? extends RangedBlobReader> rangedBlobReaderClass;
 
-  BlobStorageClientSelector(Module blobStorageClientModule) {
+  BlobStorageClientSelector(
+      Module blobStorageClientModule, Class<? extends RangedBlobReader> rangedBlobReaderClass) {
     this.blobStorageClientModule = blobStorageClientModule;
+    this.rangedBlobReaderClass = rangedBlobReaderClass;
   }
 
   public Module getBlobStorageClientSelectorModule() {
     return blobStorageClientModule;
   }
+
+  public Class<? extends RangedBlobReader> getRangedBlobReaderClass() {
+    return rangedBlobReaderClass;
+  }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import org.apache.avro.file.SeekableInput;
+
+/**
+ * {@link SeekableInput} over a memory mapped local file, so that reading the file doesn't take a
+ * system call and a copy out of the page cache for every buffer filled.
+ *
+ * <p>Files are mapped in segments of at most 1 GiB, since a single mapping is limited to 2 GiB.
+ * Instances are not thread-safe; each reader of a file opens its own input.
+ */
+public final class MappedFileInput implements SeekableInput {
+
+  private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+  private final ByteBuffer[] segments;
+  private final long segmentSize;
+  private final long length;
+  private long position = 0;
+  private boolean closed = false;
+
+  /**
+   * Maps the file at the path. The mapping stays valid after the file is closed, until the input
+   * is garbage collected.
+   *
+   * @throws UnsupportedOperationException if the file system of the path doesn't support mapping
+   */
+  public static MappedFileInput open(Path path) throws IOException {
+    return open(path, MAX_SEGMENT_SIZE);
+  }
+
+  static MappedFileInput open(Path path, long segmentSize) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      long length = channel.size();
+      ByteBuffer[] segments = new ByteBuffer[(int) ((length + segmentSize - 1) / segmentSize)];
+      for (int i = 0; i < segments.length; i++) {
+        long segmentStart = i * segmentSize;
+        segments[i] =
+            channel.map(READ_ONLY, segmentStart, Math.min(segmentSize, length - segmentStart));
+      }
+      return new MappedFileInput(segments, segmentSize, length);
+    }
+  }
+
+  private MappedFileInput(ByteBuffer[] segments, long segmentSize, long length) {
+    this.segments = segments;
+    this.segmentSize = segmentSize;
+    this.length = length;
+  }
+
+  /** Returns a stream over the input from its current position, which it advances. */
+  public InputStream asInputStream() {
+    return new MappedFileInputStream();
+  }
+
+  @Override
+  public void seek(long position) throws IOException {
+    checkOpen();
+    checkArgument(position >= 0 && position <= length, "Position %s outside of file", position);
+    this.position = position;
+  }
+
+  @Override
+  public long tell() throws IOException {
+    checkOpen();
+    return position;
+  }
+
+  @Override
+  public long length() throws IOException {
+    checkOpen();
+    return length;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int count) throws IOException {
+    checkOpen();
+    if (count == 0) {
+      return 0;
+    }
+    if (position >= length) {
+      return -1;
+    }
+    // Reads don't cross segments, callers read again for the rest
+    ByteBuffer segment = segments[(int) (position / segmentSize)];
+    segment.position((int) (position % segmentSize));
+    int readCount = Math.min(count, segment.remaining());
+    segment.get(bytes, offset, readCount);
+    position += readCount;
+    return readCount;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException("stream is closed");
+    }
+  }
+
+  private final class MappedFileInputStream extends InputStream {
+
+    private final byte[] singleByte = new byte[1];
+
+    @Override
+    public int read() throws IOException {
+      return MappedFileInput.this.read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int count) throws IOException {
+      return MappedFileInput.this.read(bytes, offset, count);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = Math.max(0, Math.min(n, length - position));
+      seek(position + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      checkOpen();
+      return (int) Math.min(Integer.MAX_VALUE, length - position);
+    }
+
+    @Override
+    public void close() {
+      MappedFileInput.this.close();
+    }
+  }
+}
@@ -110,6 +110,90 @@ public final class NumericConversions {
     return bytes;
   }
 
+  /**
+   * Gets the high 64 bits of an unsigned 128-bit integer, as stored by {@link
+   * #uInt128FromLongs(long, long)}.
+   */
+  public static long uInt128HighBits(BigInteger value) {
+    return value.shiftRight(64).longValue();
+  }
+
+  /**
+   * Gets the low 64 bits of an unsigned 128-bit integer, as stored by {@link
+   * #uInt128FromLongs(long, long)}.
+   */
+  public static long uInt128LowBits(BigInteger value) {
+    return value.longValue();
+  }
+
+  /**
+   * Creates an unsigned 128-bit integer from its high and low 64 bits. Both halves are read as
+   * unsigned, so the range of returned values is 0 to 2^128-1 inclusive.
+   */
+  public static BigInteger uInt128FromLongs(long highBits, long lowBits) {
+    byte[] bytes = new byte[16];
+    for (int i = 0; i < 8; i++) {
+      bytes[i] = (byte) (highBits >>> (56 - 8 * i));
+      bytes[i + 8] = (byte) (lowBits >>> (56 - 8 * i));
+    }
+    return new BigInteger(POSITIVE_SIGN, bytes);
+  }
+
+  /** Compares unsigned 128-bit integers given as their high and low 64 bits. */
+  public static int compareUInt128(long highBits, long lowBits, long otherHigh, long otherLow) {
+    int highComparison = Long.compareUnsigned(highBits, otherHigh);
+    return highComparison != 0 ? highComparison : Long.compareUnsigned(lowBits, otherLow);
+  }
+
+  /**
+   * Sorts indexed unsigned 128-bit integers in ascending order between the inclusive bounds, with
+   * an in-place quicksort.
+   */
+  public static void sortUInt128(UInt128Sortable values, int from, int to) {
+    while (from < to) {
+      int middle = (from + to) >>> 1;
+      long pivotHigh = values.highBits(middle);
+      long pivotLow = values.lowBits(middle);
+      int left = from;
+      int right = to;
+      while (left <= right) {
+        while (compareUInt128(values.highBits(left), values.lowBits(left), pivotHigh, pivotLow)
+            < 0) {
+          left++;
+        }
+        while (compareUInt128(values.highBits(right), values.lowBits(right), pivotHigh, pivotLow)
+            > 0) {
+          right--;
+        }
+        if (left <= right) {
+          values.swap(left++, right--);
+        }
+      }
+      // Recurses into the smaller side to bound the stack depth.
+      if (right - from < to - left) {
+        sortUInt128(values, from, right);
+        from = left;
+      } else {
+        sortUInt128(values, left, to);
+        to = right;
+      }
+    }
+  }
+
+  /**
+   * Unsigned 128-bit integers sorted by {@link #sortUInt128(UInt128Sortable, int, int)}, typically
+   * held as their high and low bits in parallel arrays.
+   */
+  public interface UInt128Sortable {
+
+    long highBits(int index);
+
+    long lowBits(int index);
+
+    /** Swaps the values at the indices, along with anything held in parallel to them. */
+    void swap(int i, int j);
+  }
+
   /** Simple utility to create BigInteger from string rep from an int */
   public static BigInteger createBucketFromInt(int bucket) {
     return NumericConversions.uInt128FromBytes((String.valueOf(bucket)).getBytes(US_ASCII));
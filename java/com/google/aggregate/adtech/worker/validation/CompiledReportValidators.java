@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.validation;
+
+import static java.util.Comparator.comparingInt;
+
+import com.google.aggregate.adtech.worker.model.ErrorMessage;
+import com.google.aggregate.adtech.worker.model.Report;
+import com.google.common.collect.ImmutableList;
+import com.google.scp.operator.cpio.jobclient.model.Job;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The report validators of a job, bound to the job once so that validating a report only runs the
+ * per-report checks.
+ *
+ * <p>Validations are run cheapest first, validators of equal cost keep their order. Validations
+ * that always pass for the job are left out. If short-circuiting, validation stops at the first
+ * error of a report, otherwise all the errors of the report are returned.
+ */
+public final class CompiledReportValidators {
+
+  private final Job job;
+  private final JobReportValidator[] validators;
+  private final boolean shortCircuit;
+
+  private CompiledReportValidators(Job job, JobReportValidator[] validators, boolean shortCircuit) {
+    this.job = job;
+    this.validators = validators;
+    this.shortCircuit = shortCircuit;
+  }
+
+  /** Binds the validators to the job, ordering them by cost. */
+  public static CompiledReportValidators compile(
+      Iterable<ReportValidator> reportValidators, Job job, boolean shortCircuit) {
+    List<ReportValidator> byCost = new ArrayList<>();
+    reportValidators.forEach(byCost::add);
+    // List.sort is stable, so validators of equal cost run in the order they are bound
+    byCost.sort(comparingInt(ReportValidator::cost));
+    List<JobReportValidator> validators = new ArrayList<>(byCost.size());
+    for (ReportValidator reportValidator : byCost) {
+      JobReportValidator validator = reportValidator.forJob(job);
+      if (validator != JobReportValidator.ALWAYS_VALID) {
+        validators.add(validator);
+      }
+    }
+    return new CompiledReportValidators(
+        job, validators.toArray(new JobReportValidator[0]), shortCircuit);
+  }
+
+  /** Returns the job the validators are bound to. */
+  public Job job() {
+    return job;
+  }
+
+  /** Validates the report, only allocating if some validations fail. */
+  public ImmutableList<ErrorMessage> validate(Report report) {
+    ImmutableList.Builder<ErrorMessage> validationErrors = null;
+    for (JobReportValidator validator : validators) {
+      Optional<ErrorMessage> validationError = validator.validate(report);
+      if (validationError.isPresent()) {
+        if (shortCircuit) {
+          return ImmutableList.of(validationError.get());
+        }
+        if (validationErrors == null) {
+          validationErrors = ImmutableList.builder();
+        }
+        validationErrors.add(validationError.get());
+      }
+    }
+    return validationErrors == null ? ImmutableList.of() : validationErrors.build();
+  }
+
+  /** Lets the validators report the statistics of the job once all its reports are validated. */
+  public void jobFinished() {
+    for (JobReportValidator validator : validators) {
+      validator.jobFinished();
+    }
+  }
+}
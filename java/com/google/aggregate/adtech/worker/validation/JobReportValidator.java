@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.validation;
+
+import com.google.aggregate.adtech.worker.model.ErrorMessage;
+import com.google.aggregate.adtech.worker.model.Report;
+import java.util.Optional;
+
+/** A {@link ReportValidator} bound to the job whose reports it validates. */
+@FunctionalInterface
+public interface JobReportValidator {
+
+  /** Validator of a job whose reports always pass, left out of validation altogether. */
+  JobReportValidator ALWAYS_VALID = report -> Optional.empty();
+
+  /**
+   * Validates a single report of the job. The Optional<ErrorMessage> will be present when the
+   * validation fails.
+   */
+  Optional<ErrorMessage> validate(Report report);
+
+  /**
+   * Called once all reports of the job have been validated, for validators that report statistics
+   * of the job. Does nothing by default.
+   */
+  default void jobFinished() {}
+}
@@ -41,6 +41,26 @@ public final class ReportForDebugValidator implements ReportValidator {
     if (!debugRun || reportDebugMode) {
       return Optional.empty();
     }
+    return debugNotEnabled();
+  }
+
+  /** Every report of a job that is not a debug run is valid, so the validation is skipped. */
+  @Override
+  public JobReportValidator forJob(Job job) {
+    if (!DebugSupportHelper.isDebugRun(job)) {
+      return JobReportValidator.ALWAYS_VALID;
+    }
+    return report ->
+        report.sharedInfo().getReportDebugMode() ? Optional.empty() : debugNotEnabled();
+  }
+
+  /** Only reads a flag of the report. */
+  @Override
+  public int cost() {
+    return 0;
+  }
+
+  private static Optional<ErrorMessage> debugNotEnabled() {
     return Optional.of(
         ErrorMessage.builder()
             .setCategory(NUM_REPORTS_DEBUG_NOT_ENABLED.name())
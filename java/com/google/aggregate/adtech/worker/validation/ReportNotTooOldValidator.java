@@ -44,7 +44,21 @@ public final class ReportNotTooOldValidator implements ReportValidator {
 
   @Override
   public Optional<ErrorMessage> validate(Report report, Job unused) {
-    Instant oldestAllowedTime = Instant.now(clock).minus(MAX_REPORT_AGE);
+    return validate(report, oldestAllowedTime());
+  }
+
+  /** The age threshold is computed once for the whole job. */
+  @Override
+  public JobReportValidator forJob(Job unused) {
+    Instant oldestAllowedTime = oldestAllowedTime();
+    return report -> validate(report, oldestAllowedTime);
+  }
+
+  private Instant oldestAllowedTime() {
+    return Instant.now(clock).minus(MAX_REPORT_AGE);
+  }
+
+  private Optional<ErrorMessage> validate(Report report, Instant oldestAllowedTime) {
     if (report.sharedInfo().scheduledReportTime().isAfter(oldestAllowedTime)) {
       return Optional.empty();
     }
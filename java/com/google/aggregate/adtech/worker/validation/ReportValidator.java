@@ -24,9 +24,25 @@ import java.util.Optional;
 /** Responsible for performing a single validation operation on a single report */
 public interface ReportValidator {
 
+  /** Cost of validators that do not declare one. */
+  int DEFAULT_COST = 10;
+
   /**
    * Performs a single validation operation on a single report. The Optional<ErrorMessage> will be
    * present when a validation fails, if validation passes the Optional will be absent.
    */
   Optional<ErrorMessage> validate(Report report, Job ctx);
+
+  /**
+   * Binds the validation to a job, so that what only depends on the job is computed once rather
+   * than for every report. By default every report is validated against the job.
+   */
+  default JobReportValidator forJob(Job ctx) {
+    return report -> validate(report, ctx);
+  }
+
+  /** Relative cost of validating a report, cheaper validations are run first. */
+  default int cost() {
+    return DEFAULT_COST;
+  }
 }
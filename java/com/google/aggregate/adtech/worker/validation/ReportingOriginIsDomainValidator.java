@@ -17,12 +17,19 @@
 package com.google.aggregate.adtech.worker.validation;
 
 import static com.google.aggregate.adtech.worker.model.ErrorCounter.ATTRIBUTION_REPORT_TO_MALFORMED;
+import static com.google.scp.operator.shared.model.BackendModelUtil.toJobKeyString;
 
 import com.google.aggregate.adtech.worker.model.ErrorMessage;
 import com.google.aggregate.adtech.worker.model.Report;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.google.common.net.InternetDomainName;
 import com.google.scp.operator.cpio.jobclient.model.Job;
 import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Validates that the report's reportingOrigin is a valid domain.
@@ -30,13 +37,36 @@ import java.util.Optional;
  * <p>Valid domain is defined as one that is syntactically valid and ends in a public suffix. This
  * does not check if the domain actually exists or if any host is reachable at the domain. See
  * {@code InternetDomainName} for more detail.
+ *
+ * <p>A job only has a handful of distinct reporting origins, so when bound to a job the outcome of
+ * the check is cached by origin for the whole job, and the public suffix lookup only runs for the
+ * first report of each origin. The hit and miss counts of the cache are logged when the job
+ * finishes.
  */
 public final class ReportingOriginIsDomainValidator implements ReportValidator {
 
+  private static final int MAX_CACHED_ORIGINS = 1000;
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(ReportingOriginIsDomainValidator.class);
+
   @Override
   public Optional<ErrorMessage> validate(Report report, Job unused) {
-    if (InternetDomainName.isValid(report.sharedInfo().reportingOrigin())
-        && InternetDomainName.from(report.sharedInfo().reportingOrigin()).hasPublicSuffix()) {
+    return validate(report, isDomain(report.sharedInfo().reportingOrigin()));
+  }
+
+  @Override
+  public JobReportValidator forJob(Job job) {
+    return new OriginCachingValidator(toJobKeyString(job.jobKey()));
+  }
+
+  private static boolean isDomain(String reportingOrigin) {
+    return InternetDomainName.isValid(reportingOrigin)
+        && InternetDomainName.from(reportingOrigin).hasPublicSuffix();
+  }
+
+  private static Optional<ErrorMessage> validate(Report report, boolean reportingOriginIsDomain) {
+    if (reportingOriginIsDomain) {
       return Optional.empty();
     }
 
@@ -47,10 +77,51 @@ public final class ReportingOriginIsDomainValidator implements ReportValidator {
             .build());
   }
 
-  private String detailedErrorMessage(String providedAttributionReportTo) {
+  /** Parses the reportingOrigin and looks up its public suffix for every origin not cached yet. */
+  @Override
+  public int cost() {
+    return 10 * DEFAULT_COST;
+  }
+
+  private static String detailedErrorMessage(String providedAttributionReportTo) {
     return String.format(
         "Report's attributionReportTo to is malformed, must be a domain. Report's"
             + " attributionReportTo was: %s",
         providedAttributionReportTo);
   }
+
+  /** Validator of a job, caching the outcome of the check by origin for the job. */
+  static final class OriginCachingValidator implements JobReportValidator {
+
+    private final String jobKey;
+    private final LoadingCache<String, Boolean> originIsDomain =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_ORIGINS)
+            .recordStats()
+            .build(CacheLoader.from(ReportingOriginIsDomainValidator::isDomain));
+
+    private OriginCachingValidator(String jobKey) {
+      this.jobKey = jobKey;
+    }
+
+    @Override
+    public Optional<ErrorMessage> validate(Report report) {
+      return ReportingOriginIsDomainValidator.validate(
+          report, originIsDomain.getUnchecked(report.sharedInfo().reportingOrigin()));
+    }
+
+    /** Logs the hit and miss counts of the job, where each miss is a public suffix lookup. */
+    @Override
+    public void jobFinished() {
+      CacheStats stats = originCacheStats();
+      logger.info(
+          String.format(
+              "Reporting origin cache of job %s: %d hits, %d misses",
+              jobKey, stats.hitCount(), stats.missCount()));
+    }
+
+    CacheStats originCacheStats() {
+      return originIsDomain.stats();
+    }
+  }
 }
@@ -31,7 +31,21 @@ public final class ReportingOriginMatchesRequestValidator implements ReportValid
 
   @Override
   public Optional<ErrorMessage> validate(Report report, Job ctx) {
-    String attributionReportTo = ctx.requestInfo().getJobParameters().get("attribution_report_to");
+    return validate(report, attributionReportTo(ctx));
+  }
+
+  /** The attributionReportTo of the request is looked up once for the whole job. */
+  @Override
+  public JobReportValidator forJob(Job ctx) {
+    String attributionReportTo = attributionReportTo(ctx);
+    return report -> validate(report, attributionReportTo);
+  }
+
+  private static String attributionReportTo(Job ctx) {
+    return ctx.requestInfo().getJobParameters().get("attribution_report_to");
+  }
+
+  private Optional<ErrorMessage> validate(Report report, String attributionReportTo) {
     if (report.sharedInfo().reportingOrigin().equals(attributionReportTo)) {
       return Optional.empty();
     }
@@ -23,13 +23,14 @@ import org.apache.avro.file.DataFileStream;
 import org.apache.avro.generic.GenericRecord;
 
 /** Implementation of AvroRecordReaders that deserializes to {@code Reports.} */
-public final class AvroOutputDomainReader extends AvroRecordReader<AvroOutputDomainRecord> {
+public final class AvroOutputDomainReader
+    extends AvroRecordReader<GenericRecord, AvroOutputDomainRecord> {
 
   AvroOutputDomainReader(DataFileStream<GenericRecord> streamReader) {
     super(streamReader);
   }
 
-  AvroOutputDomainRecord deserializeRecordFromGeneric(GenericRecord record) {
+  AvroOutputDomainRecord deserializeRecord(GenericRecord record) {
     byte[] bucketBytes = ((ByteBuffer) record.get("bucket")).array();
     BigInteger bucket = NumericConversions.uInt128FromBytes(bucketBytes);
     return AvroOutputDomainRecord.create(bucket);
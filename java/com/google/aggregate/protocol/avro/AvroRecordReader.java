@@ -21,7 +21,6 @@ import java.util.Optional;
 import java.util.stream.Stream;
 import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.file.DataFileStream;
-import org.apache.avro.generic.GenericRecord;
 
 /**
  * Reader that provides {@code Record} from an Avro file following the defined schema.
@@ -29,12 +28,15 @@ import org.apache.avro.generic.GenericRecord;
  * <p>The schema is provided by the schema supplier. For convenience, the reader object can be
  * created through the factory, which allows the supplier to be bound ith dependency injection, thus
  * requiring only the input stream to be passed.
+ *
+ * <p>The stream yields {@code Datum}s, typically {@code GenericRecord}s, which are deserialized to
+ * {@code Record}s.
  */
-public abstract class AvroRecordReader<Record> implements AutoCloseable {
+public abstract class AvroRecordReader<Datum, Record> implements AutoCloseable {
 
-  private final DataFileStream<GenericRecord> streamReader;
+  final DataFileStream<Datum> streamReader;
 
-  AvroRecordReader(DataFileStream<GenericRecord> streamReader) {
+  AvroRecordReader(DataFileStream<Datum> streamReader) {
     this.streamReader = streamReader;
   }
 
@@ -59,7 +61,7 @@ public abstract class AvroRecordReader<Record> implements AutoCloseable {
 
   private Optional<Record> readRecordForStreaming() {
     if (streamReader.hasNext()) {
-      return Optional.of(deserializeRecordFromGeneric(streamReader.next()));
+      return Optional.of(deserializeRecord(streamReader.next()));
     }
     return Optional.empty();
   }
@@ -69,6 +71,6 @@ public abstract class AvroRecordReader<Record> implements AutoCloseable {
     streamReader.close();
   }
 
-  /** Deserializes avro {@code GenericRecord} to generic Java type {@code Record}. */
-  abstract Record deserializeRecordFromGeneric(GenericRecord record);
+  /** Deserializes the avro {@code Datum} to generic Java type {@code Record}. */
+  abstract Record deserializeRecord(Datum datum);
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.protocol.avro;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.aggregate.shared.io.ByteBufferByteSource;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.Schema.Type;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.util.Utf8;
+
+/**
+ * {@link DatumReader} that decodes reports straight into {@link AvroReportRecord}s.
+ *
+ * <p>Files written with the reports schema, which is what the browsers and the sharding tool
+ * produce, are decoded field by field without an intermediate {@code GenericRecord}. The key ID of
+ * a report is decoded into a reused buffer and shares the String of the previous report when they
+ * are equal, which is the case for most neighbouring reports. Files written with any other schema
+ * are resolved against the reports schema by a {@link GenericDatumReader}, as before.
+ */
+final class AvroReportRecordDatumReader implements DatumReader<AvroReportRecord> {
+
+  private static final ImmutableList<String> FIELD_NAMES =
+      ImmutableList.of("payload", "key_id", "shared_info");
+  private static final ImmutableList<Type> FIELD_TYPES =
+      ImmutableList.of(Type.BYTES, Type.STRING, Type.STRING);
+
+  private final Schema readerSchema;
+  // Reader used when the file is not written with the reports schema, null otherwise
+  private GenericDatumReader<GenericRecord> resolvingReader;
+
+  private Utf8 keyIdBuffer = new Utf8();
+  private byte[] previousKeyIdBytes = new byte[0];
+  private String previousKeyId = "";
+
+  AvroReportRecordDatumReader(Schema readerSchema) {
+    this.readerSchema = readerSchema;
+  }
+
+  @Override
+  public void setSchema(Schema writerSchema) {
+    resolvingReader =
+        hasReportsLayout(writerSchema)
+            ? null
+            : new GenericDatumReader<>(writerSchema, readerSchema);
+  }
+
+  @Override
+  public AvroReportRecord read(AvroReportRecord reuse, Decoder in) throws IOException {
+    if (resolvingReader != null) {
+      return AvroReportsReader.fromGenericRecord(resolvingReader.read(null, in));
+    }
+    // Payloads are handed on without copying, so each one is read into a new buffer
+    ByteBufferByteSource payload = ByteBufferByteSource.wrap(in.readBytes(null));
+    String keyId = readKeyId(in);
+    String sharedInfo = in.readString();
+    return AvroReportRecord.create(payload, keyId, sharedInfo);
+  }
+
+  private String readKeyId(Decoder in) throws IOException {
+    keyIdBuffer = in.readString(keyIdBuffer);
+    byte[] bytes = keyIdBuffer.getBytes();
+    int length = keyIdBuffer.getByteLength();
+    if (!Arrays.equals(bytes, 0, length, previousKeyIdBytes, 0, previousKeyIdBytes.length)) {
+      previousKeyIdBytes = Arrays.copyOf(bytes, length);
+      previousKeyId = new String(previousKeyIdBytes, UTF_8);
+    }
+    return previousKeyId;
+  }
+
+  private static boolean hasReportsLayout(Schema writerSchema) {
+    if (writerSchema.getType() != Type.RECORD) {
+      return false;
+    }
+    List<Field> fields = writerSchema.getFields();
+    if (fields.size() != FIELD_NAMES.size()) {
+      return false;
+    }
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      if (!field.name().equals(FIELD_NAMES.get(i))
+          || field.schema().getType() != FIELD_TYPES.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.protocol.avro;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+
+/**
+ * Undecoded block of an Avro file of reports, as delimited by the file's sync markers.
+ *
+ * <p>Blocks hold their own copy of the decompressed block bytes, so blocks of the same file can be
+ * decoded concurrently, on any thread, once they have been read.
+ */
+public final class AvroReportsBlock {
+
+  private final byte[] block;
+  private final long recordCount;
+  private final Schema writerSchema;
+  private final Schema readerSchema;
+
+  AvroReportsBlock(byte[] block, long recordCount, Schema writerSchema, Schema readerSchema) {
+    this.block = block;
+    this.recordCount = recordCount;
+    this.writerSchema = writerSchema;
+    this.readerSchema = readerSchema;
+  }
+
+  /** Number of records in the block. */
+  public long recordCount() {
+    return recordCount;
+  }
+
+  /** Number of bytes of the block, as decompressed. */
+  public int sizeInBytes() {
+    return block.length;
+  }
+
+  /**
+   * Decodes the records of the block.
+   *
+   * @throws AvroRuntimeException if the block can't be decoded
+   */
+  public ImmutableList<AvroReportRecord> decode() {
+    AvroReportRecordDatumReader datumReader = new AvroReportRecordDatumReader(readerSchema);
+    datumReader.setSchema(writerSchema);
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(block, /* reuse= */ null);
+    ImmutableList.Builder<AvroReportRecord> records =
+        ImmutableList.builderWithExpectedSize((int) recordCount);
+    try {
+      for (long i = 0; i < recordCount; i++) {
+        records.add(datumReader.read(/* reuse= */ null, decoder));
+      }
+    } catch (IOException e) {
+      throw new AvroRuntimeException(e);
+    }
+    return records.build();
+  }
+}
@@ -16,21 +16,71 @@
 
 package com.google.aggregate.protocol.avro;
 
-import com.google.common.io.ByteSource;
+import com.google.aggregate.shared.io.ByteBufferByteSource;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileStream;
 import org.apache.avro.generic.GenericRecord;
 
-/** Implementation of AvroRecordReaders that deserializes to {@code Reports.} */
-public final class AvroReportsReader extends AvroRecordReader<AvroReportRecord> {
+/**
+ * Reader that provides {@code AvroReportRecord}s from an Avro file of reports.
+ *
+ * <p>Records are decoded by {@link AvroReportRecordDatumReader}, without going through {@code
+ * GenericRecord}s for files written with the reports schema. Records can either be streamed one by
+ * one or as undecoded Avro blocks, which can then be decoded in parallel.
+ */
+public final class AvroReportsReader extends AvroRecordReader<AvroReportRecord, AvroReportRecord> {
+
+  private final Schema readerSchema;
 
-  AvroReportsReader(DataFileStream<GenericRecord> streamReader) {
+  AvroReportsReader(DataFileStream<AvroReportRecord> streamReader, Schema readerSchema) {
     super(streamReader);
+    this.readerSchema = readerSchema;
+  }
+
+  /**
+   * Generate a stream of the blocks of the file, without decoding their records. Must not be mixed
+   * with {@link #streamRecords()} on the same reader.
+   *
+   * <p>WARNING: An {@link AvroRuntimeException} can be thrown when terminal operations happen on
+   * the stream later, as for {@link #streamRecords()}.
+   */
+  public Stream<AvroReportsBlock> streamBlocks() {
+    return Stream.generate(this::readBlockForStreaming)
+        .takeWhile(Optional::isPresent)
+        .map(Optional::get);
+  }
+
+  /** Records are already decoded by the datum reader. */
+  @Override
+  AvroReportRecord deserializeRecord(AvroReportRecord record) {
+    return record;
+  }
+
+  private Optional<AvroReportsBlock> readBlockForStreaming() {
+    if (!streamReader.hasNext()) {
+      return Optional.empty();
+    }
+    try {
+      long recordCount = streamReader.getBlockCount();
+      // The block buffer is reused by the stream for the next block, so it is copied out
+      ByteBuffer blockBuffer = streamReader.nextBlock();
+      byte[] block = new byte[blockBuffer.remaining()];
+      blockBuffer.get(block);
+      return Optional.of(
+          new AvroReportsBlock(block, recordCount, streamReader.getSchema(), readerSchema));
+    } catch (IOException e) {
+      throw new AvroRuntimeException(e);
+    }
   }
 
-  AvroReportRecord deserializeRecordFromGeneric(GenericRecord record) {
+  static AvroReportRecord fromGenericRecord(GenericRecord record) {
     return AvroReportRecord.create(
-        ByteSource.wrap(((ByteBuffer) record.get("payload")).array()),
+        ByteBufferByteSource.wrap((ByteBuffer) record.get("payload")),
         record.get("key_id").toString(),
         record.get("shared_info").toString());
   }
@@ -19,8 +19,10 @@ package com.google.aggregate.protocol.avro;
 import java.io.IOException;
 import java.io.InputStream;
 import javax.inject.Inject;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
 import org.apache.avro.file.DataFileStream;
-import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.file.SeekableInput;
 
 /** Produces {@code AvroReportsReader}s for given input streams */
 public final class AvroReportsReaderFactory {
@@ -33,7 +35,15 @@ public final class AvroReportsReaderFactory {
   }
 
   public AvroReportsReader create(InputStream in) throws IOException {
+    Schema schema = schemaSupplier.get();
     return new AvroReportsReader(
-        new DataFileStream<>(in, new GenericDatumReader<>(schemaSupplier.get())));
+        new DataFileStream<>(in, new AvroReportRecordDatumReader(schema)), schema);
+  }
+
+  /** Creates a reader over a seekable input, such as a memory mapped local file. */
+  public AvroReportsReader create(SeekableInput in) throws IOException {
+    Schema schema = schemaSupplier.get();
+    return new AvroReportsReader(
+        new DataFileReader<>(in, new AvroReportRecordDatumReader(schema)), schema);
   }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.shared.io;
+
+import com.google.common.base.Optional;
+import com.google.common.io.ByteSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * {@link ByteSource} over the remaining bytes of a {@link ByteBuffer}, without copying them.
+ *
+ * <p>Used to carry report payloads from the Avro record through decryption and deserialization.
+ * Consumers that only read the bytes can get them through {@link #bytesOf(ByteSource)}, which
+ * shares the backing array when the buffer spans all of it instead of copying it like {@link
+ * ByteSource#read()} does.
+ */
+public final class ByteBufferByteSource extends ByteSource {
+
+  private final ByteBuffer buffer;
+
+  /**
+   * Wraps the remaining bytes of the buffer. Later changes to the position or limit of the buffer
+   * don't affect the source, changes to its content do.
+   */
+  public static ByteBufferByteSource wrap(ByteBuffer buffer) {
+    return new ByteBufferByteSource(buffer.slice());
+  }
+
+  /** Wraps the bytes of the array. Later changes to the array are visible through the source. */
+  public static ByteBufferByteSource wrap(byte[] bytes) {
+    return new ByteBufferByteSource(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Returns the bytes of the source. For a {@link ByteBufferByteSource} spanning a whole array, the
+   * array itself is returned, so callers must not modify the returned array.
+   */
+  public static byte[] bytesOf(ByteSource byteSource) throws IOException {
+    if (byteSource instanceof ByteBufferByteSource) {
+      return ((ByteBufferByteSource) byteSource).bytes();
+    }
+    return byteSource.read();
+  }
+
+  private ByteBufferByteSource(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /** Returns a read-only view of the bytes of the source. */
+  public ByteBuffer buffer() {
+    return buffer.asReadOnlyBuffer();
+  }
+
+  @Override
+  public InputStream openStream() {
+    return new ByteBufferInputStream(buffer.duplicate());
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return !buffer.hasRemaining();
+  }
+
+  @Override
+  public long size() {
+    return buffer.remaining();
+  }
+
+  @Override
+  public Optional<Long> sizeIfKnown() {
+    return Optional.of((long) buffer.remaining());
+  }
+
+  @Override
+  public byte[] read() {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private byte[] bytes() {
+    if (buffer.hasArray()) {
+      byte[] array = buffer.array();
+      int offset = buffer.arrayOffset() + buffer.position();
+      if (offset == 0 && buffer.remaining() == array.length) {
+        return array;
+      }
+      return Arrays.copyOfRange(array, offset, offset + buffer.remaining());
+    }
+    return read();
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AggregationWorkerArgsTest {
+
+  @Test
+  public void maxStreamingBatchesInFlight_positive_isParsed() {
+    AggregationWorkerArgs args = parse("--max_streaming_batches_in_flight", "1");
+
+    assertThat(args.getMaxStreamingBatchesInFlight()).isEqualTo(1);
+  }
+
+  @Test
+  public void maxStreamingBatchesInFlight_zero_throws() {
+    ParameterException exception =
+        assertThrows(
+            ParameterException.class, () -> parse("--max_streaming_batches_in_flight", "0"));
+
+    assertThat(exception).hasMessageThat().contains("--max_streaming_batches_in_flight");
+  }
+
+  @Test
+  public void shardReadRangeMb_largestSize_isParsed() {
+    AggregationWorkerArgs args = parse("--shard_read_range_mb", "2047");
+
+    assertThat(args.getShardReadRangeMb()).isEqualTo(2047);
+  }
+
+  @Test
+  public void shardReadRangeMb_overflowingBytes_throws() {
+    assertThrows(ParameterException.class, () -> parse("--shard_read_range_mb", "2048"));
+  }
+
+  @Test
+  public void shardReadRangeMb_zero_throws() {
+    assertThrows(ParameterException.class, () -> parse("--shard_read_range_mb", "0"));
+  }
+
+  private static AggregationWorkerArgs parse(String... argv) {
+    AggregationWorkerArgs args = new AggregationWorkerArgs();
+    JCommander.newBuilder().addObject(args).build().parse(argv);
+    return args;
+  }
+}
@@ -231,8 +231,7 @@ public class AggregationWorkerHermeticTest {
     // name 'simple' is coming form the simple aggregation processor. This is just a quick check to
     // ensure the stopwatches are exported correctly.
     assertThat(AwsHermeticTestHelper.stopwatchNamesRecorded(stopwatchFile))
-        .containsExactly(
-            "shard-decrypt-0", "concurrent-request", "shard-aggregation-0", "shard-read-0");
+        .containsExactly("shard-decrypt-0", "concurrent-request", "shard-read-0");
   }
 
   @Test
@@ -23,7 +23,11 @@ import static com.google.common.util.concurrent.Service.State.TERMINATED;
 
 import com.google.aggregate.adtech.worker.Annotations.BenchmarkMode;
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.DecryptionThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.KeyFetchThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.ShardRangeFetchThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.SpillThreadPool;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDelta;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDistribution;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingEpsilon;
@@ -46,6 +50,7 @@ import com.google.scp.operator.cpio.jobclient.testing.FakeJobGenerator;
 import com.google.scp.operator.cpio.jobclient.testing.OneTimePullBackoff;
 import com.google.scp.operator.cpio.metricclient.MetricClient;
 import com.google.scp.operator.cpio.metricclient.local.LocalMetricClient;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
 import javax.inject.Singleton;
 import org.junit.Before;
@@ -223,5 +228,29 @@ public class AggregationWorkerTest {
     ListeningExecutorService provideBlockingThreadPool() {
       return newDirectExecutorService();
     }
+
+    @Provides
+    @KeyFetchThreadPool
+    ListeningExecutorService provideKeyFetchThreadPool() {
+      return newDirectExecutorService();
+    }
+
+    @Provides
+    @ShardRangeFetchThreadPool
+    ListeningExecutorService provideShardRangeFetchThreadPool() {
+      return newDirectExecutorService();
+    }
+
+    @Provides
+    @SpillThreadPool
+    ListeningExecutorService provideSpillThreadPool() {
+      return newDirectExecutorService();
+    }
+
+    @Provides
+    @DecryptionThreadPool
+    ForkJoinPool provideDecryptionThreadPool() {
+      return new ForkJoinPool(1);
+    }
   }
 }
@@ -19,8 +19,10 @@ package com.google.aggregate.adtech.worker;
 import static com.google.aggregate.adtech.worker.model.ErrorCounter.ATTRIBUTION_REPORT_TO_MISMATCH;
 import static com.google.aggregate.adtech.worker.model.ErrorCounter.NUM_REPORTS_WITH_ERRORS;
 import static com.google.aggregate.adtech.worker.model.ErrorCounter.ORIGINAL_REPORT_TIME_MISMATCH;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.scp.operator.protos.shared.backend.JobErrorCategoryProto.JobErrorCategory.DECRYPTION_ERROR;
+import static com.google.scp.operator.protos.shared.backend.JobErrorCategoryProto.JobErrorCategory.GENERAL_ERROR;
 
 import com.google.aggregate.adtech.worker.model.DecryptionValidationResult;
 import com.google.aggregate.adtech.worker.model.ErrorMessage;
@@ -28,6 +30,11 @@ import com.google.aggregate.adtech.worker.testing.FakeReportGenerator;
 import com.google.common.collect.ImmutableList;
 import com.google.scp.operator.protos.shared.backend.ErrorCountProto.ErrorCount;
 import com.google.scp.operator.protos.shared.backend.ErrorSummaryProto.ErrorSummary;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -76,10 +83,6 @@ public class ErrorSummaryAggregatorTest {
         ErrorSummary.newBuilder()
             .addAllErrorCounts(
                 ImmutableList.of(
-                    ErrorCount.newBuilder()
-                        .setCategory(DECRYPTION_ERROR.name())
-                        .setCount(1L)
-                        .build(),
                     ErrorCount.newBuilder()
                         .setCategory(ATTRIBUTION_REPORT_TO_MISMATCH.name())
                         .setCount(2L)
@@ -88,6 +91,10 @@ public class ErrorSummaryAggregatorTest {
                         .setCategory(ORIGINAL_REPORT_TIME_MISMATCH.name())
                         .setCount(1L)
                         .build(),
+                    ErrorCount.newBuilder()
+                        .setCategory(DECRYPTION_ERROR.name())
+                        .setCount(1L)
+                        .build(),
                     ErrorCount.newBuilder()
                         .setCategory(NUM_REPORTS_WITH_ERRORS.name())
                         .setCount(3L)
@@ -99,4 +106,110 @@ public class ErrorSummaryAggregatorTest {
 
     assertThat(errorSummary).isEqualTo(expectedErrorSummary);
   }
+
+  /**
+   * Test that errors counted concurrently as reports are validated are all reflected in the
+   * summary, without retaining the results.
+   */
+  @Test
+  public void add_countsConcurrently() throws Exception {
+    ErrorSummaryAggregator errorSummaryAggregator = new ErrorSummaryAggregator();
+    DecryptionValidationResult decryptionError =
+        DecryptionValidationResult.builder()
+            .addErrorMessage(
+                ErrorMessage.builder()
+                    .setCategory(DECRYPTION_ERROR.name())
+                    .setDetailedErrorMessage("foo")
+                    .build())
+            .build();
+    DecryptionValidationResult validationError =
+        DecryptionValidationResult.builder()
+            .addErrorMessage(
+                ErrorMessage.builder()
+                    .setCategory(ATTRIBUTION_REPORT_TO_MISMATCH.name())
+                    .setDetailedErrorMessage("bar")
+                    .build())
+            .build();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int j = 0; j < 1000; j++) {
+                    errorSummaryAggregator.add(decryptionError);
+                    errorSummaryAggregator.add(validationError);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(errorSummaryAggregator.createErrorSummary().getErrorCountsList())
+        .containsExactly(
+            ErrorCount.newBuilder().setCategory(DECRYPTION_ERROR.name()).setCount(4000L).build(),
+            ErrorCount.newBuilder()
+                .setCategory(ATTRIBUTION_REPORT_TO_MISMATCH.name())
+                .setCount(4000L)
+                .build(),
+            ErrorCount.newBuilder()
+                .setCategory(NUM_REPORTS_WITH_ERRORS.name())
+                .setCount(8000L)
+                .build());
+  }
+
+  /**
+   * Test that categories are summarized in {@code ErrorCounter} order, then other categories by
+   * name, whatever order they were first counted in.
+   */
+  @Test
+  public void createErrorSummary_fixedCategoryOrder() {
+    ErrorSummaryAggregator errorSummaryAggregator = new ErrorSummaryAggregator();
+    for (String category :
+        ImmutableList.of(
+            GENERAL_ERROR.name(),
+            ORIGINAL_REPORT_TIME_MISMATCH.name(),
+            DECRYPTION_ERROR.name(),
+            ATTRIBUTION_REPORT_TO_MISMATCH.name())) {
+      errorSummaryAggregator.add(
+          DecryptionValidationResult.builder()
+              .addErrorMessage(
+                  ErrorMessage.builder()
+                      .setCategory(category)
+                      .setDetailedErrorMessage("foo")
+                      .build())
+              .build());
+    }
+
+    assertThat(
+            errorSummaryAggregator.createErrorSummary().getErrorCountsList().stream()
+                .map(ErrorCount::getCategory)
+                .collect(toImmutableList()))
+        .containsExactly(
+            ATTRIBUTION_REPORT_TO_MISMATCH.name(),
+            ORIGINAL_REPORT_TIME_MISMATCH.name(),
+            DECRYPTION_ERROR.name(),
+            GENERAL_ERROR.name(),
+            NUM_REPORTS_WITH_ERRORS.name())
+        .inOrder();
+  }
+
+  @Test
+  public void createErrorSummary_noErrors_isEmpty() {
+    ErrorSummaryAggregator errorSummaryAggregator = new ErrorSummaryAggregator();
+
+    errorSummaryAggregator.add(
+        DecryptionValidationResult.builder()
+            .setReport(FakeReportGenerator.generateWithParam(0, /* reportVersion */ ""))
+            .build());
+
+    assertThat(errorSummaryAggregator.createErrorSummary())
+        .isEqualTo(ErrorSummary.getDefaultInstance());
+  }
 }
@@ -16,16 +16,19 @@
 
 package com.google.aggregate.adtech.worker;
 
+import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth8.assertThat;
 import static com.google.scp.operator.protos.shared.backend.JobErrorCategoryProto.JobErrorCategory.DECRYPTION_ERROR;
 import static com.google.scp.operator.protos.shared.backend.JobErrorCategoryProto.JobErrorCategory.GENERAL_ERROR;
 
 import com.google.acai.Acai;
 import com.google.acai.TestScoped;
+import com.google.aggregate.adtech.worker.Annotations.ShortCircuitValidation;
 import com.google.aggregate.adtech.worker.decryption.RecordDecrypter;
 import com.google.aggregate.adtech.worker.model.DecryptionValidationResult;
 import com.google.aggregate.adtech.worker.model.EncryptedReport;
 import com.google.aggregate.adtech.worker.model.ErrorMessage;
+import com.google.aggregate.adtech.worker.model.Report;
 import com.google.aggregate.adtech.worker.testing.FakeRecordDecrypter;
 import com.google.aggregate.adtech.worker.testing.FakeReportGenerator;
 import com.google.aggregate.adtech.worker.testing.FakeValidator;
@@ -37,6 +40,9 @@ import com.google.inject.Inject;
 import com.google.inject.multibindings.Multibinder;
 import com.google.scp.operator.cpio.jobclient.model.Job;
 import com.google.scp.operator.cpio.jobclient.testing.FakeJobGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import org.junit.Before;
 import org.junit.Rule;
@@ -72,48 +78,44 @@ public class ReportDecrypterAndValidatorTest {
   }
 
   @Test
-  public void testBasic() {
-    DecryptionValidationResult decryptionValidationResult =
-        reportDecrypterAndValidator.decryptAndValidate(encryptedReport, ctx);
+  public void testConsumedWhenValid() {
+    List<Report> consumedReports = new ArrayList<>();
 
-    assertThat(decryptionValidationResult.report()).isPresent();
-    assertThat(decryptionValidationResult.report())
-        .hasValue(
+    Optional<DecryptionValidationResult> invalidReport =
+        reportDecrypterAndValidator.decryptAndValidate(encryptedReport, ctx, consumedReports::add);
+
+    assertThat(invalidReport).isEmpty();
+    assertThat(consumedReports).hasSize(1);
+    assertThat(consumedReports.get(0))
+        .isEqualTo(
             FakeReportGenerator.generateWithFixedReportId(
-                1,
-                decryptionValidationResult
-                    .report()
-                    .get()
-                    .sharedInfo()
-                    .reportId()
-                    .get(), /* reportVersion */
-                ""));
+                1, consumedReports.get(0).sharedInfo().reportId().get(), /* reportVersion */ ""));
   }
 
   @Test
-  public void testDecryptionError() {
+  public void testNotConsumedOnDecryptionError() {
     fakeRecordDecrypter.setShouldThrow(true);
+    List<Report> consumedReports = new ArrayList<>();
 
-    DecryptionValidationResult decryptionValidationResult =
-        reportDecrypterAndValidator.decryptAndValidate(encryptedReport, ctx);
+    Optional<DecryptionValidationResult> invalidReport =
+        reportDecrypterAndValidator.decryptAndValidate(encryptedReport, ctx, consumedReports::add);
 
-    // Check that the report isn't present and that there is an ErrorMessage corresponding to a
-    // decryption error
-    assertThat(decryptionValidationResult.report()).isEmpty();
-    assertThat(decryptionValidationResult.errorMessages().stream().map(ErrorMessage::category))
+    assertThat(consumedReports).isEmpty();
+    assertThat(invalidReport.get().report()).isEmpty();
+    assertThat(invalidReport.get().errorMessages().stream().map(ErrorMessage::category))
         .containsExactly(DECRYPTION_ERROR.name());
   }
 
   @Test
-  public void testValidationError() {
+  public void testNotConsumedOnValidationError() {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(true).iterator());
+    List<Report> consumedReports = new ArrayList<>();
 
-    DecryptionValidationResult decryptionValidationResult =
-        reportDecrypterAndValidator.decryptAndValidate(encryptedReport, ctx);
+    Optional<DecryptionValidationResult> invalidReport =
+        reportDecrypterAndValidator.decryptAndValidate(encryptedReport, ctx, consumedReports::add);
 
-    // Check that the report isn't present and that there is an ErrorMessage from the FakeValidator
-    assertThat(decryptionValidationResult.report()).isEmpty();
-    assertThat(decryptionValidationResult.errorMessages().stream().map(ErrorMessage::category))
+    assertThat(consumedReports).isEmpty();
+    assertThat(invalidReport.get().errorMessages().stream().map(ErrorMessage::category))
         .containsExactly(GENERAL_ERROR.name());
   }
 
@@ -130,6 +132,8 @@ public class ReportDecrypterAndValidatorTest {
       Multibinder<ReportValidator> reportValidatorMultibinder =
           Multibinder.newSetBinder(binder(), ReportValidator.class);
       reportValidatorMultibinder.addBinding().to(FakeValidator.class);
+
+      bind(Boolean.class).annotatedWith(ShortCircuitValidation.class).toInstance(false);
     }
   }
 }
@@ -33,6 +33,7 @@ import static com.google.aggregate.adtech.worker.util.NumericConversions.createB
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth8.assertThat;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
 import static com.google.scp.operator.protos.shared.backend.JobErrorCategoryProto.JobErrorCategory.GENERAL_ERROR;
 import static com.google.scp.operator.protos.shared.backend.ReturnCodeProto.ReturnCode.SUCCESS;
@@ -40,19 +41,34 @@ import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.junit.Assert.assertThrows;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.acai.Acai;
 import com.google.acai.TestScoped;
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.DecryptionBatchSize;
+import com.google.aggregate.adtech.worker.Annotations.DecryptionThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
 import com.google.aggregate.adtech.worker.Annotations.FailJobOnPbsException;
+import com.google.aggregate.adtech.worker.Annotations.KeyFetchThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.MaxShardReadsInFlight;
+import com.google.aggregate.adtech.worker.Annotations.MaxStreamingBatchesInFlight;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.ParallelShardReadStreams;
+import com.google.aggregate.adtech.worker.Annotations.PrefetchDecryptionKeys;
+import com.google.aggregate.adtech.worker.Annotations.ShardRangeFetchThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.ShardReadAheadBytes;
+import com.google.aggregate.adtech.worker.Annotations.ShardReadRangeBytes;
+import com.google.aggregate.adtech.worker.Annotations.ShortCircuitValidation;
+import com.google.aggregate.adtech.worker.Annotations.StreamShardsByAvroBlock;
+import com.google.aggregate.adtech.worker.Annotations.StreamingBatchSize;
 import com.google.aggregate.adtech.worker.ResultLogger;
 import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainProcessor;
 import com.google.aggregate.adtech.worker.aggregation.domain.TextOutputDomainProcessor;
 import com.google.aggregate.adtech.worker.aggregation.engine.AggregationEngine;
+import com.google.aggregate.adtech.worker.aggregation.engine.SpillingAggregationTable;
 import com.google.aggregate.adtech.worker.aggregation.privacy.FakePrivacyBudgetingServiceBridge;
 import com.google.aggregate.adtech.worker.aggregation.privacy.PrivacyBudgetingServiceBridge;
 import com.google.aggregate.adtech.worker.aggregation.privacy.PrivacyBudgetingServiceBridge.PrivacyBudgetUnit;
@@ -75,6 +91,8 @@ import com.google.aggregate.adtech.worker.model.Report;
 import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
 import com.google.aggregate.adtech.worker.model.serdes.SharedInfoSerdes;
 import com.google.aggregate.adtech.worker.model.serdes.cbor.CborPayloadSerdes;
+import com.google.aggregate.adtech.worker.reader.ranged.FileSystemRangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.ranged.RangedBlobReader;
 import com.google.aggregate.adtech.worker.testing.FakeDecryptionKeyService;
 import com.google.aggregate.adtech.worker.testing.FakeReportGenerator;
 import com.google.aggregate.adtech.worker.testing.FakeValidator;
@@ -99,8 +117,10 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.ByteSource;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.multibindings.Multibinder;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
@@ -115,6 +135,8 @@ import com.google.scp.operator.protos.shared.backend.ErrorSummaryProto.ErrorSumm
 import com.google.scp.operator.protos.shared.backend.RequestInfoProto.RequestInfo;
 import com.google.scp.operator.protos.shared.backend.ResultInfoProto.ResultInfo;
 import com.google.scp.shared.proto.ProtoUtil;
+import com.google.testing.junit.testparameterinjector.TestParameter;
+import com.google.testing.junit.testparameterinjector.TestParameterInjector;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.FileSystem;
@@ -128,15 +150,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
-import org.junit.runners.JUnit4;
 
-@RunWith(JUnit4.class)
+@RunWith(TestParameterInjector.class)
 public class ConcurrentAggregationProcessorTest {
 
   private static final Instant FIXED_TIME = Instant.parse("2021-01-01T00:00:00Z");
@@ -164,8 +188,36 @@ public class ConcurrentAggregationProcessorTest {
   // Settable value so that failJobOnPbsExceptionProvider can be changed for different tests
   private static boolean failJobOnPbsException = false;
 
-  // Under test
-  @Inject private ConcurrentAggregationProcessor processor;
+  // Settable value so that the streaming pipeline can be enabled for different tests
+  private static int streamingBatchSize = 0;
+
+  // Settable value so that decryption keys can be prefetched for different tests
+  private static boolean prefetchDecryptionKeys = false;
+
+  // Settable value so that shards can be streamed by Avro block for different tests
+  private static boolean streamShardsByAvroBlock = false;
+
+  // Settable value so that shards can be read as parallel byte ranges for different tests
+  private static int parallelShardReadStreams = 1;
+
+  // Settable values so that shard reads can be limited for different tests
+  private static int maxShardReadsInFlight = 0;
+  private static long shardReadAheadBytes = 0;
+
+  // Settable value so that shards can be split for parallel decryption for different tests
+  private static int decryptionBatchSize = 0;
+
+  // Settable value so that shards can be read on a bounded blocking thread pool for different
+  // tests, 0 runs blocking work on the calling thread
+  private static int blockingThreadPoolSize = 0;
+
+  // Settable values so that the aggregation can be spilled to disk for different tests, 0 keeps it
+  // in memory
+  private static long aggregationMemoryBudgetBytes = 0;
+  private static Path spillDirectory;
+
+  // Under test, created by each test once the settable values above have been set
+  @Inject private Provider<ConcurrentAggregationProcessor> processor;
 
   private static void assertJobResultsEqualsIgnoreReturnMessage(
       JobResult actual, JobResult expected) {
@@ -209,6 +261,16 @@ public class ConcurrentAggregationProcessorTest {
 
   @Before
   public void setUp() throws Exception {
+    streamingBatchSize = 0;
+    prefetchDecryptionKeys = false;
+    streamShardsByAvroBlock = false;
+    parallelShardReadStreams = 1;
+    maxShardReadsInFlight = 0;
+    shardReadAheadBytes = 0;
+    decryptionBatchSize = 0;
+    blockingThreadPoolSize = 0;
+    aggregationMemoryBudgetBytes = 0;
+    spillDirectory = testWorkingDir.newFolder("spill").toPath();
     privacyBudgetingServiceBridge.setPrivacyBudgetingServiceBridgeImpl(
         new UnlimitedPrivacyBudgetingServiceBridge());
 
@@ -257,11 +319,12 @@ public class ConcurrentAggregationProcessorTest {
   }
 
   @Test
-  public void aggregate() throws Exception {
+  public void aggregate(@TestParameter PipelineSettings pipelineSettings) throws Exception {
+    pipelineSettings.apply();
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(expectedJobResult);
     assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
@@ -275,7 +338,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(-3));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(expectedJobResult);
     assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
@@ -307,7 +370,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(-3));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(makeExpectedJobResult());
     assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
@@ -343,7 +406,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(-3));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(makeExpectedJobResult());
     assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
@@ -381,7 +444,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(-3));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(makeExpectedJobResult());
     assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
@@ -418,7 +481,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(-3));
 
     AggregationJobProcessException ex =
-        assertThrows(AggregationJobProcessException.class, () -> processor.process(ctx));
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
     assertThat(ex.getCode()).isEqualTo(INVALID_JOB);
   }
 
@@ -427,7 +490,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(-3));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
     ResultLogException exception =
         assertThrows(
             ResultLogException.class, () -> resultLogger.getMaterializedDebugAggregationResults());
@@ -458,7 +521,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(-3));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(expectedJobResult);
     assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
@@ -508,7 +571,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(-3));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(makeExpectedJobResult());
     assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
@@ -561,7 +624,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(-3));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(makeExpectedJobResult());
     assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
@@ -595,7 +658,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(makeExpectedJobResult());
     // Key 3 added as an extra key from the output domain.
@@ -635,7 +698,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(makeExpectedJobResult());
     // Key 3 added as an extra key from the output domain.
@@ -673,7 +736,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
 
     AggregationJobProcessException ex =
-        assertThrows(AggregationJobProcessException.class, () -> processor.process(ctx));
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
     assertThat(ex.getCode()).isEqualTo(INPUT_DATA_READ_FAILED);
     assertThat(ex.getMessage()).contains("Exception while reading domain input data.");
   }
@@ -683,7 +746,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(10));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(expectedJobResult);
     assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
@@ -700,7 +763,7 @@ public class ConcurrentAggregationProcessorTest {
     // Since 1st report has validation errors, only facts in 2nd report are noised.
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     JobResult expectedJobResult =
         this.expectedJobResult.toBuilder()
@@ -739,7 +802,7 @@ public class ConcurrentAggregationProcessorTest {
     // Throw validation errors for all reports
     fakeValidator.setNextShouldReturnError(ImmutableList.of(true, true, true, true).iterator());
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     JobResult expectedJobResult =
         this.expectedJobResult.toBuilder()
@@ -774,18 +837,133 @@ public class ConcurrentAggregationProcessorTest {
     Files.writeString(badDataShard, "Bad data", US_ASCII, WRITE, CREATE);
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     AggregationJobProcessException ex =
-        assertThrows(AggregationJobProcessException.class, () -> processor.process(ctx));
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
     assertThat(ex.getCode()).isEqualTo(INPUT_DATA_READ_FAILED);
     assertThat(ex.getMessage()).contains("Exception while reading reports input data.");
   }
 
+  @Test
+  public void process_streaming_withValidationErrors() throws Exception {
+    streamingBatchSize = 1;
+    fakeValidator.setNextShouldReturnError(ImmutableList.of(true, false, false, false).iterator());
+    fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
+
+    JobResult jobResultProcessor = processor.get().process(ctx);
+
+    assertThat(jobResultProcessor.resultInfo().getErrorSummary().getErrorCountsList())
+        .containsExactly(
+            ErrorCount.newBuilder().setCategory(GENERAL_ERROR.name()).setCount(1L).build(),
+            ErrorCount.newBuilder()
+                .setCategory(NUM_REPORTS_WITH_ERRORS.name())
+                .setCount(1L)
+                .build());
+    assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
+        .containsExactly(
+            AggregatedFact.create(
+                /* bucket= */ createBucketFromInt(1), /* metric= */ 1, /* unnoisedMetric= */ 1L),
+            AggregatedFact.create(
+                /* bucket= */ createBucketFromInt(2), /* metric= */ 8, /* unnoisedMetric= */ 8L));
+  }
+
+  @Test
+  public void process_streaming_inputReadFailedCodeWhenBadShardThrows() throws Exception {
+    streamingBatchSize = 1;
+    Path badDataShard = reportsDirectory.resolve("reports_bad.avro");
+    Files.writeString(badDataShard, "Bad data", US_ASCII, WRITE, CREATE);
+    fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
+    AggregationJobProcessException ex =
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
+    assertThat(ex.getCode()).isEqualTo(INPUT_DATA_READ_FAILED);
+  }
+
+  @Test
+  public void aggregate_streaming_withKeyPrefetch_moreShardsThanBlockingThreads() throws Exception {
+    // The shard read waiting for batch permits holds the only blocking thread, the permits are
+    // held by the batches of the other shard until their keys have been fetched.
+    blockingThreadPoolSize = 1;
+    streamingBatchSize = 1;
+    prefetchDecryptionKeys = true;
+    fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
+    fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
+    ExecutorService jobThread = Executors.newSingleThreadExecutor();
+
+    JobResult jobResultProcessor;
+    try {
+      jobResultProcessor = jobThread.submit(() -> processor.get().process(ctx)).get(1, MINUTES);
+    } finally {
+      jobThread.shutdownNow();
+    }
+
+    assertThat(jobResultProcessor).isEqualTo(expectedJobResult);
+    assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
+        .containsExactly(
+            AggregatedFact.create(/* bucket= */ createBucketFromInt(1), /* metric= */ 2, 2L),
+            AggregatedFact.create(/* bucket= */ createBucketFromInt(2), /* metric= */ 8, 8L));
+  }
+
+  @Test
+  public void aggregate_streaming_withSpilling_moreShardsThanBlockingThreads() throws Exception {
+    // Batches are aggregated on the only blocking thread, which waits for the previous run to be
+    // written whenever it spills.
+    blockingThreadPoolSize = 1;
+    streamingBatchSize = 1;
+    // Budget of a single bucket, so that the aggregation spills as soon as it has two
+    aggregationMemoryBudgetBytes = 1;
+    fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
+    fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
+    ExecutorService jobThread = Executors.newSingleThreadExecutor();
+
+    JobResult jobResultProcessor;
+    try {
+      jobResultProcessor = jobThread.submit(() -> processor.get().process(ctx)).get(1, MINUTES);
+    } finally {
+      jobThread.shutdownNow();
+    }
+
+    assertThat(jobResultProcessor).isEqualTo(expectedJobResult);
+    assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
+        .containsExactly(
+            AggregatedFact.create(/* bucket= */ createBucketFromInt(1), /* metric= */ 2, 2L),
+            AggregatedFact.create(/* bucket= */ createBucketFromInt(2), /* metric= */ 8, 8L));
+    // Runs are deleted once the engine is closed
+    assertThat(spillDirectory.toFile().list()).isEmpty();
+  }
+
+  @Test
+  public void process_withParallelDecryption_decryptionKeyFetchFailedWithPermissionDeniedReason()
+      throws Exception {
+    decryptionBatchSize = 1;
+    fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
+    fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
+    fakeDecryptionKeyService.setShouldThrowPermissionException(true);
+
+    AggregationJobProcessException ex =
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
+
+    assertThat(ex.getCode()).isEqualTo(PERMISSION_ERROR);
+  }
+
+  @Test
+  public void process_withKeyPrefetch_decryptionKeyFetchFailedWithPermissionDeniedReason()
+      throws Exception {
+    prefetchDecryptionKeys = true;
+    fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
+    fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
+    fakeDecryptionKeyService.setShouldThrowPermissionException(true);
+
+    AggregationJobProcessException ex =
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
+
+    assertThat(ex.getCode()).isEqualTo(PERMISSION_ERROR);
+  }
+
   @Test
   public void process_outputWriteFailedCodeWhenResultLoggerThrows() throws Exception {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
     resultLogger.setShouldThrow(true);
     AggregationJobProcessException ex =
-        assertThrows(AggregationJobProcessException.class, () -> processor.process(ctx));
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
     assertThat(ex.getCode()).isEqualTo(RESULT_LOGGING_ERROR);
   }
 
@@ -795,7 +973,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
     fakeDecryptionKeyService.setShouldThrowPermissionException(true);
     AggregationJobProcessException ex =
-        assertThrows(AggregationJobProcessException.class, () -> processor.process(ctx));
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
     assertThat(ex.getCode()).isEqualTo(PERMISSION_ERROR);
   }
 
@@ -805,7 +983,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
     fakeDecryptionKeyService.setShouldThrow(true);
 
-    JobResult actualJobResult = processor.process(ctx);
+    JobResult actualJobResult = processor.get().process(ctx);
 
     JobResult expectedJobResult =
         this.expectedJobResult.toBuilder()
@@ -859,7 +1037,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
         .containsExactly(
@@ -876,7 +1054,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
     AggregationJobProcessException ex =
-        assertThrows(AggregationJobProcessException.class, () -> processor.process(ctx));
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
     assertThat(ex.getCode()).isEqualTo(PRIVACY_BUDGET_EXHAUSTED);
   }
 
@@ -893,7 +1071,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
 
-    JobResult jobResultProcessor = processor.process(ctx);
+    JobResult jobResultProcessor = processor.get().process(ctx);
 
     assertThat(jobResultProcessor).isEqualTo(expectedJobResult);
     assertThat(resultLogger.getMaterializedAggregationResults().getMaterializedAggregations())
@@ -922,7 +1100,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
     AggregationJobProcessException ex =
-        assertThrows(AggregationJobProcessException.class, () -> processor.process(ctx));
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
     assertThat(ex.getCode()).isEqualTo(PRIVACY_BUDGET_ERROR);
   }
 
@@ -938,7 +1116,7 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setNextShouldReturnError(ImmutableList.of(false, false, false, false).iterator());
     fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
     AggregationJobProcessException ex =
-        assertThrows(AggregationJobProcessException.class, () -> processor.process(ctx));
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
     assertThat(ex.getCode()).isEqualTo(PRIVACY_BUDGET_EXHAUSTED);
   }
 
@@ -961,7 +1139,7 @@ public class ConcurrentAggregationProcessorTest {
     // TODO(b/258078789): Passing nonexistent reports folder should throw
     // TODO(b/258082317): Add assertion on return message.
     AggregationJobProcessException ex =
-        assertThrows(AggregationJobProcessException.class, () -> processor.process(ctx));
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
     assertThat(ex.getCode()).isEqualTo(INPUT_DATA_READ_FAILED);
   }
 
@@ -980,7 +1158,7 @@ public class ConcurrentAggregationProcessorTest {
                     .build())
             .build();
     AggregationJobProcessException ex =
-        assertThrows(AggregationJobProcessException.class, () -> processor.process(ctx));
+        assertThrows(AggregationJobProcessException.class, () -> processor.get().process(ctx));
     assertThat(ex.getCode()).isEqualTo(INPUT_DATA_READ_FAILED);
     assertThat(ex.getMessage()).contains("No report shards found for location");
   }
@@ -1018,6 +1196,84 @@ public class ConcurrentAggregationProcessorTest {
    * budgeting bridge: this enables the testing to dynamically swap out implementations instead of
    * just statically assembling the implementation with Acai.
    */
+  /** Settings of the shard pipeline, all of which aggregate the same reports the same way. */
+  private enum PipelineSettings {
+    DEFAULT {
+      @Override
+      void apply() {}
+    },
+    STREAMING {
+      @Override
+      void apply() {
+        streamingBatchSize = 1;
+      }
+    },
+    KEY_PREFETCH {
+      @Override
+      void apply() {
+        prefetchDecryptionKeys = true;
+      }
+    },
+    STREAMING_WITH_KEY_PREFETCH {
+      @Override
+      void apply() {
+        streamingBatchSize = 1;
+        prefetchDecryptionKeys = true;
+      }
+    },
+    STREAM_SHARDS_BY_AVRO_BLOCK {
+      @Override
+      void apply() {
+        streamShardsByAvroBlock = true;
+      }
+    },
+    PARALLEL_SHARD_READS {
+      @Override
+      void apply() {
+        parallelShardReadStreams = 3;
+      }
+    },
+    SHARD_READ_LIMITS {
+      @Override
+      void apply() {
+        maxShardReadsInFlight = 1;
+        // Smaller than a shard, so that each shard is only read once the previous one is aggregated
+        shardReadAheadBytes = 1;
+      }
+    },
+    STREAMING_WITH_SHARD_READ_LIMITS {
+      @Override
+      void apply() {
+        streamingBatchSize = 1;
+        maxShardReadsInFlight = 1;
+        shardReadAheadBytes = 1;
+      }
+    },
+    PARALLEL_DECRYPTION {
+      @Override
+      void apply() {
+        decryptionBatchSize = 1;
+      }
+    },
+    STREAMING_WITH_PARALLEL_DECRYPTION {
+      @Override
+      void apply() {
+        streamingBatchSize = 2;
+        decryptionBatchSize = 1;
+      }
+    },
+    STREAM_SHARDS_BY_AVRO_BLOCK_WITH_PARALLEL_DECRYPTION {
+      @Override
+      void apply() {
+        streamShardsByAvroBlock = true;
+        decryptionBatchSize = 1;
+      }
+    };
+
+    /** Sets the settable values of the test, before the processor is created. */
+    abstract void apply();
+  }
+
   private static class ProxyPrivacyBudgetingServiceBridge implements PrivacyBudgetingServiceBridge {
 
     private PrivacyBudgetingServiceBridge wrappedImpl;
@@ -1052,6 +1308,9 @@ public class ConcurrentAggregationProcessorTest {
       // Report reading
       install(new FSBlobStorageClientModule());
       bind(FileSystem.class).toInstance(FileSystems.getDefault());
+      bind(RangedBlobReader.class).to(FileSystemRangedBlobReader.class);
+      // Small ranges so that the test shards are read as several ranges.
+      bind(Integer.class).annotatedWith(ShardReadRangeBytes.class).toInstance(64);
 
       // decryption
       bind(FakeDecryptionKeyService.class).in(TestScoped.class);
@@ -1090,6 +1349,7 @@ public class ConcurrentAggregationProcessorTest {
       bind(double.class).annotatedWith(NoisingDelta.class).toInstance(5.00);
       // TODO(b/227210339) Add a test with false value for domainOptional
       bind(Boolean.class).annotatedWith(DomainOptional.class).toInstance(true);
+      bind(Boolean.class).annotatedWith(ShortCircuitValidation.class).toInstance(false);
       bind(OutputDomainProcessor.class).to(TextOutputDomainProcessor.class);
     }
 
@@ -1129,11 +1389,50 @@ public class ConcurrentAggregationProcessorTest {
     @Provides
     @BlockingThreadPool
     ListeningExecutorService provideBlockingThreadPool() {
+      if (blockingThreadPoolSize > 0) {
+        // Daemon threads, so that a job stuck on the pool does not keep the test from exiting
+        return listeningDecorator(
+            Executors.newFixedThreadPool(
+                blockingThreadPoolSize, new ThreadFactoryBuilder().setDaemon(true).build()));
+      }
+      return newDirectExecutorService();
+    }
+
+    @Provides
+    @KeyFetchThreadPool
+    ListeningExecutorService provideKeyFetchThreadPool() {
+      return newDirectExecutorService();
+    }
+
+    @Provides
+    @ShardRangeFetchThreadPool
+    ListeningExecutorService provideShardRangeFetchThreadPool() {
       return newDirectExecutorService();
     }
 
+    @Provides
+    @DecryptionThreadPool
+    ForkJoinPool provideDecryptionThreadPool() {
+      return new ForkJoinPool(2);
+    }
+
+    @Provides
+    @DecryptionBatchSize
+    Integer provideDecryptionBatchSize() {
+      return decryptionBatchSize;
+    }
+
     @Provides
     AggregationEngine provideAggregationEngine() {
+      if (aggregationMemoryBudgetBytes > 0) {
+        // Runs are written on their own daemon thread, as the worker does
+        return AggregationEngine.create(
+            new SpillingAggregationTable(
+                spillDirectory,
+                aggregationMemoryBudgetBytes,
+                Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setDaemon(true).build())));
+      }
       return AggregationEngine.create();
     }
 
@@ -1142,5 +1441,47 @@ public class ConcurrentAggregationProcessorTest {
     Boolean prodvideFailJobOnPbsException() {
       return failJobOnPbsException;
     }
+
+    @Provides
+    @StreamingBatchSize
+    Integer provideStreamingBatchSize() {
+      return streamingBatchSize;
+    }
+
+    @Provides
+    @MaxStreamingBatchesInFlight
+    Integer provideMaxStreamingBatchesInFlight() {
+      return 2;
+    }
+
+    @Provides
+    @PrefetchDecryptionKeys
+    Boolean providePrefetchDecryptionKeys() {
+      return prefetchDecryptionKeys;
+    }
+
+    @Provides
+    @StreamShardsByAvroBlock
+    Boolean provideStreamShardsByAvroBlock() {
+      return streamShardsByAvroBlock;
+    }
+
+    @Provides
+    @ParallelShardReadStreams
+    Integer provideParallelShardReadStreams() {
+      return parallelShardReadStreams;
+    }
+
+    @Provides
+    @MaxShardReadsInFlight
+    Integer provideMaxShardReadsInFlight() {
+      return maxShardReadsInFlight;
+    }
+
+    @Provides
+    @ShardReadAheadBytes
+    Long provideShardReadAheadBytes() {
+      return shardReadAheadBytes;
+    }
   }
 }
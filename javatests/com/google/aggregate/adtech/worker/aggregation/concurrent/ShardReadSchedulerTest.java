@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.concurrent;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ShardReadSchedulerTest {
+
+  private final ListeningExecutorService readExecutor =
+      MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+
+  @After
+  public void tearDown() {
+    readExecutor.shutdownNow();
+  }
+
+  @Test
+  public void schedule_boundsReadsInFlight() throws Exception {
+    ShardReadScheduler scheduler =
+        new ShardReadScheduler(readExecutor, /* maxReadsInFlight= */ 2, /* maxRetainedBytes= */ 0);
+    AtomicInteger readsInFlight = new AtomicInteger();
+    AtomicInteger maxReadsInFlight = new AtomicInteger();
+    List<ListenableFuture<Integer>> results = new ArrayList<>();
+
+    for (int i = 0; i < 20; i++) {
+      int shard = i;
+      results.add(
+          scheduler.schedule(
+              () -> {
+                maxReadsInFlight.accumulateAndGet(readsInFlight.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                readsInFlight.decrementAndGet();
+                return shard;
+              },
+              read -> 0L,
+              read -> immediateFuture(read)));
+    }
+
+    for (int i = 0; i < 20; i++) {
+      assertThat(results.get(i).get()).isEqualTo(i);
+    }
+    assertThat(maxReadsInFlight.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void schedule_holdsReadsUntilRetainedBytesConsumed() throws Exception {
+    ShardReadScheduler scheduler =
+        new ShardReadScheduler(
+            readExecutor, /* maxReadsInFlight= */ 0, /* maxRetainedBytes= */ 100);
+    SettableFuture<Void> firstConsumed = SettableFuture.create();
+    AtomicInteger secondReads = new AtomicInteger();
+
+    ListenableFuture<Void> first =
+        scheduler.schedule(() -> "first", read -> 100L, read -> firstConsumed);
+    ListenableFuture<String> second =
+        scheduler.schedule(
+            () -> {
+              secondReads.incrementAndGet();
+              return "second";
+            },
+            read -> 100L,
+            read -> immediateFuture(read));
+    Thread.sleep(50);
+
+    assertThat(secondReads.get()).isEqualTo(0);
+    firstConsumed.set(null);
+    assertThat(second.get()).isEqualTo("second");
+    assertThat(first.isDone()).isTrue();
+  }
+
+  @Test
+  public void retain_holdsReadsUntilReleased() throws Exception {
+    ShardReadScheduler scheduler =
+        new ShardReadScheduler(
+            readExecutor, /* maxReadsInFlight= */ 0, /* maxRetainedBytes= */ 100);
+    AtomicInteger secondReads = new AtomicInteger();
+
+    // Streamed shards retain the bytes of their batches while being read, not once read
+    ListenableFuture<String> first =
+        scheduler.schedule(
+            () -> {
+              scheduler.retain(100);
+              return "first";
+            },
+            read -> 0L,
+            read -> immediateFuture(read));
+    assertThat(first.get()).isEqualTo("first");
+    ListenableFuture<String> second =
+        scheduler.schedule(
+            () -> {
+              secondReads.incrementAndGet();
+              return "second";
+            },
+            read -> 0L,
+            read -> immediateFuture(read));
+    Thread.sleep(50);
+
+    assertThat(secondReads.get()).isEqualTo(0);
+    scheduler.release(100);
+    assertThat(second.get()).isEqualTo("second");
+  }
+
+  @Test
+  public void schedule_failedRead_releasesSlotAndFailsResult() throws Exception {
+    ShardReadScheduler scheduler =
+        new ShardReadScheduler(readExecutor, /* maxReadsInFlight= */ 1, /* maxRetainedBytes= */ 1);
+
+    ListenableFuture<String> failed =
+        scheduler.schedule(
+            () -> {
+              throw new IllegalStateException("read failed");
+            },
+            read -> 100L,
+            read -> immediateFuture("unreachable"));
+    ListenableFuture<String> next =
+        scheduler.schedule(() -> "next", read -> 0L, read -> immediateFuture(read));
+
+    ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+    assertThat(e).hasCauseThat().isInstanceOf(IllegalStateException.class);
+    assertThat(next.get()).isEqualTo("next");
+  }
+}
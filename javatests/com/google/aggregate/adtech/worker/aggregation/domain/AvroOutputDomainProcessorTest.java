@@ -30,7 +30,6 @@ import com.google.aggregate.protocol.avro.AvroOutputDomainWriter;
 import com.google.aggregate.protocol.avro.AvroOutputDomainWriterFactory;
 import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
@@ -86,7 +85,7 @@ public class AvroOutputDomainProcessorTest {
                 /* bucket= */ singleFilePath.getParent().toAbsolutePath().toString(),
                 /* key= */ singleFilePath.getFileName().toString()));
 
-    ImmutableSet<BigInteger> keys = readOutputDomain();
+    ImmutableList<BigInteger> keys = readOutputDomain();
 
     assertThat(keys)
         .containsExactly(BigInteger.valueOf(11), BigInteger.valueOf(22), BigInteger.valueOf(33));
@@ -98,7 +97,7 @@ public class AvroOutputDomainProcessorTest {
     writeOutputDomain(
         outputDomainDirectory.resolve("domain_2.avro"), Stream.of(11, 22, 11, 11, 22, 33));
 
-    ImmutableSet<BigInteger> keys = readOutputDomain();
+    ImmutableList<BigInteger> keys = readOutputDomain();
 
     assertThat(keys)
         .containsExactly(BigInteger.valueOf(11), BigInteger.valueOf(22), BigInteger.valueOf(33));
@@ -113,9 +112,13 @@ public class AvroOutputDomainProcessorTest {
     assertThat(error).hasCauseThat().isInstanceOf(IllegalArgumentException.class);
   }
 
-  private ImmutableSet<BigInteger> readOutputDomain()
+  private ImmutableList<BigInteger> readOutputDomain()
       throws ExecutionException, InterruptedException {
-    return outputDomainProcessor.readAndDedupDomain(outputDomainLocation).get();
+    return outputDomainProcessor
+        .readAndDedupDomain(outputDomainLocation)
+        .get()
+        .stream()
+        .collect(toImmutableList());
   }
 
   private void writeOutputDomain(Path path, Stream<Integer> keys) throws IOException {
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.UINT_128_MAX;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128HighBits;
+import static com.google.aggregate.adtech.worker.util.NumericConversions.uInt128LowBits;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import java.math.BigInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class OutputDomainTest {
+
+  // Has the highest bit of the low half set, which is negative as a signed long
+  private static final BigInteger HIGH_LOW_BIT = BigInteger.ONE.shiftLeft(63);
+
+  @Test
+  public void build_sortsUnsignedAndDeduplicates() {
+    OutputDomain domain =
+        OutputDomain.of(
+            UINT_128_MAX,
+            BigInteger.valueOf(22),
+            HIGH_LOW_BIT,
+            BigInteger.valueOf(11),
+            UINT_128_MAX,
+            BigInteger.valueOf(22));
+
+    assertThat(domain.stream().collect(toImmutableList()))
+        .containsExactly(BigInteger.valueOf(11), BigInteger.valueOf(22), HIGH_LOW_BIT, UINT_128_MAX)
+        .inOrder();
+    assertThat(domain.size()).isEqualTo(4);
+  }
+
+  @Test
+  public void add_outOfRange_throws() {
+    OutputDomain.Builder builder = OutputDomain.builder();
+
+    assertThrows(IllegalArgumentException.class, () -> builder.add(BigInteger.valueOf(-1)));
+    assertThrows(
+        IllegalArgumentException.class, () -> builder.add(UINT_128_MAX.add(BigInteger.ONE)));
+  }
+
+  @Test
+  public void merge_keepsSharedBucketsOnce() {
+    OutputDomain domain =
+        OutputDomain.merge(
+            ImmutableList.of(
+                OutputDomain.of(BigInteger.valueOf(11), BigInteger.valueOf(33)),
+                OutputDomain.of(BigInteger.valueOf(22), BigInteger.valueOf(33)),
+                OutputDomain.of(BigInteger.valueOf(11), UINT_128_MAX)));
+
+    assertThat(domain.stream().collect(toImmutableList()))
+        .containsExactly(
+            BigInteger.valueOf(11), BigInteger.valueOf(22), BigInteger.valueOf(33), UINT_128_MAX)
+        .inOrder();
+  }
+
+  @Test
+  public void merge_noDomains_isEmpty() {
+    assertThat(OutputDomain.merge(ImmutableList.of()).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void compareAt_comparesUnsigned() {
+    OutputDomain domain = OutputDomain.of(HIGH_LOW_BIT);
+
+    assertThat(domain.compareAt(0, uInt128HighBits(HIGH_LOW_BIT), uInt128LowBits(HIGH_LOW_BIT)))
+        .isEqualTo(0);
+    assertThat(domain.compareAt(0, 0L, 1L)).isGreaterThan(0);
+    assertThat(domain.compareAt(0, 1L, 0L)).isLessThan(0);
+  }
+}
@@ -18,6 +18,7 @@ package com.google.aggregate.adtech.worker.aggregation.domain;
 
 import static com.google.aggregate.adtech.worker.util.NumericConversions.createBucketFromInt;
 import static com.google.aggregate.adtech.worker.util.NumericConversions.createBucketFromString;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
 import static java.nio.charset.StandardCharsets.US_ASCII;
@@ -31,7 +32,6 @@ import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
 import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
 import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
@@ -85,7 +85,7 @@ public class TextOutputDomainProcessorTest {
                 /* bucket= */ singleFilePath.getParent().toAbsolutePath().toString(),
                 /* key= */ singleFilePath.getFileName().toString()));
 
-    ImmutableSet<BigInteger> keys = readOutputDomain();
+    ImmutableList<BigInteger> keys = readOutputDomain();
 
     assertThat(keys)
         .containsExactly(createBucketFromInt(11), createBucketFromInt(22), createBucketFromInt(33));
@@ -96,7 +96,7 @@ public class TextOutputDomainProcessorTest {
     writeOutputDomain(outputDomainDirectory.resolve("domain_1.avro"), "foo", "bar");
     writeOutputDomain(outputDomainDirectory.resolve("domain_2.avro"), "baz");
 
-    ImmutableSet<BigInteger> keys = readOutputDomain();
+    ImmutableList<BigInteger> keys = readOutputDomain();
 
     assertThat(keys)
         .containsExactly(
@@ -111,7 +111,7 @@ public class TextOutputDomainProcessorTest {
     writeOutputDomain(
         outputDomainDirectory.resolve("domain_2.avro"), "11", "22", "11", "11", "22", "33");
 
-    ImmutableSet<BigInteger> keys = readOutputDomain();
+    ImmutableList<BigInteger> keys = readOutputDomain();
 
     assertThat(keys)
         .containsExactly(createBucketFromInt(11), createBucketFromInt(22), createBucketFromInt(33));
@@ -126,9 +126,13 @@ public class TextOutputDomainProcessorTest {
     assertThat(error).hasCauseThat().isInstanceOf(IllegalArgumentException.class);
   }
 
-  private ImmutableSet<BigInteger> readOutputDomain()
+  private ImmutableList<BigInteger> readOutputDomain()
       throws ExecutionException, InterruptedException {
-    return outputDomainProcessor.readAndDedupDomain(outputDomainLocation).get();
+    return outputDomainProcessor
+        .readAndDedupDomain(outputDomainLocation)
+        .get()
+        .stream()
+        .collect(toImmutableList());
   }
 
   private void writeOutputDomain(Path path, String... keys) throws IOException {
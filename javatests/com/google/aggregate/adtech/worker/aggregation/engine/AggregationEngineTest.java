@@ -151,6 +151,47 @@ public class AggregationEngineTest {
             AggregatedFact.create(createBucketFromInt(4), /* value= */ 20));
   }
 
+  @Test
+  public void sortedAggregatedFactIterator_ascendingBucketOrder() {
+    Report report =
+        FakeReportGenerator.generateWithFactList(
+            /* facts= */ ImmutableList.of(
+                FakeFactGenerator.generate(/* bucket= */ 3, /* value= */ 3),
+                FakeFactGenerator.generate(/* bucket= */ 1, /* value= */ 1),
+                FakeFactGenerator.generate(/* bucket= */ 2, /* value= */ 2)),
+            /* reportVersion */ "");
+
+    engine.accept(report);
+
+    assertThat(ImmutableList.copyOf(engine.sortedAggregatedFactIterator()))
+        .containsExactly(
+            AggregatedFact.create(createBucketFromInt(1), /* value= */ 1),
+            AggregatedFact.create(createBucketFromInt(2), /* value= */ 2),
+            AggregatedFact.create(createBucketFromInt(3), /* value= */ 3))
+        .inOrder();
+  }
+
+  @Test
+  public void twoReportSameFactKey_primitiveTable() {
+    engine = AggregationEngine.create(new PrimitiveAggregationTable());
+    Fact firstReportFact = FakeFactGenerator.generate(/* bucket= */ 2, /* value= */ 2);
+    Fact secondReportFact = FakeFactGenerator.generate(/* bucket= */ 2, /* value= */ 5);
+    Report firstReport =
+        FakeReportGenerator.generateWithFactList(
+            /* facts= */ ImmutableList.of(firstReportFact), /* reportVersion */ "");
+    Report secondReport =
+        FakeReportGenerator.generateWithFactList(
+            /* facts= */ ImmutableList.of(secondReportFact), /* reportVersion */ "");
+
+    engine.accept(firstReport);
+    engine.accept(secondReport);
+    ImmutableMap<BigInteger, AggregatedFact> aggregation = engine.makeAggregation();
+
+    assertThat(aggregation)
+        .containsExactly(
+            createBucketFromInt(2), AggregatedFact.create(createBucketFromInt(2), /* value= */ 7));
+  }
+
   @Test
   public void privacyBudgetUnits() {
     Report report = FakeReportGenerator.generateWithParam(/* bucket= */ 1, /* reportVersion */ "");
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.createBucketFromInt;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.testing.junit.testparameterinjector.TestParameter;
+import com.google.testing.junit.testparameterinjector.TestParameterInjector;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/**
+ * Behavior shared by all the {@link AggregationTable} implementations. Tests of a single
+ * implementation only cover what is specific to it.
+ */
+@RunWith(TestParameterInjector.class)
+public class AggregationTableTest {
+
+  @Rule public final TemporaryFolder testWorkingDir = new TemporaryFolder();
+
+  @TestParameter private TableType tableType;
+
+  // Under test.
+  private AggregationTable table;
+
+  @Before
+  public void setUp() {
+    table = tableType.create(testWorkingDir.getRoot().toPath());
+  }
+
+  @Test
+  public void add_sameBucket_sumsValues() {
+    table.add(createBucketFromInt(1), 2);
+    table.add(createBucketFromInt(1), 5);
+    table.add(createBucketFromInt(2), 10);
+
+    ImmutableMap<BigInteger, AggregatedFact> aggregation = table.makeAggregation();
+
+    assertThat(aggregation)
+        .containsExactly(
+            createBucketFromInt(1), AggregatedFact.create(createBucketFromInt(1), /* value= */ 7),
+            createBucketFromInt(2), AggregatedFact.create(createBucketFromInt(2), /* value= */ 10));
+  }
+
+  @Test
+  public void add_fullBucketRange() {
+    BigInteger highBitOnly = BigInteger.ONE.shiftLeft(127);
+    BigInteger lowHalfMax = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+    table.add(BigInteger.ZERO, 1);
+    table.add(NumericConversions.UINT_128_MAX, 2);
+    table.add(highBitOnly, 3);
+    table.add(lowHalfMax, 4);
+
+    assertThat(ImmutableList.copyOf(table.aggregatedFactIterator()))
+        .containsExactly(
+            AggregatedFact.create(BigInteger.ZERO, /* value= */ 1),
+            AggregatedFact.create(NumericConversions.UINT_128_MAX, /* value= */ 2),
+            AggregatedFact.create(highBitOnly, /* value= */ 3),
+            AggregatedFact.create(lowHalfMax, /* value= */ 4));
+  }
+
+  @Test
+  public void add_manyBuckets_grows() {
+    int bucketCount = 100_000;
+
+    for (int i = 0; i < bucketCount; i++) {
+      table.add(BigInteger.valueOf(i), i);
+      table.add(BigInteger.valueOf(i), 1);
+    }
+    ImmutableMap<BigInteger, AggregatedFact> aggregation = table.makeAggregation();
+
+    assertThat(aggregation).hasSize(bucketCount);
+    assertThat(aggregation.get(BigInteger.valueOf(12345)).metric()).isEqualTo(12346);
+  }
+
+  @Test
+  public void add_concurrentWriters() throws Exception {
+    int threadCount = 8;
+    int addsPerThread = 10_000;
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      threads.add(
+          new Thread(
+              () -> {
+                for (int i = 0; i < addsPerThread; i++) {
+                  table.add(BigInteger.valueOf(i % 100), 1);
+                }
+              }));
+    }
+
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    ImmutableMap<BigInteger, AggregatedFact> aggregation = table.makeAggregation();
+
+    assertThat(aggregation).hasSize(100);
+    assertThat(aggregation.values().stream().mapToLong(AggregatedFact::metric).sum())
+        .isEqualTo((long) threadCount * addsPerThread);
+  }
+
+  @Test
+  public void sortedAggregatedFactIterator_ascendingUnsignedBucketOrder() {
+    BigInteger highBitOnly = BigInteger.ONE.shiftLeft(127);
+    table.add(NumericConversions.UINT_128_MAX, 1);
+    table.add(highBitOnly, 2);
+    table.add(BigInteger.ONE, 3);
+    table.add(BigInteger.ZERO, 4);
+    table.add(highBitOnly, 5);
+
+    SortedAggregatedFactIterator facts = table.sortedAggregatedFactIterator();
+
+    assertThat(ImmutableList.copyOf(facts))
+        .containsExactly(
+            AggregatedFact.create(BigInteger.ZERO, /* value= */ 4),
+            AggregatedFact.create(BigInteger.ONE, /* value= */ 3),
+            AggregatedFact.create(highBitOnly, /* value= */ 7),
+            AggregatedFact.create(NumericConversions.UINT_128_MAX, /* value= */ 1))
+        .inOrder();
+    // Bits of the last fact
+    assertThat(facts.highBits()).isEqualTo(-1L);
+    assertThat(facts.lowBits()).isEqualTo(-1L);
+  }
+
+  /** Implementations under test, configured so that they grow, merge or spill on small inputs. */
+  private enum TableType {
+    CONCURRENT_MAP {
+      @Override
+      AggregationTable create(Path spillDirectory) {
+        return new ConcurrentMapAggregationTable();
+      }
+    },
+    PRIMITIVE {
+      @Override
+      AggregationTable create(Path spillDirectory) {
+        return new PrimitiveAggregationTable(/* concurrencyHint= */ 1);
+      }
+    },
+    OFF_HEAP {
+      @Override
+      AggregationTable create(Path spillDirectory) {
+        return new OffHeapAggregationTable(/* concurrencyHint= */ 1);
+      }
+    },
+    THREAD_LOCAL {
+      @Override
+      AggregationTable create(Path spillDirectory) {
+        return new ThreadLocalAggregationTable(directExecutor(), /* mergeParallelism= */ 4);
+      }
+    },
+    SPILL_TO_DISK {
+      @Override
+      AggregationTable create(Path spillDirectory) {
+        return new SpillingAggregationTable(
+            spillDirectory,
+            /* memoryBudgetBytes= */ 1_000 * SpillingAggregationTable.BYTES_PER_BUCKET,
+            directExecutor(),
+            /* concurrencyHint= */ 4);
+      }
+    };
+
+    abstract AggregationTable create(Path spillDirectory);
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BucketSumTableTest {
+
+  @Test
+  public void capacityFor_smallSize_isDefault() {
+    assertThat(BucketSumTable.capacityFor(0)).isEqualTo(BucketSumTable.DEFAULT_INITIAL_CAPACITY);
+    assertThat(BucketSumTable.capacityFor(10)).isEqualTo(BucketSumTable.DEFAULT_INITIAL_CAPACITY);
+  }
+
+  @Test
+  public void capacityFor_keepsTableAtMostHalfFull() {
+    assertThat(BucketSumTable.capacityFor(1000)).isEqualTo(2048);
+    assertThat(BucketSumTable.capacityFor(1 << 20)).isEqualTo(1 << 22);
+  }
+
+  @Test
+  public void capacityFor_largeSize_doesNotOverflow() {
+    assertThat(BucketSumTable.capacityFor(1 << 29)).isEqualTo(BucketSumTable.MAXIMUM_CAPACITY);
+    assertThat(BucketSumTable.capacityFor(Integer.MAX_VALUE))
+        .isEqualTo(BucketSumTable.MAXIMUM_CAPACITY);
+  }
+
+  @Test
+  public void sizeInBytes_grownTable_atMostMaxSlotsPerBucket() {
+    BucketSumTable table = new BucketSumTable();
+
+    for (long i = 0; i < 100_000; i++) {
+      table.add(/* high= */ 0, /* low= */ i, BucketSumTable.hash(0, i), /* value= */ 1);
+      if (table.size() > BucketSumTable.DEFAULT_INITIAL_CAPACITY / 2) {
+        assertThat(table.sizeInBytes())
+            .isAtMost(
+                (long) table.size()
+                    * BucketSumTable.MAX_SLOTS_PER_BUCKET
+                    * BucketSumTable.BYTES_PER_SLOT);
+      }
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PrimitiveAggregationTableTest {
+
+  @Test
+  public void size_countsDistinctBuckets() {
+    PrimitiveAggregationTable table = new PrimitiveAggregationTable(/* concurrencyHint= */ 1);
+    int bucketCount = 100_000;
+
+    for (int i = 0; i < bucketCount; i++) {
+      table.add(BigInteger.valueOf(i), i);
+      table.add(BigInteger.valueOf(i), 1);
+    }
+
+    assertThat(table.size()).isEqualTo(bucketCount);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ReportIdSetTest {
+
+  // Under test.
+  private ReportIdSet reportIdSet;
+
+  @Before
+  public void setUp() {
+    reportIdSet = new ReportIdSet(/* concurrencyHint= */ 1);
+  }
+
+  @Test
+  public void add_duplicateId_returnsFalse() {
+    String reportId = UUID.randomUUID().toString();
+
+    assertThat(reportIdSet.add(reportId)).isTrue();
+    assertThat(reportIdSet.add(reportId)).isFalse();
+    assertThat(reportIdSet.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void add_caseAndFormInsensitive_likeUuid() {
+    String reportId = "0a1b2c3d-0000-4e5f-8a9b-00000000000f";
+
+    assertThat(reportIdSet.add(reportId)).isTrue();
+    assertThat(reportIdSet.add(reportId.toUpperCase())).isFalse();
+    // Non-canonical form of the same UUID, parsed through UUID.fromString.
+    assertThat(reportIdSet.add("a1b2c3d-0-4e5f-8a9b-f")).isFalse();
+  }
+
+  @Test
+  public void add_canonicalParsingMatchesUuid() {
+    for (int i = 0; i < 1_000; i++) {
+      UUID uuid = UUID.randomUUID();
+      reportIdSet.add(uuid.toString());
+
+      assertThat(
+              reportIdSet.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()))
+          .isFalse();
+    }
+    assertThat(reportIdSet.size()).isEqualTo(1_000);
+  }
+
+  @Test
+  public void add_nilUuid() {
+    String nilId = new UUID(0, 0).toString();
+
+    assertThat(reportIdSet.add(nilId)).isTrue();
+    assertThat(reportIdSet.add(nilId)).isFalse();
+    assertThat(reportIdSet.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void add_invalidId_throws() {
+    assertThrows(IllegalArgumentException.class, () -> reportIdSet.add("not-a-uuid"));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> reportIdSet.add("0a1b2c3d-0000-4e5f-8a9b-00000000000g"));
+  }
+}
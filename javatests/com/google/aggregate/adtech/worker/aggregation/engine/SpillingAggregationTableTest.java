@@ -0,0 +1,160 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.createBucketFromInt;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SpillingAggregationTableTest {
+
+  @Rule public final TemporaryFolder testWorkingDir = new TemporaryFolder();
+
+  private Path spillDirectory;
+
+  @Before
+  public void setUp() {
+    spillDirectory = testWorkingDir.getRoot().toPath();
+  }
+
+  @Test
+  public void withinBudget_noSpill() {
+    SpillingAggregationTable table = createTable(/* maxBucketsInMemory= */ 10);
+
+    table.add(createBucketFromInt(1), 2);
+    table.add(createBucketFromInt(1), 5);
+    table.add(createBucketFromInt(2), 10);
+    ImmutableMap<BigInteger, AggregatedFact> aggregation = table.makeAggregation();
+
+    assertThat(table.runCount()).isEqualTo(0);
+    assertThat(aggregation)
+        .containsExactly(
+            createBucketFromInt(1), AggregatedFact.create(createBucketFromInt(1), /* value= */ 7),
+            createBucketFromInt(2), AggregatedFact.create(createBucketFromInt(2), /* value= */ 10));
+  }
+
+  @Test
+  public void overBudget_spillsAndMergesRuns() {
+    SpillingAggregationTable table = createTable(/* maxBucketsInMemory= */ 100);
+    int bucketCount = 1_000;
+
+    // Every bucket is added in several passes so that its sum is split across runs.
+    for (int pass = 0; pass < 3; pass++) {
+      for (int i = 0; i < bucketCount; i++) {
+        table.add(BigInteger.valueOf(i), i);
+      }
+    }
+    assertThat(table.runCount()).isGreaterThan(1);
+    ImmutableMap<BigInteger, AggregatedFact> aggregation = table.makeAggregation();
+
+    assertThat(aggregation).hasSize(bucketCount);
+    assertThat(aggregation.get(BigInteger.valueOf(123)).metric()).isEqualTo(3 * 123);
+    // Run files are removed once merged.
+    assertThat(spillDirectory.toFile().list()).isEmpty();
+  }
+
+  @Test
+  public void close_notRead_deletesRuns() {
+    SpillingAggregationTable table = createTable(/* maxBucketsInMemory= */ 100);
+    for (int i = 0; i < 1_000; i++) {
+      table.add(BigInteger.valueOf(i), i);
+    }
+    assertThat(spillDirectory.toFile().list()).isNotEmpty();
+
+    table.close();
+
+    assertThat(spillDirectory.toFile().list()).isEmpty();
+  }
+
+  @Test
+  public void close_partiallyRead_deletesRuns() {
+    SpillingAggregationTable table = createTable(/* maxBucketsInMemory= */ 100);
+    for (int i = 0; i < 1_000; i++) {
+      table.add(BigInteger.valueOf(i), i);
+    }
+    SortedAggregatedFactIterator facts = table.sortedAggregatedFactIterator();
+    facts.next();
+
+    table.close();
+
+    assertThat(spillDirectory.toFile().list()).isEmpty();
+  }
+
+  @Test
+  public void aggregatedFactIterator_ascendingUnsignedBucketOrder() {
+    SpillingAggregationTable table = createTable(/* maxBucketsInMemory= */ 2);
+    BigInteger highBitOnly = BigInteger.ONE.shiftLeft(127);
+
+    table.add(NumericConversions.UINT_128_MAX, 1);
+    table.add(highBitOnly, 2);
+    table.add(BigInteger.ONE, 3);
+    table.add(BigInteger.ZERO, 4);
+    table.add(highBitOnly, 5);
+
+    ImmutableList<AggregatedFact> facts = ImmutableList.copyOf(table.aggregatedFactIterator());
+
+    assertThat(facts)
+        .containsExactly(
+            AggregatedFact.create(BigInteger.ZERO, /* value= */ 4),
+            AggregatedFact.create(BigInteger.ONE, /* value= */ 3),
+            AggregatedFact.create(highBitOnly, /* value= */ 7),
+            AggregatedFact.create(NumericConversions.UINT_128_MAX, /* value= */ 1))
+        .inOrder();
+  }
+
+  @Test
+  public void sortedAggregatedFactIterator_streamsMergedRuns() {
+    SpillingAggregationTable table = createTable(/* maxBucketsInMemory= */ 100);
+    int bucketCount = 1_000;
+    for (int pass = 0; pass < 2; pass++) {
+      for (int i = bucketCount - 1; i >= 0; i--) {
+        table.add(BigInteger.valueOf(i), i);
+      }
+    }
+
+    SortedAggregatedFactIterator facts = table.sortedAggregatedFactIterator();
+
+    for (int i = 0; i < bucketCount; i++) {
+      assertThat(facts.next()).isEqualTo(AggregatedFact.create(BigInteger.valueOf(i), 2 * i));
+      assertThat(facts.lowBits()).isEqualTo((long) i);
+    }
+    assertThat(facts.hasNext()).isFalse();
+    assertThat(spillDirectory.toFile().list()).isEmpty();
+  }
+
+  private SpillingAggregationTable createTable(long maxBucketsInMemory) {
+    return new SpillingAggregationTable(
+        spillDirectory,
+        /* memoryBudgetBytes= */ maxBucketsInMemory * SpillingAggregationTable.BYTES_PER_BUCKET,
+        directExecutor(),
+        /* concurrencyHint= */ 4);
+  }
+}
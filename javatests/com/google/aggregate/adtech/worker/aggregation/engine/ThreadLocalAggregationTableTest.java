@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.common.collect.ImmutableMap;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ThreadLocalAggregationTableTest {
+
+  private ExecutorService mergeExecutor;
+
+  // Under test.
+  private ThreadLocalAggregationTable table;
+
+  @Before
+  public void setUp() {
+    mergeExecutor = Executors.newFixedThreadPool(4);
+    table = new ThreadLocalAggregationTable(mergeExecutor, /* mergeParallelism= */ 4);
+  }
+
+  @After
+  public void tearDown() {
+    mergeExecutor.shutdownNow();
+  }
+
+  @Test
+  public void makeAggregation_noFacts_isEmpty() {
+    assertThat(table.makeAggregation()).isEmpty();
+  }
+
+  @Test
+  public void add_concurrentWriters_partialsMerged() throws Exception {
+    int threadCount = 8;
+    int bucketCount = 5_000;
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      threads.add(
+          new Thread(
+              () -> {
+                for (int i = 0; i < bucketCount; i++) {
+                  table.add(BigInteger.valueOf(i), i);
+                }
+              }));
+    }
+
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    ImmutableMap<BigInteger, AggregatedFact> aggregation = table.makeAggregation();
+
+    assertThat(aggregation).hasSize(bucketCount);
+    assertThat(aggregation.get(BigInteger.valueOf(1234)).metric()).isEqualTo(1234L * threadCount);
+  }
+
+  @Test
+  public void makeAggregation_fromMergeExecutorThread_completes() throws Exception {
+    ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+    try {
+      table = new ThreadLocalAggregationTable(singleThreadExecutor, /* mergeParallelism= */ 4);
+      for (int i = 0; i < 1_000; i++) {
+        table.add(BigInteger.valueOf(i), i);
+      }
+
+      // The only executor thread runs the merge, so its partition tasks can't start until it's done
+      ImmutableMap<BigInteger, AggregatedFact> aggregation =
+          singleThreadExecutor.submit(table::makeAggregation).get(30, SECONDS);
+
+      assertThat(aggregation).hasSize(1_000);
+    } finally {
+      singleThreadExecutor.shutdownNow();
+    }
+  }
+}
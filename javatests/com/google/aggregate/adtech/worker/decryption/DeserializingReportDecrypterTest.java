@@ -90,6 +90,16 @@ public class DeserializingReportDecrypterTest {
     assertThat(decryptedReport).isEqualTo(report);
   }
 
+  /** Test that the key cache counts of the cipher factory are reported */
+  @Test
+  public void testDecryptionKeyCacheStats() throws Exception {
+    deserializingReportDecrypter.decryptSingleReport(encryptedReport);
+    deserializingReportDecrypter.decryptSingleReport(encryptedReport);
+
+    assertThat(deserializingReportDecrypter.decryptionKeyCacheStats().missCount()).isEqualTo(1);
+    assertThat(deserializingReportDecrypter.decryptionKeyCacheStats().hitCount()).isEqualTo(1);
+  }
+
   /** Test error handling for failed sharedInfo deserialization */
   @Test
   public void testExceptionInSharedInfoDeserialization() throws Exception {
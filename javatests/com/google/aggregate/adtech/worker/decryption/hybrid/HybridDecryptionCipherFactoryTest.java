@@ -97,6 +97,63 @@ public class HybridDecryptionCipherFactoryTest {
     assertThat(fakeDecryptionKeyService.getLastKeyIdUsed()).isEqualTo(keyId);
   }
 
+  @Test
+  public void testFetchesKeyOncePerKeyId() throws CipherCreationException {
+    String keyId = UUID.randomUUID().toString();
+    EncryptedReport encryptedReport =
+        EncryptedReport.builder()
+            .setPayload(ByteSource.empty())
+            .setKeyId(keyId)
+            .setSharedInfo("")
+            .build();
+
+    DecryptionCipher first = hybridDecryptionCipherFactory.decryptionCipherFor(encryptedReport);
+    DecryptionCipher second = hybridDecryptionCipherFactory.decryptionCipherFor(encryptedReport);
+
+    assertThat(second).isSameInstanceAs(first);
+    assertThat(hybridDecryptionCipherFactory.cipherCacheStats().missCount()).isEqualTo(1);
+    assertThat(hybridDecryptionCipherFactory.cipherCacheStats().hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testPrefetchedKeyIsNotFetchedAgain() throws CipherCreationException {
+    String keyId = UUID.randomUUID().toString();
+    EncryptedReport encryptedReport =
+        EncryptedReport.builder()
+            .setPayload(ByteSource.empty())
+            .setKeyId(keyId)
+            .setSharedInfo("")
+            .build();
+
+    hybridDecryptionCipherFactory.prefetchDecryptionKey(keyId);
+    hybridDecryptionCipherFactory.decryptionCipherFor(encryptedReport);
+
+    assertThat(hybridDecryptionCipherFactory.cipherCacheStats().missCount()).isEqualTo(1);
+    assertThat(hybridDecryptionCipherFactory.cipherCacheStats().hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testDoesNotCacheFailedFetch() throws CipherCreationException {
+    String keyId = UUID.randomUUID().toString();
+    EncryptedReport encryptedReport =
+        EncryptedReport.builder()
+            .setPayload(ByteSource.empty())
+            .setKeyId(keyId)
+            .setSharedInfo("")
+            .build();
+    fakeDecryptionKeyService.setShouldThrow(true);
+    assertThrows(
+        CipherCreationException.class,
+        () -> hybridDecryptionCipherFactory.decryptionCipherFor(encryptedReport));
+    fakeDecryptionKeyService.setShouldThrow(false);
+
+    DecryptionCipher decryptionCipher =
+        hybridDecryptionCipherFactory.decryptionCipherFor(encryptedReport);
+
+    assertThat(decryptionCipher).isInstanceOf(HybridDecryptionCipher.class);
+    assertThat(fakeDecryptionKeyService.getLastKeyIdUsed()).isEqualTo(keyId);
+  }
+
   private static final class TestEnv extends AbstractModule {
 
     @Override
@@ -73,6 +73,23 @@ public class HybridDecryptionCipherTest {
     assertThat(decryptedMessage).isEqualTo(message);
   }
 
+  @Test
+  public void decryptionTestWithNonAsciiContextInfo() throws Exception {
+    String message = Strings.repeat("This is a secret", 10000);
+    String sharedInfo = "Context info \u00e9\u6587\ud83d\ude00";
+    byte[] encryptedPayload =
+        hybridEncryptData(
+            message.getBytes(UTF_8),
+            (ASSOCIATED_DATA_PREFIX_WITH_NULL_TERMINATOR + sharedInfo).getBytes(UTF_8));
+
+    ByteSource decryptedPayload =
+        hybridDecryptionCipher.decrypt(
+            ByteSource.wrap(encryptedPayload), sharedInfo, DEFAULT_VERSION);
+
+    String decryptedMessage = new String(decryptedPayload.read(), UTF_8);
+    assertThat(decryptedMessage).isEqualTo(message);
+  }
+
   @Test
   public void decryptionTestWithSharedInfoVersionZeroDotOne() throws Exception {
     String message = Strings.repeat("This is a secret", 10000);
@@ -18,6 +18,7 @@ package com.google.aggregate.adtech.worker.model;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.time.Instant;
@@ -135,6 +136,51 @@ public class SharedInfoTest {
     assertEquals(si1.getPrivacyBudgetKey(), si2.getPrivacyBudgetKey());
   }
 
+  /** Test to verify SharedInfos differing in one key field don't share a Privacy Budget Key */
+  @Test
+  public void testDistinctPrivacyBudgetKeyForDifferentSourceRegistrationTime() {
+    SharedInfo.Builder sharedInfoBuilder =
+        SharedInfo.builder()
+            .setVersion(VERSION_ZERO_DOT_ONE)
+            .setApi(ATTRIBUTION_REPORTING_API)
+            .setDestination(DESTINATION_CHROME_GOLDEN_REPORT)
+            .setReportingOrigin(REPORTING_ORIGIN_CHROME_GOLDEN_REPORT)
+            .setScheduledReportTime(Instant.ofEpochSecond(1234486400));
+    SharedInfo si1 =
+        sharedInfoBuilder.setSourceRegistrationTime(Instant.ofEpochSecond(1234483200)).build();
+    SharedInfo si2 =
+        sharedInfoBuilder.setSourceRegistrationTime(Instant.ofEpochSecond(1234569600)).build();
+
+    assertEquals(si1.getPrivacyBudgetKey(), PRIVACY_BUDGET_KEY_CHROME_GOLDEN_REPORT);
+    assertNotEquals(si1.getPrivacyBudgetKey(), si2.getPrivacyBudgetKey());
+  }
+
+  /** Test to verify a shared key input that doesn't match the fields can't set another key */
+  @Test
+  public void testDerivedPrivacyBudgetKeyInputNotMatchingFieldsIsIgnored() {
+    SharedInfo.PrivacyBudgetKeyInput goldenReportKeyInput =
+        SharedInfo.builder()
+            .setVersion(VERSION_ZERO_DOT_ONE)
+            .setApi(ATTRIBUTION_REPORTING_API)
+            .setDestination(DESTINATION_CHROME_GOLDEN_REPORT)
+            .setReportingOrigin(REPORTING_ORIGIN_CHROME_GOLDEN_REPORT)
+            .setSourceRegistrationTime(Instant.ofEpochSecond(1234483200))
+            .privacyBudgetKeyInput()
+            .get();
+    SharedInfo.Builder sharedInfoBuilder =
+        SharedInfo.builder()
+            .setVersion(VERSION_ZERO_DOT_ONE)
+            .setApi(ATTRIBUTION_REPORTING_API)
+            .setDestination(DESTINATION)
+            .setScheduledReportTime(FIXED_TIME)
+            .setSourceRegistrationTime(FIXED_TIME)
+            .setReportingOrigin(REPORTING_ORIGIN)
+            .setDerivedPrivacyBudgetKeyInput(goldenReportKeyInput);
+    SharedInfo si = sharedInfoBuilder.build();
+
+    assertEquals(si.getPrivacyBudgetKey(), PRIVACY_BUDGET_KEY_2);
+  }
+
   /** Test to verify the correctness of set/getReportDebugMode when debug mode is enabled */
   @Test
   public void testSetAndGetReportDebugModeEnabled() {
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.model.serdes;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.aggregate.adtech.worker.model.SharedInfo;
+import com.google.aggregate.shared.mapper.TimeObjectMapper;
+import java.time.Instant;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SharedInfoParserTest {
+
+  private static final String CHROME_GOLDEN_REPORT_SHARED_INFO =
+      "{\"api\":\"attribution-reporting\",\"attribution_destination\":\"https://conversion.test\","
+          + "\"debug_mode\":\"enabled\",\"report_id\":\"21abd97f-73e8-4b88-9389-a9fee6abda5e\","
+          + "\"reporting_origin\":\"https://report.test\",\"scheduled_report_time\":\"1234486400\","
+          + "\"source_registration_time\":\"1234483200\",\"version\":\"0.1\"}";
+
+  private SharedInfoParser sharedInfoParser;
+
+  @Before
+  public void setUp() {
+    sharedInfoParser = new SharedInfoParser(new TimeObjectMapper().getFactory());
+  }
+
+  @Test
+  public void parse_chromeGoldenReport() {
+    Optional<SharedInfo> parsed = sharedInfoParser.parse(CHROME_GOLDEN_REPORT_SHARED_INFO);
+
+    assertThat(parsed)
+        .hasValue(
+            SharedInfo.builder()
+                .setVersion("0.1")
+                .setApi("attribution-reporting")
+                .setReportId("21abd97f-73e8-4b88-9389-a9fee6abda5e")
+                .setDestination("https://conversion.test")
+                .setReportingOrigin("https://report.test")
+                .setScheduledReportTime(Instant.ofEpochSecond(1234486400))
+                .setSourceRegistrationTime(Instant.ofEpochSecond(1234483200))
+                .setReportDebugMode(true)
+                .build());
+  }
+
+  @Test
+  public void parse_repeatedValuesAreShared() {
+    SharedInfo first = sharedInfoParser.parse(CHROME_GOLDEN_REPORT_SHARED_INFO).get();
+    SharedInfo second = sharedInfoParser.parse(CHROME_GOLDEN_REPORT_SHARED_INFO).get();
+
+    assertThat(second.reportingOrigin()).isSameInstanceAs(first.reportingOrigin());
+    assertThat(second.destination().get()).isSameInstanceAs(first.destination().get());
+    assertThat(second.scheduledReportTime()).isSameInstanceAs(first.scheduledReportTime());
+  }
+
+  @Test
+  public void parse_repeatedPrivacyBudgetKeyIsShared() {
+    SharedInfo first = sharedInfoParser.parse(CHROME_GOLDEN_REPORT_SHARED_INFO).get();
+    SharedInfo second = sharedInfoParser.parse(CHROME_GOLDEN_REPORT_SHARED_INFO).get();
+
+    assertThat(first.getPrivacyBudgetKey())
+        .isEqualTo("399bd3cd2282959381e4ad6858c5f434285ec70252b5a446808815780d36140f");
+    assertThat(second.getPrivacyBudgetKey()).isSameInstanceAs(first.getPrivacyBudgetKey());
+  }
+
+  @Test
+  public void parse_skipsUnknownFields() {
+    String sharedInfoJsonString =
+        "{\"version\": \"\", \"scheduled_report_time\": \"1609459200\","
+            + " \"unknown_field\": {\"nested\": [1, \"fizzbuzz\"]}, \"reporting_origin\":"
+            + " \"origin.com\"}";
+
+    Optional<SharedInfo> parsed = sharedInfoParser.parse(sharedInfoJsonString);
+
+    assertThat(parsed)
+        .hasValue(
+            SharedInfo.builder()
+                .setVersion("")
+                .setScheduledReportTime(Instant.ofEpochSecond(1609459200))
+                .setReportingOrigin("origin.com")
+                .build());
+  }
+
+  @Test
+  public void parse_decimalTimestampLeftToDataBinding() {
+    String sharedInfoJsonString =
+        "{\"version\": \"\", \"scheduled_report_time\": 1609459200.000000000,"
+            + " \"reporting_origin\": \"origin.com\"}";
+
+    Optional<SharedInfo> parsed = sharedInfoParser.parse(sharedInfoJsonString);
+
+    assertThat(parsed).isEmpty();
+  }
+
+  @Test
+  public void parse_missingRequiredField() {
+    String sharedInfoJsonString = "{\"version\": \"\", \"reporting_origin\": \"origin.com\"}";
+
+    Optional<SharedInfo> parsed = sharedInfoParser.parse(sharedInfoJsonString);
+
+    assertThat(parsed).isEmpty();
+  }
+
+  @Test
+  public void parse_badInput() {
+    Optional<SharedInfo> parsed = sharedInfoParser.parse("invalid string");
+
+    assertThat(parsed).isEmpty();
+  }
+}
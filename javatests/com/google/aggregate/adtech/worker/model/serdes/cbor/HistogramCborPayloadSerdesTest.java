@@ -0,0 +1,267 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.model.serdes.cbor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.acai.Acai;
+import com.google.aggregate.adtech.worker.model.Fact;
+import com.google.aggregate.adtech.worker.model.Payload;
+import com.google.common.io.ByteSource;
+import com.google.common.primitives.Bytes;
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class HistogramCborPayloadSerdesTest {
+
+  @Rule public final Acai acai = new Acai(TestEnv.class);
+
+  @Inject private HistogramCborPayloadSerdes histogramCborPayloadSerdes;
+  @Inject private CborPayloadSerdes cborPayloadSerdes;
+
+  @Test
+  public void testDeserializeFromCborBytes_matchesJacksonForChromeReports() throws Exception {
+    for (String location :
+        Arrays.asList(
+            "CBOR_REPORT_1_LOCATION",
+            "CBOR_REPORT_2_LOCATION",
+            "CBOR_REPORT_3_LOCATION",
+            "CBOR_REPORT_4_LOCATION",
+            "CBOR_REPORT_5_LOCATION",
+            "CBOR_REPORT_6_LOCATION")) {
+      ByteSource cborBytes = ByteSource.wrap(Files.readAllBytes(Path.of(System.getenv(location))));
+
+      Optional<Payload> deserialized = histogramCborPayloadSerdes.convert(cborBytes);
+
+      assertThat(deserialized).isPresent();
+      assertThat(deserialized).isEqualTo(cborPayloadSerdes.convert(cborBytes));
+    }
+  }
+
+  @Test
+  public void testDeserializeFromCborBytes_report3() throws Exception {
+    Payload expectedPayload =
+        Payload.builder()
+            .addFact(Fact.builder().setBucket(BigInteger.valueOf(0x1)).setValue(2).build())
+            .addFact(Fact.builder().setBucket(BigInteger.valueOf(0x3)).setValue(4).build())
+            .build();
+    ByteSource cborBytes =
+        ByteSource.wrap(Files.readAllBytes(Path.of(System.getenv("CBOR_REPORT_3_LOCATION"))));
+
+    Optional<Payload> deserialized = histogramCborPayloadSerdes.convert(cborBytes);
+
+    assertThat(deserialized).hasValue(expectedPayload);
+  }
+
+  @Test
+  public void testSerializeAndDeserialize() {
+    Payload payload =
+        Payload.builder()
+            .addFact(
+                Fact.builder().setBucket(BigInteger.valueOf(123456789)).setValue(12345).build())
+            .addFact(
+                Fact.builder()
+                    .setBucket(BigInteger.valueOf(1).shiftLeft(128).subtract(BigInteger.ONE))
+                    .setValue(0xffffffffL)
+                    .build())
+            .addFact(Fact.builder().setBucket(BigInteger.ZERO).setValue(0).build())
+            .build();
+
+    ByteSource serialized = histogramCborPayloadSerdes.reverse().convert(Optional.of(payload));
+    Optional<Payload> deserialized = histogramCborPayloadSerdes.convert(serialized);
+
+    assertThat(deserialized).hasValue(payload);
+  }
+
+  @Test
+  public void testSkipsPaddingAndDecodesIndefiniteLengthContainers() {
+    // {_ "data": [_ {"bucket": h'07', "value": h'0100'}], "padding": h'000000',
+    //    "operation": "histogram"}
+    ByteSource cborBytes =
+        ByteSource.wrap(
+            Bytes.concat(
+                new byte[] {(byte) 0xbf},
+                text("data"),
+                new byte[] {(byte) 0x9f, (byte) 0xa2},
+                text("bucket"),
+                new byte[] {0x41, 0x07},
+                text("value"),
+                new byte[] {0x42, 0x01, 0x00, (byte) 0xff},
+                text("padding"),
+                new byte[] {0x43, 0x00, 0x00, 0x00},
+                text("operation"),
+                text("histogram"),
+                new byte[] {(byte) 0xff}));
+
+    Optional<Payload> deserialized = histogramCborPayloadSerdes.convert(cborBytes);
+
+    assertThat(deserialized)
+        .hasValue(
+            Payload.builder()
+                .addFact(Fact.builder().setBucket(BigInteger.valueOf(7)).setValue(256).build())
+                .build());
+  }
+
+  @Test
+  public void testReturnsEmptyOptionalForDeeplyNestedPadding() {
+    // {"padding": [[[...]]], "operation": "histogram", "data": []}, nested deeper than the stack
+    // could skip recursively
+    byte[] nestedArrays = new byte[1_000_000];
+    Arrays.fill(nestedArrays, (byte) 0x81);
+    ByteSource cborBytes =
+        ByteSource.wrap(
+            Bytes.concat(
+                new byte[] {(byte) 0xa3},
+                text("padding"),
+                nestedArrays,
+                new byte[] {(byte) 0x80},
+                text("operation"),
+                text("histogram"),
+                text("data"),
+                new byte[] {(byte) 0x80}));
+
+    Optional<Payload> deserialized = histogramCborPayloadSerdes.convert(cborBytes);
+
+    assertThat(deserialized).isEmpty();
+  }
+
+  @Test
+  public void testReturnsEmptyOptionalForPaddingWithOverflowingLength() {
+    // {"padding": [2^63 items], "operation": "histogram", "data": []}, whose length does not fit
+    // a signed long
+    ByteSource cborBytes =
+        ByteSource.wrap(
+            Bytes.concat(
+                new byte[] {(byte) 0xa3},
+                text("padding"),
+                new byte[] {(byte) 0x9b, (byte) 0x80, 0, 0, 0, 0, 0, 0, 0},
+                text("operation"),
+                text("histogram"),
+                text("data"),
+                new byte[] {(byte) 0x80}));
+
+    Optional<Payload> deserialized = histogramCborPayloadSerdes.convert(cborBytes);
+
+    assertThat(deserialized).isEmpty();
+  }
+
+  @Test
+  public void testReturnsEmptyOptionalForUnterminatedIndefiniteLengthPadding() {
+    // {"padding": [_ 0, 0, i.e. an indefinite-length array missing its break
+    ByteSource cborBytes =
+        ByteSource.wrap(
+            Bytes.concat(
+                new byte[] {(byte) 0xa1}, text("padding"), new byte[] {(byte) 0x9f, 0x00, 0x00}));
+
+    Optional<Payload> deserialized = histogramCborPayloadSerdes.convert(cborBytes);
+
+    assertThat(deserialized).isEmpty();
+  }
+
+  @Test
+  public void testWithInvalidValue() {
+    Long largerThanUnsignedIntMax = 0xffffffffL + 1; // 4294967296, 2^32
+    Payload payloadLargerThanUnsignedIntMax =
+        Payload.builder()
+            .addFact(
+                Fact.builder()
+                    .setBucket(BigInteger.valueOf(1))
+                    .setValue(largerThanUnsignedIntMax)
+                    .build())
+            .build();
+
+    ByteSource serialized =
+        cborPayloadSerdes.reverse().convert(Optional.of(payloadLargerThanUnsignedIntMax));
+    Optional<Payload> deserialized = histogramCborPayloadSerdes.convert(serialized);
+
+    assertThat(deserialized).isEmpty();
+  }
+
+  @Test
+  public void testWithInvalidBucket() {
+    BigInteger bucketTooLarge = BigInteger.valueOf(1).shiftLeft(128); // 2^128
+    Payload payloadBucketTooLarge =
+        Payload.builder()
+            .addFact(Fact.builder().setBucket(bucketTooLarge).setValue(1).build())
+            .build();
+
+    ByteSource serialized = cborPayloadSerdes.reverse().convert(Optional.of(payloadBucketTooLarge));
+    Optional<Payload> deserialized = histogramCborPayloadSerdes.convert(serialized);
+
+    assertThat(deserialized).isEmpty();
+  }
+
+  @Test
+  public void testReturnsEmptyOptionalForTruncatedInput() throws IOException {
+    byte[] cborBytes = Files.readAllBytes(Path.of(System.getenv("CBOR_REPORT_3_LOCATION")));
+
+    for (int length = 1; length < cborBytes.length; length++) {
+      ByteSource truncated = ByteSource.wrap(Arrays.copyOf(cborBytes, length));
+
+      assertThat(histogramCborPayloadSerdes.convert(truncated)).isEmpty();
+    }
+  }
+
+  @Test
+  public void testReturnsEmptyOptionalForBadInput() {
+    ByteSource badInput = ByteSource.wrap(new byte[] {0x01, 0x02});
+
+    Optional<Payload> deserialized = histogramCborPayloadSerdes.convert(badInput);
+
+    assertThat(deserialized).isEmpty();
+  }
+
+  @Test
+  public void testReturnsEmptyOptionalForEmptyByteSource() {
+    // No setup
+
+    Optional<Payload> deserialized = histogramCborPayloadSerdes.convert(ByteSource.empty());
+
+    assertThat(deserialized).isEmpty();
+  }
+
+  @Test
+  public void testReturnsEmptyByteSourceForEmptyOptional() throws Exception {
+    // No setup
+
+    ByteSource serialized = histogramCborPayloadSerdes.reverse().convert(Optional.empty());
+
+    assertThat(serialized.isEmpty()).isTrue();
+  }
+
+  /** Encodes a short CBOR text string. */
+  private static byte[] text(String value) {
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    return Bytes.concat(new byte[] {(byte) (0x60 | utf8.length)}, utf8);
+  }
+
+  /** No overrides or bindings needed */
+  private static final class TestEnv extends AbstractModule {}
+}
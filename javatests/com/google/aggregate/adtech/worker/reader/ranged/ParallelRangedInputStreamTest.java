@@ -0,0 +1,212 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.ranged;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.getDataLocation;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.io.ByteStreams;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ParallelRangedInputStreamTest {
+
+  private static final DataLocation LOCATION = getDataLocation("bucket", "shard.avro");
+
+  private ExecutorService fetchExecutor;
+  private byte[] blob;
+
+  @Before
+  public void setUp() {
+    fetchExecutor = Executors.newCachedThreadPool();
+    blob = new byte[10_000];
+    new Random(/* seed= */ 42).nextBytes(blob);
+  }
+
+  @After
+  public void tearDown() {
+    fetchExecutor.shutdownNow();
+  }
+
+  @Test
+  public void read_returnsBlobContents() throws Exception {
+    FakeRangedBlobReader reader = new FakeRangedBlobReader(blob);
+
+    byte[] read;
+    try (InputStream stream =
+        newStream(reader, /* rangeSize= */ 1024, /* maxRangesInFlight= */ 3)) {
+      read = ByteStreams.toByteArray(stream);
+    }
+
+    assertThat(read).isEqualTo(blob);
+  }
+
+  @Test
+  public void read_singleBytes_returnsBlobContents() throws Exception {
+    FakeRangedBlobReader reader = new FakeRangedBlobReader(blob);
+    byte[] read = new byte[blob.length];
+
+    try (InputStream stream = newStream(reader, /* rangeSize= */ 333, /* maxRangesInFlight= */ 2)) {
+      for (int i = 0; i < read.length; i++) {
+        read[i] = (byte) stream.read();
+      }
+      assertThat(stream.read()).isEqualTo(-1);
+    }
+
+    assertThat(read).isEqualTo(blob);
+  }
+
+  @Test
+  public void read_boundsRangesFetchedConcurrently() throws Exception {
+    FakeRangedBlobReader reader = new FakeRangedBlobReader(blob);
+
+    try (InputStream stream = newStream(reader, /* rangeSize= */ 500, /* maxRangesInFlight= */ 4)) {
+      ByteStreams.exhaust(stream);
+    }
+
+    // Each range stream is throttled, so the ranges only overlap if they are fetched in parallel
+    assertThat(reader.maxConcurrentFetches.get()).isGreaterThan(1);
+    assertThat(reader.maxConcurrentFetches.get()).isAtMost(4);
+    assertThat(reader.fetchCount.get()).isEqualTo(20);
+  }
+
+  @Test
+  public void read_singleRangeInFlight_fetchesSequentially() throws Exception {
+    FakeRangedBlobReader reader = new FakeRangedBlobReader(blob);
+
+    try (InputStream stream = newStream(reader, /* rangeSize= */ 500, /* maxRangesInFlight= */ 1)) {
+      ByteStreams.exhaust(stream);
+    }
+
+    assertThat(reader.maxConcurrentFetches.get()).isEqualTo(1);
+    assertThat(reader.fetchCount.get()).isEqualTo(20);
+  }
+
+  @Test
+  public void read_rangeFetchFails_throwsIOException() throws Exception {
+    FakeRangedBlobReader reader = new FakeRangedBlobReader(blob);
+    reader.failingOffset = 2048;
+
+    InputStream stream = newStream(reader, /* rangeSize= */ 1024, /* maxRangesInFlight= */ 2);
+
+    assertThrows(IOException.class, () -> ByteStreams.exhaust(stream));
+  }
+
+  @Test
+  public void read_afterClose_throwsIOException() throws Exception {
+    InputStream stream =
+        newStream(
+            new FakeRangedBlobReader(blob), /* rangeSize= */ 1024, /* maxRangesInFlight= */ 2);
+
+    stream.close();
+
+    assertThrows(IOException.class, stream::read);
+  }
+
+  private InputStream newStream(RangedBlobReader reader, int rangeSize, int maxRangesInFlight) {
+    return new ParallelRangedInputStream(
+        reader, LOCATION, blob.length, rangeSize, maxRangesInFlight, fetchExecutor);
+  }
+
+  /**
+   * Serves ranges of an in-memory blob, each over a stream limited to {@link
+   * #BYTES_PER_MILLISECOND} like a single connection to a blob store, recording how many range
+   * streams are open concurrently.
+   */
+  private static final class FakeRangedBlobReader implements RangedBlobReader {
+
+    private static final int BYTES_PER_MILLISECOND = 100;
+
+    private final byte[] blob;
+    private final AtomicInteger concurrentFetches = new AtomicInteger();
+    private final AtomicInteger maxConcurrentFetches = new AtomicInteger();
+    private final AtomicInteger fetchCount = new AtomicInteger();
+    private volatile long failingOffset = -1;
+
+    private FakeRangedBlobReader(byte[] blob) {
+      this.blob = blob;
+    }
+
+    @Override
+    public long getBlobSize(DataLocation location) {
+      return blob.length;
+    }
+
+    @Override
+    public InputStream getBlobRange(DataLocation location, long offset, long length)
+        throws IOException {
+      fetchCount.incrementAndGet();
+      if (offset == failingOffset) {
+        throw new IOException("Fetch failed");
+      }
+      int concurrent = concurrentFetches.incrementAndGet();
+      maxConcurrentFetches.accumulateAndGet(concurrent, Math::max);
+      return new ThrottledInputStream(new ByteArrayInputStream(blob, (int) offset, (int) length));
+    }
+
+    /** Stream that returns at most {@link #BYTES_PER_MILLISECOND} bytes per millisecond. */
+    private final class ThrottledInputStream extends FilterInputStream {
+
+      private boolean closed = false;
+
+      private ThrottledInputStream(InputStream in) {
+        super(in);
+      }
+
+      @Override
+      public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) throws IOException {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+        return super.read(bytes, offset, Math.min(length, BYTES_PER_MILLISECOND));
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (!closed) {
+          closed = true;
+          concurrentFetches.decrementAndGet();
+        }
+        super.close();
+      }
+    }
+  }
+}
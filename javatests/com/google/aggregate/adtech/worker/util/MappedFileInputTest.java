@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MappedFileInputTest {
+
+  @Rule public final TemporaryFolder testWorkingDir = new TemporaryFolder();
+
+  private Path file;
+  private byte[] content;
+
+  @Before
+  public void setUp() throws Exception {
+    content = new byte[1000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    file = testWorkingDir.getRoot().toPath().resolve("file.bin");
+    Files.write(file, content);
+  }
+
+  @Test
+  public void testReadsWholeFileAcrossSegments() throws Exception {
+    MappedFileInput input = MappedFileInput.open(file, /* segmentSize= */ 64);
+
+    assertThat(input.length()).isEqualTo(1000);
+    assertThat(input.asInputStream().readAllBytes()).isEqualTo(content);
+  }
+
+  @Test
+  public void testSeekAndRead() throws Exception {
+    MappedFileInput input = MappedFileInput.open(file, /* segmentSize= */ 64);
+    byte[] bytes = new byte[10];
+
+    input.seek(130);
+    int readCount = input.read(bytes, 0, 10);
+
+    assertThat(readCount).isEqualTo(10);
+    assertThat(bytes[0]).isEqualTo(content[130]);
+    assertThat(input.tell()).isEqualTo(140);
+  }
+
+  @Test
+  public void testReadStopsAtSegmentEnd() throws Exception {
+    MappedFileInput input = MappedFileInput.open(file, /* segmentSize= */ 64);
+    byte[] bytes = new byte[10];
+
+    input.seek(60);
+    int readCount = input.read(bytes, 0, 10);
+
+    assertThat(readCount).isEqualTo(4);
+    assertThat(input.tell()).isEqualTo(64);
+  }
+
+  @Test
+  public void testReadAtEndOfFile() throws Exception {
+    MappedFileInput input = MappedFileInput.open(file);
+
+    input.seek(1000);
+
+    assertThat(input.read(new byte[10], 0, 10)).isEqualTo(-1);
+  }
+
+  @Test
+  public void testEmptyFile() throws Exception {
+    Path emptyFile = testWorkingDir.newFile().toPath();
+
+    MappedFileInput input = MappedFileInput.open(emptyFile);
+
+    assertThat(input.length()).isEqualTo(0);
+    assertThat(input.asInputStream().read()).isEqualTo(-1);
+  }
+
+  @Test
+  public void testReadAfterCloseFails() throws Exception {
+    MappedFileInput input = MappedFileInput.open(file);
+
+    input.close();
+
+    assertThrows(IOException.class, () -> input.read(new byte[10], 0, 10));
+  }
+}
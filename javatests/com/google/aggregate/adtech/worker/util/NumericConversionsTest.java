@@ -253,6 +253,74 @@ public class NumericConversionsTest {
     assertThat("61").isEqualTo(inTextFile);
   }
 
+  @Test
+  public void testUInt128FromLongs_roundTrip() {
+    BigInteger uInt128Max = BigInteger.valueOf(1).shiftLeft(128).subtract(BigInteger.valueOf(1));
+    BigInteger highBitsOnly = BigInteger.valueOf(1).shiftLeft(127);
+
+    for (BigInteger value :
+        new BigInteger[] {BigInteger.ZERO, BigInteger.ONE, highBitsOnly, uInt128Max}) {
+      long highBits = NumericConversions.uInt128HighBits(value);
+      long lowBits = NumericConversions.uInt128LowBits(value);
+
+      assertThat(NumericConversions.uInt128FromLongs(highBits, lowBits)).isEqualTo(value);
+    }
+  }
+
+  @Test
+  public void testUInt128FromLongs_negativeHalvesReadAsUnsigned() {
+    BigInteger value = NumericConversions.uInt128FromLongs(/* highBits= */ 0, /* lowBits= */ -1);
+
+    assertThat(value).isEqualTo(BigInteger.valueOf(1).shiftLeft(64).subtract(BigInteger.ONE));
+  }
+
+  @Test
+  public void testCompareUInt128_comparesHalvesUnsigned() {
+    assertThat(NumericConversions.compareUInt128(0, -1, 1, 0)).isLessThan(0);
+    assertThat(NumericConversions.compareUInt128(-1, 0, 1, -1)).isGreaterThan(0);
+    assertThat(NumericConversions.compareUInt128(1, -1, 1, 1)).isGreaterThan(0);
+    assertThat(NumericConversions.compareUInt128(-1, -1, -1, -1)).isEqualTo(0);
+  }
+
+  @Test
+  public void testSortUInt128_sortsAscendingUnsigned() {
+    long[] highs = {-1, 0, 1, 0, 0};
+    long[] lows = {0, -1, 0, 1, 1};
+    String[] names = {"d", "b", "c", "a", "a"};
+
+    NumericConversions.sortUInt128(
+        new NumericConversions.UInt128Sortable() {
+          @Override
+          public long highBits(int index) {
+            return highs[index];
+          }
+
+          @Override
+          public long lowBits(int index) {
+            return lows[index];
+          }
+
+          @Override
+          public void swap(int i, int j) {
+            long high = highs[i];
+            long low = lows[i];
+            String name = names[i];
+            highs[i] = highs[j];
+            lows[i] = lows[j];
+            names[i] = names[j];
+            highs[j] = high;
+            lows[j] = low;
+            names[j] = name;
+          }
+        },
+        0,
+        highs.length - 1);
+
+    assertThat(highs).asList().containsExactly(0L, 0L, 0L, 1L, -1L).inOrder();
+    assertThat(lows).asList().containsExactly(1L, 1L, -1L, 0L, 0L).inOrder();
+    assertThat(names).asList().containsExactly("a", "a", "b", "c", "d").inOrder();
+  }
+
   private void convertUInt32FromBytesAndAssert(byte[] bytes, long expected) {
     Long value = NumericConversions.uInt32FromBytes(bytes);
 
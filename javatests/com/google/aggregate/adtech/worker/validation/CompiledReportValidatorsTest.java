@@ -0,0 +1,177 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.validation;
+
+import static com.google.aggregate.adtech.worker.model.ErrorCounter.ATTRIBUTION_REPORT_TO_MALFORMED;
+import static com.google.aggregate.adtech.worker.model.ErrorCounter.ATTRIBUTION_REPORT_TO_MISMATCH;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.aggregate.adtech.worker.model.ErrorMessage;
+import com.google.aggregate.adtech.worker.model.Payload;
+import com.google.aggregate.adtech.worker.model.Report;
+import com.google.aggregate.adtech.worker.model.SharedInfo;
+import com.google.common.collect.ImmutableList;
+import com.google.scp.operator.cpio.jobclient.model.Job;
+import com.google.scp.operator.cpio.jobclient.testing.FakeJobGenerator;
+import java.time.Instant;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CompiledReportValidatorsTest {
+
+  private Report report;
+  private Job ctx;
+
+  @Before
+  public void setUp() {
+    report =
+        Report.builder()
+            .setPayload(Payload.builder().build())
+            .setSharedInfo(
+                SharedInfo.builder()
+                    .setReportingOrigin("")
+                    .setPrivacyBudgetKey("")
+                    .setScheduledReportTime(Instant.now())
+                    .build())
+            .build();
+    ctx = FakeJobGenerator.generate("");
+  }
+
+  /** Test that all errors of a report are returned, cheapest validation first. */
+  @Test
+  public void validate_returnsAllErrorsByCost() {
+    CompiledReportValidators validators =
+        CompiledReportValidators.compile(
+            ImmutableList.of(
+                new FailingValidator(ATTRIBUTION_REPORT_TO_MALFORMED.name(), /* cost= */ 100),
+                new FailingValidator(ATTRIBUTION_REPORT_TO_MISMATCH.name(), /* cost= */ 1)),
+            ctx,
+            /* shortCircuit= */ false);
+
+    ImmutableList<ErrorMessage> validationErrors = validators.validate(report);
+
+    assertThat(validationErrors.stream().map(ErrorMessage::category))
+        .containsExactly(
+            ATTRIBUTION_REPORT_TO_MISMATCH.name(), ATTRIBUTION_REPORT_TO_MALFORMED.name())
+        .inOrder();
+  }
+
+  /** Test that validation stops at the error of the cheapest failing validation. */
+  @Test
+  public void validate_shortCircuit_returnsFirstError() {
+    CompiledReportValidators validators =
+        CompiledReportValidators.compile(
+            ImmutableList.of(
+                new FailingValidator(ATTRIBUTION_REPORT_TO_MALFORMED.name(), /* cost= */ 100),
+                new FailingValidator(ATTRIBUTION_REPORT_TO_MISMATCH.name(), /* cost= */ 1)),
+            ctx,
+            /* shortCircuit= */ true);
+
+    ImmutableList<ErrorMessage> validationErrors = validators.validate(report);
+
+    assertThat(validationErrors.stream().map(ErrorMessage::category))
+        .containsExactly(ATTRIBUTION_REPORT_TO_MISMATCH.name());
+  }
+
+  /** Test that validators are bound to the job once and skipped if they always pass. */
+  @Test
+  public void compile_bindsValidatorsOnce() {
+    CountingValidator alwaysValid = new CountingValidator(JobReportValidator.ALWAYS_VALID);
+    CountingValidator bound = new CountingValidator(unused -> Optional.empty());
+    CompiledReportValidators validators =
+        CompiledReportValidators.compile(
+            ImmutableList.of(alwaysValid, bound), ctx, /* shortCircuit= */ false);
+
+    assertThat(validators.validate(report)).isEmpty();
+    assertThat(validators.validate(report)).isEmpty();
+    assertThat(validators.job()).isSameInstanceAs(ctx);
+    assertThat(alwaysValid.timesBound).isEqualTo(1);
+    assertThat(bound.timesBound).isEqualTo(1);
+  }
+
+  /** Test that the validators bound to the job are told when it finishes. */
+  @Test
+  public void jobFinished_notifiesBoundValidators() {
+    int[] timesFinished = {0};
+    JobReportValidator jobValidator =
+        new JobReportValidator() {
+          @Override
+          public Optional<ErrorMessage> validate(Report report) {
+            return Optional.empty();
+          }
+
+          @Override
+          public void jobFinished() {
+            timesFinished[0]++;
+          }
+        };
+    CompiledReportValidators validators =
+        CompiledReportValidators.compile(
+            ImmutableList.of(new CountingValidator(jobValidator)), ctx, /* shortCircuit= */ false);
+
+    validators.jobFinished();
+
+    assertThat(timesFinished[0]).isEqualTo(1);
+  }
+
+  private static final class FailingValidator implements ReportValidator {
+
+    private final String category;
+    private final int cost;
+
+    private FailingValidator(String category, int cost) {
+      this.category = category;
+      this.cost = cost;
+    }
+
+    @Override
+    public Optional<ErrorMessage> validate(Report report, Job ctx) {
+      return Optional.of(
+          ErrorMessage.builder().setCategory(category).setDetailedErrorMessage("").build());
+    }
+
+    @Override
+    public int cost() {
+      return cost;
+    }
+  }
+
+  private static final class CountingValidator implements ReportValidator {
+
+    private final JobReportValidator jobValidator;
+    private int timesBound = 0;
+
+    private CountingValidator(JobReportValidator jobValidator) {
+      this.jobValidator = jobValidator;
+    }
+
+    @Override
+    public Optional<ErrorMessage> validate(Report report, Job ctx) {
+      throw new AssertionError("Reports should be validated by the validator bound to the job");
+    }
+
+    @Override
+    public JobReportValidator forJob(Job ctx) {
+      timesBound++;
+      return jobValidator;
+    }
+  }
+}
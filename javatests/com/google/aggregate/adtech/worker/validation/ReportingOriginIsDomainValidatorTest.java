@@ -17,6 +17,7 @@
 package com.google.aggregate.adtech.worker.validation;
 
 import static com.google.aggregate.adtech.worker.model.ErrorCounter.ATTRIBUTION_REPORT_TO_MALFORMED;
+import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
 
 import com.google.aggregate.adtech.worker.model.ErrorMessage;
@@ -111,4 +112,52 @@ public class ReportingOriginIsDomainValidatorTest {
         .that(validationError.get().category())
         .isEqualTo(ATTRIBUTION_REPORT_TO_MALFORMED.name());
   }
+
+  /** Test that the outcome for an origin is looked up once per job. */
+  @Test
+  public void testBoundToJob_cachesOutcomeByOrigin() {
+    Report validReport =
+        reportBuilder
+            .setSharedInfo(sharedInfoBuilder.setReportingOrigin("foo.com").build())
+            .build();
+    Report invalidReport =
+        reportBuilder
+            .setSharedInfo(sharedInfoBuilder.setReportingOrigin("http://foo").build())
+            .build();
+    ReportingOriginIsDomainValidator.OriginCachingValidator jobValidator =
+        (ReportingOriginIsDomainValidator.OriginCachingValidator) validator.forJob(ctx);
+
+    Optional<ErrorMessage> firstValidationError = jobValidator.validate(validReport);
+    Optional<ErrorMessage> secondValidationError = jobValidator.validate(validReport);
+    Optional<ErrorMessage> invalidValidationError = jobValidator.validate(invalidReport);
+
+    assertThat(firstValidationError.isPresent()).isFalse();
+    assertThat(secondValidationError.isPresent()).isFalse();
+    assertThat(invalidValidationError.get().category())
+        .isEqualTo(ATTRIBUTION_REPORT_TO_MALFORMED.name());
+    assertThat(jobValidator.originCacheStats().missCount()).isEqualTo(2);
+    assertThat(jobValidator.originCacheStats().hitCount()).isEqualTo(1);
+  }
+
+  /** Test that the origin cache is not shared between jobs. */
+  @Test
+  public void testBoundToJob_cachePerJob() {
+    Report report =
+        reportBuilder
+            .setSharedInfo(sharedInfoBuilder.setReportingOrigin("foo.com").build())
+            .build();
+    ReportingOriginIsDomainValidator.OriginCachingValidator firstJobValidator =
+        (ReportingOriginIsDomainValidator.OriginCachingValidator) validator.forJob(ctx);
+    ReportingOriginIsDomainValidator.OriginCachingValidator secondJobValidator =
+        (ReportingOriginIsDomainValidator.OriginCachingValidator)
+            validator.forJob(FakeJobGenerator.generate("other"));
+
+    firstJobValidator.validate(report);
+    secondJobValidator.validate(report);
+    firstJobValidator.jobFinished();
+
+    assertThat(firstJobValidator.originCacheStats().missCount()).isEqualTo(1);
+    assertThat(secondJobValidator.originCacheStats().missCount()).isEqualTo(1);
+    assertThat(secondJobValidator.originCacheStats().hitCount()).isEqualTo(0);
+  }
 }
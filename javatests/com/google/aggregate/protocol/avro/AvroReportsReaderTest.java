@@ -311,6 +311,52 @@ public class AvroReportsReaderTest {
     assertThat(records.get(1).sharedInfo()).isEqualTo("buzz");
   }
 
+  @Test
+  public void readSharesEqualNeighbouringKeyIds() throws Exception {
+    writeRecords(
+        ImmutableList.of(
+            createAvroReportRecord(UUID1, new byte[] {0x01}, /* sharedInfo= */ "fizz"),
+            createAvroReportRecord(UUID1, new byte[] {0x02}, /* sharedInfo= */ "buzz"),
+            createAvroReportRecord(UUID2, new byte[] {0x03}, /* sharedInfo= */ "fizz")));
+
+    ImmutableList<AvroReportRecord> records;
+    try (AvroReportsReader reader = getReader()) {
+      records = reader.streamRecords().collect(toImmutableList());
+    }
+
+    assertThat(records).hasSize(3);
+    assertThat(records.get(1).keyId()).isSameInstanceAs(records.get(0).keyId());
+    assertThat(records.get(0).keyId()).isEqualTo(UUID1);
+    assertThat(records.get(2).keyId()).isEqualTo(UUID2);
+    assertThat(readBytes(records.get(1).payload())).asList().containsExactly((byte) 0x02);
+    assertThat(records.get(1).sharedInfo()).isEqualTo("buzz");
+  }
+
+  @Test
+  public void readBlocksAndDecode() throws Exception {
+    writeRecords(
+        ImmutableList.of(
+            createAvroReportRecord(UUID1, new byte[] {0x01}, /* sharedInfo= */ "fizz"),
+            createAvroReportRecord(UUID2, new byte[] {0x02}, /* sharedInfo= */ "buzz")));
+
+    ImmutableList<AvroReportsBlock> blocks;
+    try (AvroReportsReader reader = getReader()) {
+      blocks = reader.streamBlocks().collect(toImmutableList());
+    }
+    // Blocks are decoded after the reader is closed, as they would be on other threads
+    ImmutableList<AvroReportRecord> records =
+        blocks.stream().flatMap(block -> block.decode().stream()).collect(toImmutableList());
+
+    assertThat(blocks.stream().mapToLong(AvroReportsBlock::recordCount).sum()).isEqualTo(2);
+    assertThat(records).hasSize(2);
+    assertThat(readBytes(records.get(0).payload())).asList().containsExactly((byte) 0x01);
+    assertThat(readBytes(records.get(1).payload())).asList().containsExactly((byte) 0x02);
+    assertThat(records.get(0).keyId()).isEqualTo(UUID1);
+    assertThat(records.get(1).keyId()).isEqualTo(UUID2);
+    assertThat(records.get(0).sharedInfo()).isEqualTo("fizz");
+    assertThat(records.get(1).sharedInfo()).isEqualTo("buzz");
+  }
+
   @Test
   public void readAfterCloseFails() throws Exception {
     // Setup avro file with records with size greater than the avro internal buffer to test stream
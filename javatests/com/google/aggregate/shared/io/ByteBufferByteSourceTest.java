@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.shared.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.io.ByteSource;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ByteBufferByteSourceTest {
+
+  @Test
+  public void testReadsRemainingBytesOfBuffer() throws Exception {
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0x01, 0x02, 0x03, 0x04});
+    buffer.position(1).limit(3);
+
+    ByteBufferByteSource byteSource = ByteBufferByteSource.wrap(buffer);
+    buffer.position(0).limit(4);
+
+    assertThat(byteSource.size()).isEqualTo(2);
+    assertThat(byteSource.read()).isEqualTo(new byte[] {0x02, 0x03});
+    assertThat(byteSource.openStream().readAllBytes()).isEqualTo(new byte[] {0x02, 0x03});
+    assertThat(ByteBufferByteSource.bytesOf(byteSource)).isEqualTo(new byte[] {0x02, 0x03});
+  }
+
+  @Test
+  public void testBytesOfSharesWholeArray() throws Exception {
+    byte[] bytes = new byte[] {0x01, 0x02};
+
+    assertThat(ByteBufferByteSource.bytesOf(ByteBufferByteSource.wrap(bytes)))
+        .isSameInstanceAs(bytes);
+  }
+
+  @Test
+  public void testReadCopiesArray() {
+    byte[] bytes = new byte[] {0x01, 0x02};
+
+    assertThat(ByteBufferByteSource.wrap(bytes).read()).isNotSameInstanceAs(bytes);
+  }
+
+  @Test
+  public void testBytesOfOtherByteSource() throws Exception {
+    assertThat(ByteBufferByteSource.bytesOf(ByteSource.wrap(new byte[] {0x01})))
+        .isEqualTo(new byte[] {0x01});
+  }
+
+  @Test
+  public void testEmptyBuffer() {
+    ByteBufferByteSource byteSource = ByteBufferByteSource.wrap(new byte[0]);
+
+    assertThat(byteSource.isEmpty()).isTrue();
+    assertThat(byteSource.sizeIfKnown().get()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testContentEqualsWrappedArray() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(3).put(new byte[] {0x01, 0x02, 0x03});
+    buffer.flip();
+
+    assertThat(
+            ByteBufferByteSource.wrap(buffer)
+                .contentEquals(ByteSource.wrap(new byte[] {0x01, 0x02, 0x03})))
+        .isTrue();
+  }
+}